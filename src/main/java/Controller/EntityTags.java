@@ -0,0 +1,70 @@
+package Controller;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Strong ETags for the message reads, built from the service's message versions instead of from the response bytes,
+ * so a conditional GET can be answered without running the query or encoding anything. A version only changes after
+ * a message write commits, so a tag never names data newer than the response it is sent with.
+ *
+ * Versions restart at 0 with the server, so every tag carries a random id for this server instance: a tag from
+ * before a restart never matches. A tag also names the wire format and whether the body may be gzipped, since a
+ * strong tag must differ between representations and those listings vary by Accept and Accept-Encoding.
+ */
+public class EntityTags {
+
+    private final String instance;
+
+    public EntityTags() {
+        this(Long.toHexString(ThreadLocalRandom.current().nextLong()));
+    }
+
+    /**
+     * @param instance the id that sets this server's tags apart from those of earlier and other instances
+     */
+    public EntityTags(String instance) {
+        this.instance = instance;
+    }
+
+    /**
+     * @param version the global message version, read before the data it tags
+     * @return the tag of a response built from all messages, or from a message looked up by id
+     */
+    public String forMessages(long version, WireFormat format, boolean gzip) {
+        return tag("m", version, format, gzip);
+    }
+
+    /**
+     * @param version the account's message version, read before the data it tags
+     * @return the tag of a response built from one account's messages
+     */
+    public String forAccount(int accountId, long version, WireFormat format, boolean gzip) {
+        return tag("a" + accountId + ".", version, format, gzip);
+    }
+
+    private String tag(String scope, long version, WireFormat format, boolean gzip) {
+        return '"' + instance + '-' + scope + version + '-' + format.name().toLowerCase() + (gzip ? "-gzip\"" : "\"");
+    }
+
+    /**
+     * If-None-Match uses the weak comparison, so a W/ prefix on a listed tag is ignored.
+     * @param ifNoneMatch an If-None-Match header value, or null
+     * @param etag the current tag of the response
+     * @return whether the header lists the tag, or is "*"
+     */
+    public static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String listed : ifNoneMatch.split(",")) {
+            String tag = listed.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,131 @@
+package Controller;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+
+import Model.Account;
+import Model.Message;
+
+/**
+ * An ObjectMapper for one wire format, with readers and writers for the request and response bodies built from it up
+ * front. An ObjectMapper caches the serializers and deserializers it builds for each type, so sharing one keeps that
+ * work from being redone on every request, and a prebuilt ObjectReader or ObjectWriter also skips the per-call lookup
+ * of the type's (de)serializer. The mapper has the Blackbird module registered, which replaces reflective getter and
+ * setter calls with generated lambdas.
+ *
+ * The format is set by the Jackson factory the codecs are built on: plain JSON by default, or a binary encoding of
+ * the same data model such as Smile or CBOR.
+ *
+ * ObjectMapper, ObjectReader and ObjectWriter are thread safe once configured, so one instance serves every request.
+ */
+public class JsonCodecs {
+
+    private final ObjectMapper mapper;
+    private final ObjectReader accountReader;
+    private final ObjectReader messageReader;
+    private final ObjectReader messageListReader;
+    private final ObjectWriter accountWriter;
+    private final ObjectWriter messageWriter;
+    /**
+     * Writes one message at a time into a listing. Flushing after every value would turn each row into its own write
+     * to the response, so it is switched off and the generator's buffer decides when to write.
+     */
+    private final ObjectWriter streamedMessageWriter;
+    /**
+     * Writes whole response bodies to the response stream, which the caller closes.
+     */
+    private final ObjectWriter bodyWriter;
+
+    /**
+     * Codecs for plain JSON.
+     */
+    public JsonCodecs() {
+        this(new JsonFactory());
+    }
+
+    /**
+     * @param factory the Jackson factory for the wire format to read and write
+     */
+    public JsonCodecs(JsonFactory factory) {
+        this.mapper = new ObjectMapper(factory).registerModule(new BlackbirdModule());
+        this.accountReader = mapper.readerFor(Account.class);
+        this.messageReader = mapper.readerFor(Message.class);
+        this.messageListReader = mapper.readerFor(new TypeReference<List<Message>>() {});
+        this.accountWriter = mapper.writerFor(Account.class);
+        this.messageWriter = mapper.writerFor(Message.class);
+        this.streamedMessageWriter = messageWriter.without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.bodyWriter = mapper.writer().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    }
+
+    /**
+     * @return the shared mapper, for Javalin's JSON mapper and the other types the controller writes
+     */
+    public ObjectMapper getMapper() {
+        return mapper;
+    }
+
+    public Account readAccount(byte[] body) throws IOException {
+        return accountReader.readValue(body);
+    }
+
+    public Message readMessage(byte[] body) throws IOException {
+        return messageReader.readValue(body);
+    }
+
+    public List<Message> readMessages(byte[] body) throws IOException {
+        return messageListReader.readValue(body);
+    }
+
+    /**
+     * @return account encoded in this format
+     */
+    public byte[] writeAccount(Account account) throws IOException {
+        return accountWriter.writeValueAsBytes(account);
+    }
+
+    /**
+     * @return message encoded in this format
+     */
+    public byte[] writeMessage(Message message) throws IOException {
+        return messageWriter.writeValueAsBytes(message);
+    }
+
+    /**
+     * Write any response body, such as a page or batch result, to out. The stream is flushed but not closed.
+     */
+    public void writeValue(Object value, OutputStream out) throws IOException {
+        bodyWriter.writeValue(out, value);
+        out.flush();
+    }
+
+    /**
+     * Write every remaining message from messages to out as an array, one element at a time, so a listing never has
+     * to be held in memory as a whole. The stream is flushed but not closed.
+     * @return the number of messages written
+     */
+    public int writeMessages(Iterator<Message> messages, OutputStream out) throws IOException {
+        int count = 0;
+        try (JsonGenerator generator = mapper.getFactory().createGenerator(out)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.writeStartArray();
+            while (messages.hasNext()) {
+                streamedMessageWriter.writeValue(generator, messages.next());
+                count++;
+            }
+            generator.writeEndArray();
+        }
+        out.flush();
+        return count;
+    }
+}
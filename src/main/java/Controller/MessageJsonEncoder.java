@@ -0,0 +1,327 @@
+package Controller;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import Model.Message;
+import Model.MessagePage;
+
+/**
+ * Writes messages and message pages as JSON without going through Jackson databind. Message has a fixed four-field
+ * shape, so each one is written field by field straight into a byte buffer: numbers are formatted digit by digit and
+ * strings are escaped and UTF-8 encoded in one pass, with no intermediate Strings or generator objects. The buffer is
+ * written to the output stream whenever it fills, so a listing of any size is encoded in a fixed amount of memory.
+ *
+ * The output is byte for byte what Jackson 2.14 produces for the same values with the default ObjectMapper settings:
+ * fields in declaration order, no whitespace, control characters, '"' and '\' escaped, other characters below U+D800
+ * written as UTF-8 and surrogate chars written as backslash-u escapes.
+ *
+ * Buffers are borrowed from a small shared pool for the length of one write call, so the encoder is safe to share
+ * between threads and a warm encoder allocates nothing per message.
+ */
+public class MessageJsonEncoder {
+
+    static final int BUFFER_SIZE = 8192;
+    private static final int POOLED_BUFFERS = 64;
+    /**
+     * The most bytes one char can take once encoded, as a six byte backslash-u escape.
+     */
+    private static final int MAX_CHAR_BYTES = 6;
+
+    private static final byte[] HEX = "0123456789ABCDEF".getBytes();
+    private static final byte[] NULL = "null".getBytes();
+    private static final byte[] MESSAGE_ID = "{\"message_id\":".getBytes();
+    private static final byte[] POSTED_BY = ",\"posted_by\":".getBytes();
+    private static final byte[] MESSAGE_TEXT = ",\"message_text\":".getBytes();
+    private static final byte[] TIME_POSTED_EPOCH = ",\"time_posted_epoch\":".getBytes();
+    private static final byte[] PAGE_MESSAGES = "{\"messages\":".getBytes();
+    private static final byte[] PAGE_NEXT_CURSOR = ",\"next_cursor\":".getBytes();
+    private static final byte[] LONG_MIN_VALUE = Long.toString(Long.MIN_VALUE).getBytes();
+
+    /**
+     * The tens and ones digit of every number below 100, so numbers are formatted two digits per division.
+     */
+    private static final byte[] DIGIT_TENS = new byte[100];
+    private static final byte[] DIGIT_ONES = new byte[100];
+    /**
+     * Non-zero for the ASCII chars that must be escaped in a JSON string: control chars, '"' and '\'.
+     */
+    private static final byte[] ASCII_ESCAPES = new byte[128];
+
+    static {
+        for (int i = 0; i < 100; i++) {
+            DIGIT_TENS[i] = (byte) ('0' + i / 10);
+            DIGIT_ONES[i] = (byte) ('0' + i % 10);
+        }
+        for (int i = 0; i < 0x20; i++) {
+            ASCII_ESCAPES[i] = 1;
+        }
+        ASCII_ESCAPES['"'] = 1;
+        ASCII_ESCAPES['\\'] = 1;
+    }
+
+    private final BlockingQueue<Output> outputs = new ArrayBlockingQueue<>(POOLED_BUFFERS);
+
+    /**
+     * Write every remaining message from messages to out as a JSON array. The stream is flushed but not closed.
+     * @param messages the messages to write
+     * @param out the destination, usually the response output stream
+     * @return the number of messages written
+     */
+    public int write(Iterator<Message> messages, OutputStream out) throws IOException {
+        Output output = borrowOutput(out);
+        try {
+            int count = writeArray(output, messages);
+            output.flush();
+            return count;
+        } finally {
+            releaseOutput(output);
+        }
+    }
+
+    /**
+     * Write page to out as the JSON object {"messages":[...],"next_cursor":...}. The stream is flushed but not closed.
+     */
+    public void writePage(MessagePage page, OutputStream out) throws IOException {
+        Output output = borrowOutput(out);
+        try {
+            output.write(PAGE_MESSAGES);
+            List<Message> messages = page.getMessages();
+            if (messages == null) {
+                output.write(NULL);
+            } else {
+                writeArray(output, messages.iterator());
+            }
+            output.write(PAGE_NEXT_CURSOR);
+            writeString(output, page.getNext_cursor());
+            output.write((byte) '}');
+            output.flush();
+        } finally {
+            releaseOutput(output);
+        }
+    }
+
+    private Output borrowOutput(OutputStream out) {
+        Output output = outputs.poll();
+        if (output == null) {
+            output = new Output();
+        }
+        output.out = out;
+        return output;
+    }
+
+    private void releaseOutput(Output output) {
+        output.out = null;
+        output.position = 0;
+        outputs.offer(output);
+    }
+
+    private static int writeArray(Output output, Iterator<Message> messages) throws IOException {
+        int count = 0;
+        output.write((byte) '[');
+        while (messages.hasNext()) {
+            if (count++ > 0) {
+                output.write((byte) ',');
+            }
+            writeMessage(output, messages.next());
+        }
+        output.write((byte) ']');
+        return count;
+    }
+
+    private static void writeMessage(Output output, Message message) throws IOException {
+        if (message == null) {
+            output.write(NULL);
+            return;
+        }
+        output.write(MESSAGE_ID);
+        writeLong(output, message.getMessage_id());
+        output.write(POSTED_BY);
+        writeLong(output, message.getPosted_by());
+        output.write(MESSAGE_TEXT);
+        writeString(output, message.getMessage_text());
+        output.write(TIME_POSTED_EPOCH);
+        writeLong(output, message.getTime_posted_epoch());
+        output.write((byte) '}');
+    }
+
+    /**
+     * Write value in decimal, filling the digits in from the right two at a time. Values that fit in an int, which
+     * is all ids and every epoch second until 2038, use int arithmetic.
+     */
+    private static void writeLong(Output output, long value) throws IOException {
+        if (value == Long.MIN_VALUE) {
+            output.write(LONG_MIN_VALUE);
+            return;
+        }
+        output.ensure(20);
+        byte[] buffer = output.buffer;
+        int position = output.position;
+        if (value < 0) {
+            buffer[position++] = '-';
+            value = -value;
+        }
+        int end = position + digitCount(value);
+        int i = end;
+        while (value > Integer.MAX_VALUE) {
+            int pair = (int) (value % 100);
+            value /= 100;
+            buffer[--i] = DIGIT_ONES[pair];
+            buffer[--i] = DIGIT_TENS[pair];
+        }
+        int rest = (int) value;
+        while (rest >= 100) {
+            int pair = rest % 100;
+            rest /= 100;
+            buffer[--i] = DIGIT_ONES[pair];
+            buffer[--i] = DIGIT_TENS[pair];
+        }
+        if (rest >= 10) {
+            buffer[--i] = DIGIT_ONES[rest];
+            buffer[--i] = DIGIT_TENS[rest];
+        } else {
+            buffer[--i] = (byte) ('0' + rest);
+        }
+        output.position = end;
+    }
+
+    private static int digitCount(long value) {
+        int digits = 1;
+        for (long bound = 10; digits < 19 && value >= bound; bound *= 10) {
+            digits++;
+        }
+        return digits;
+    }
+
+    private static void writeString(Output output, String value) throws IOException {
+        if (value == null) {
+            output.write(NULL);
+            return;
+        }
+        int length = value.length();
+        int from = 0;
+        output.ensure(1);
+        output.buffer[output.position++] = '"';
+        while (from < length) {
+            //encode as many chars as are sure to fit in what is left of the buffer, then drain and carry on
+            int room = (output.buffer.length - output.position) / MAX_CHAR_BYTES;
+            if (room == 0) {
+                output.drain();
+                continue;
+            }
+            int to = Math.min(length, from + room);
+            output.position = writeChars(value, from, to, output.buffer, output.position);
+            from = to;
+        }
+        output.ensure(1);
+        output.buffer[output.position++] = '"';
+    }
+
+    /**
+     * Encode value's chars from index from up to index to into buffer at position, which must have room for
+     * MAX_CHAR_BYTES per char.
+     * @return the position after the last byte written
+     */
+    private static int writeChars(String value, int from, int to, byte[] buffer, int position) {
+        int i = from;
+        while (i < to) {
+            //copy plain ASCII in a tight loop, leaving it only for chars that need escaping or more than one byte
+            char c;
+            while ((c = value.charAt(i)) < 0x80 && ASCII_ESCAPES[c] == 0) {
+                buffer[position++] = (byte) c;
+                if (++i == to) {
+                    return position;
+                }
+            }
+            i++;
+            if (c < 0x80) {
+                position = writeEscape(buffer, position, c);
+            } else if (c < 0x800) {
+                buffer[position++] = (byte) (0xC0 | (c >> 6));
+                buffer[position++] = (byte) (0x80 | (c & 0x3F));
+            } else if (c >= 0xD800 && c <= 0xDFFF) {
+                //Jackson 2.14 writes each half of a surrogate pair as its own escape rather than as 4 byte UTF-8
+                position = writeUnicodeEscape(buffer, position, c);
+            } else {
+                buffer[position++] = (byte) (0xE0 | (c >> 12));
+                buffer[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buffer[position++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        return position;
+    }
+
+    /**
+     * Escape an ASCII char which cannot appear in a JSON string as is: the two char escapes where JSON has one, a
+     * backslash-u escape otherwise.
+     */
+    private static int writeEscape(byte[] buffer, int position, char c) {
+        byte shortEscape;
+        switch (c) {
+            case '"': shortEscape = '"'; break;
+            case '\\': shortEscape = '\\'; break;
+            case '\b': shortEscape = 'b'; break;
+            case '\t': shortEscape = 't'; break;
+            case '\n': shortEscape = 'n'; break;
+            case '\f': shortEscape = 'f'; break;
+            case '\r': shortEscape = 'r'; break;
+            default: return writeUnicodeEscape(buffer, position, c);
+        }
+        buffer[position++] = '\\';
+        buffer[position++] = shortEscape;
+        return position;
+    }
+
+    private static int writeUnicodeEscape(byte[] buffer, int position, char c) {
+        buffer[position++] = '\\';
+        buffer[position++] = 'u';
+        buffer[position++] = HEX[(c >> 12) & 0xF];
+        buffer[position++] = HEX[(c >> 8) & 0xF];
+        buffer[position++] = HEX[(c >> 4) & 0xF];
+        buffer[position++] = HEX[c & 0xF];
+        return position;
+    }
+
+    /**
+     * A pooled byte buffer and how much of it is filled, written through to the stream as it fills.
+     */
+    private static final class Output {
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+        private OutputStream out;
+        private int position = 0;
+
+        void write(byte b) throws IOException {
+            ensure(1);
+            buffer[position++] = b;
+        }
+
+        void write(byte[] bytes) throws IOException {
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buffer, position, bytes.length);
+            position += bytes.length;
+        }
+
+        /**
+         * Make room for count more bytes; count must not exceed the buffer size.
+         */
+        void ensure(int count) throws IOException {
+            if (buffer.length - position < count) {
+                drain();
+            }
+        }
+
+        void drain() throws IOException {
+            out.write(buffer, 0, position);
+            position = 0;
+        }
+
+        void flush() throws IOException {
+            drain();
+            out.flush();
+        }
+    }
+}
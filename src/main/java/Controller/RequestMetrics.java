@@ -0,0 +1,216 @@
+package Controller;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import Util.Histogram;
+
+/**
+ * Latency, request counts and status code counts per route, written out in the Prometheus text format.
+ *
+ * A route is a method and the path it was registered under, such as "GET /messages/{messageId}", so requests for
+ * different ids share one series and the number of series stays fixed. Each route's latencies go into a Histogram
+ * with 32 buckets per power of two, so a reported percentile is within about 3% of the true value, and its status
+ * codes into an array of counters indexed by code. Recording a request is a map lookup and a few atomic adds, with no
+ * locking, so request threads never wait on each other or on a scrape.
+ *
+ * Percentiles are exported as a Prometheus summary over everything since the server started, in seconds.
+ */
+public class RequestMetrics {
+
+    /**
+     * Sub-bucket bits of the latency histograms: 5 bits is 32 buckets per power of two, 15 KB per route.
+     */
+    private static final int LATENCY_SUB_BUCKET_BITS = 5;
+    /**
+     * The quantiles exported for each route's latency.
+     */
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+    /**
+     * The route of requests that matched no endpoint, so probes for random paths do not each make a series. Requests
+     * a before-handler refused, such as those with a bad session token, count here too, since Javalin picks the
+     * endpoint only after the before-handlers.
+     */
+    static final String UNMATCHED_ROUTE = "unmatched";
+
+    private final Map<String, Route[]> routes = new ConcurrentHashMap<>();
+
+    /**
+     * @param method the request method
+     * @param route the path the endpoint was registered under, or null if no endpoint matched
+     * @param status the response status code
+     * @param nanos how long the request took, in nanoseconds
+     */
+    public void record(String method, String route, int status, long nanos) {
+        Route metrics = find(method, route != null ? route : UNMATCHED_ROUTE);
+        metrics.latencyNanos.record(nanos);
+        metrics.statuses.incrementAndGet(status >= 100 && status < 600 ? status : 0);
+    }
+
+    /**
+     * @return the latencies recorded for a route in nanoseconds, or null if it has had no requests
+     */
+    public Histogram getLatencyNanos(String method, String route) {
+        Route[] methods = routes.get(route);
+        if (methods != null) {
+            for (Route metrics : methods) {
+                if (metrics.method.equals(method)) {
+                    return metrics.latencyNanos;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Paths map to the few methods registered under them, so a lookup hashes a path string Javalin hands out for
+     * every request, whose hash is cached, and builds no key.
+     */
+    private Route find(String method, String route) {
+        Route[] methods = routes.get(route);
+        if (methods != null) {
+            for (Route metrics : methods) {
+                if (metrics.method.equals(method)) {
+                    return metrics;
+                }
+            }
+        }
+        routes.compute(route, (path, known) -> {
+            if (known != null) {
+                for (Route metrics : known) {
+                    if (metrics.method.equals(method)) {
+                        return known;
+                    }
+                }
+            }
+            Route[] added = known != null ? Arrays.copyOf(known, known.length + 1) : new Route[1];
+            added[added.length - 1] = new Route(method, path);
+            return added;
+        });
+        return find(method, route);
+    }
+
+    /**
+     * Append every route's request counts by status and latency summary, paths in name order.
+     */
+    public void writePrometheus(StringBuilder out) {
+        List<Route> sorted = new ArrayList<>();
+        for (Route[] methods : new TreeMap<>(routes).values()) {
+            sorted.addAll(Arrays.asList(methods));
+        }
+
+        header(out, "http_requests_total", "counter", "Requests handled, by route and status code.");
+        for (Route route : sorted) {
+            for (int status = 0; status < route.statuses.length(); status++) {
+                long count = route.statuses.get(status);
+                if (count != 0) {
+                    out.append("http_requests_total{").append(route.labels)
+                            .append(",status=\"").append(status).append("\"} ").append(count).append('\n');
+                }
+            }
+        }
+
+        header(out, "http_request_duration_seconds", "summary", "Time from the first before handler to the last "
+                + "after handler, by route.");
+        for (Route route : sorted) {
+            Histogram latency = route.latencyNanos;
+            for (double quantile : QUANTILES) {
+                out.append("http_request_duration_seconds{").append(route.labels)
+                        .append(",quantile=\"").append(quantile).append("\"} ")
+                        .append(seconds(latency.getPercentile(quantile * 100))).append('\n');
+            }
+            out.append("http_request_duration_seconds_sum{").append(route.labels).append("} ")
+                    .append(seconds(latency.getSum())).append('\n');
+            out.append("http_request_duration_seconds_count{").append(route.labels).append("} ")
+                    .append(latency.getCount()).append('\n');
+        }
+    }
+
+    /**
+     * Append the HELP and TYPE lines that come before a metric's samples.
+     */
+    static void header(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    /**
+     * Append a metric that has one unlabelled sample.
+     */
+    static void sample(StringBuilder out, String name, String type, String help, double value) {
+        header(out, name, type, help);
+        out.append(name).append(' ');
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            out.append((long) value);
+        } else {
+            out.append(value);
+        }
+        out.append('\n');
+    }
+
+    /**
+     * Append a summary of a histogram recorded in microseconds, in seconds.
+     */
+    static void microsSummary(StringBuilder out, String name, String help, Histogram micros) {
+        header(out, name, "summary", help);
+        microsSummarySamples(out, name, null, micros);
+    }
+
+    /**
+     * Append a summary of a histogram of plain values, such as sizes, as recorded.
+     */
+    static void summary(StringBuilder out, String name, String help, Histogram values) {
+        header(out, name, "summary", help);
+        summarySamples(out, name, null, values, 1);
+    }
+
+    /**
+     * Append the quantile, sum and count samples of one labelled series of a summary recorded in microseconds.
+     * @param labels the series' labels, such as sql="...", or null for none
+     */
+    static void microsSummarySamples(StringBuilder out, String name, String labels, Histogram micros) {
+        summarySamples(out, name, labels, micros, 1e6);
+    }
+
+    /**
+     * Append the quantile, sum and count samples of one series, with each recorded value divided by scale.
+     */
+    private static void summarySamples(StringBuilder out, String name, String labels, Histogram values, double scale) {
+        String prefix = labels != null ? labels + "," : "";
+        String suffix = labels != null ? "{" + labels + "} " : " ";
+        for (double quantile : QUANTILES) {
+            out.append(name).append('{').append(prefix).append("quantile=\"").append(quantile).append("\"} ")
+                    .append(values.getPercentile(quantile * 100) / scale).append('\n');
+        }
+        out.append(name).append("_sum").append(suffix).append(values.getSum() / scale).append('\n');
+        out.append(name).append("_count").append(suffix).append(values.getCount()).append('\n');
+    }
+
+    private static double seconds(long nanos) {
+        return nanos / 1e9;
+    }
+
+    /**
+     * Escape a label value: backslash, double quote and line feed are the characters the format reserves.
+     */
+    static String escape(String labelValue) {
+        return labelValue.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static final class Route {
+        final String method;
+        final String labels;
+        final Histogram latencyNanos = new Histogram(LATENCY_SUB_BUCKET_BITS);
+        final AtomicLongArray statuses = new AtomicLongArray(600);
+
+        Route(String method, String route) {
+            this.method = method;
+            this.labels = "method=\"" + escape(method) + "\",route=\"" + escape(route) + '"';
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package Controller;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPOutputStream;
+
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Gzip compression for the message listings, which are the only responses big enough for it to pay off. A listing is
+ * held back until it reaches a minimum size: one that never gets there is sent as is, since gzip would add its header
+ * and CPU time for little or no saving, and one that does is compressed as it streams from the database.
+ *
+ * The full listing is the same for every client until a message changes, so its compressed bytes can be kept, one
+ * copy per wire format, tagged with the message version the listing was read at. A request that finds a copy for the
+ * current version sends it without running the query or compressing anything.
+ *
+ * Bodies are written to the servlet response directly, around Javalin's own compression, so they are never
+ * compressed twice. Brotli is not offered: there is no pure Java brotli encoder, only one wrapping native libraries.
+ */
+public class ResponseCompression {
+
+    /**
+     * Bodies smaller than this many bytes are sent uncompressed. The default matches Javalin's own threshold.
+     */
+    static final int MIN_BYTES = Integer.getInteger("http.compression.minBytes", 1500);
+    /**
+     * The deflate level, from 1 (fastest) to 9 (smallest). 6 is gzip's own default.
+     */
+    static final int GZIP_LEVEL = Integer.getInteger("http.compression.gzipLevel", 6);
+    /**
+     * The largest compressed listing kept per wire format; a bigger one is still compressed but not kept.
+     */
+    static final int CACHE_MAX_BYTES = Integer.getInteger("http.compression.cacheMaxBytes", 8 * 1024 * 1024);
+
+    private final int minBytes;
+    private final int level;
+    private final int cacheMaxBytes;
+    private final AtomicReferenceArray<CachedListing> listings =
+            new AtomicReferenceArray<>(WireFormat.values().length);
+
+    private final LongAdder compressedResponses = new LongAdder();
+    private final LongAdder uncompressedBytes = new LongAdder();
+    private final LongAdder compressedBytes = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+
+    public ResponseCompression() {
+        this(MIN_BYTES, GZIP_LEVEL, CACHE_MAX_BYTES);
+    }
+
+    /**
+     * @param minBytes the smallest body that is compressed
+     * @param level the deflate level, 1 to 9
+     * @param cacheMaxBytes the largest compressed listing kept, 0 to keep none
+     */
+    public ResponseCompression(int minBytes, int level, int cacheMaxBytes) {
+        this.minBytes = minBytes;
+        this.level = level;
+        this.cacheMaxBytes = cacheMaxBytes;
+    }
+
+    /**
+     * @param acceptEncoding an Accept-Encoding header value, or null
+     * @return whether it allows gzip, named or through a wildcard, with a non-zero q value
+     */
+    public static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        double gzipQuality = -1;
+        double wildcardQuality = -1;
+        for (String coding : acceptEncoding.split(",")) {
+            String name = WireFormat.stripParameters(coding);
+            if (name.equalsIgnoreCase("gzip") || name.equalsIgnoreCase("x-gzip")) {
+                gzipQuality = WireFormat.quality(coding);
+            } else if (name.equals("*")) {
+                wildcardQuality = WireFormat.quality(coding);
+            }
+        }
+        return gzipQuality >= 0 ? gzipQuality > 0 : wildcardQuality > 0;
+    }
+
+    /**
+     * Send the full listing kept for this version and format, if there is one.
+     * @param response the response, with its status and Content-Type already set
+     * @param version the message version the request was made at
+     * @return true if the listing was sent, false if the caller must build it
+     */
+    public boolean sendCachedListing(HttpServletResponse response, long version, WireFormat format)
+            throws IOException {
+        CachedListing listing = listings.get(format.ordinal());
+        if (listing == null || listing.version != version) {
+            return false;
+        }
+        cacheHits.increment();
+        response.setHeader("Content-Encoding", "gzip");
+        response.setContentLength(listing.gzipped.length);
+        response.getOutputStream().write(listing.gzipped);
+        return true;
+    }
+
+    /**
+     * Keep the compressed bytes of a full listing for later requests at the same version. Nothing is kept if the
+     * body was sent uncompressed or was too big to keep, or if a listing for a later version is already kept.
+     * @param version the message version read before the listing was queried
+     * @param body the finished body the listing was written to
+     */
+    public void cacheListing(long version, WireFormat format, Body body) {
+        byte[] gzipped = body.keptBytes();
+        if (gzipped == null) {
+            return;
+        }
+        CachedListing listing = new CachedListing(version, gzipped);
+        int slot = format.ordinal();
+        CachedListing current;
+        do {
+            current = listings.get(slot);
+            if (current != null && current.version >= version) {
+                return;
+            }
+        } while (!listings.compareAndSet(slot, current, listing));
+    }
+
+    /**
+     * Open a body on the response that is compressed once it passes the minimum size. Headers must be set before
+     * anything is written to it, and it must be finished once the body is complete.
+     * @param response the response to write to
+     * @param gzip whether the client accepts gzip
+     * @param keep whether to keep a copy of the compressed bytes for cacheListing
+     */
+    public Body open(HttpServletResponse response, boolean gzip, boolean keep) {
+        return new Body(response, gzip, keep && cacheMaxBytes > 0);
+    }
+
+    public long getCompressedResponses() {
+        return compressedResponses.sum();
+    }
+
+    /**
+     * @return the bytes of every compressed response before compression
+     */
+    public long getUncompressedBytes() {
+        return uncompressedBytes.sum();
+    }
+
+    /**
+     * @return the bytes of every compressed response as sent
+     */
+    public long getCompressedBytes() {
+        return compressedBytes.sum();
+    }
+
+    public long getCacheHits() {
+        return cacheHits.sum();
+    }
+
+    /**
+     * A response body which buffers its first minBytes, then either switches to gzip or, if the body ends before
+     * then, is sent as is.
+     */
+    public final class Body extends OutputStream {
+        private final HttpServletResponse response;
+        private final boolean gzip;
+        private final ByteArrayOutputStream pending;
+        private ByteArrayOutputStream kept;
+        private OutputStream target;
+        private CountingOutputStream sent;
+        private long written = 0;
+        private boolean finished = false;
+
+        private Body(HttpServletResponse response, boolean gzip, boolean keep) {
+            this.response = response;
+            this.gzip = gzip;
+            this.pending = new ByteArrayOutputStream(gzip ? minBytes : 0);
+            this.kept = keep ? new ByteArrayOutputStream() : null;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            written += length;
+            if (target == null) {
+                if (gzip && pending.size() + length < minBytes) {
+                    pending.write(bytes, offset, length);
+                    return;
+                }
+                start(gzip);
+            }
+            target.write(bytes, offset, length);
+        }
+
+        /**
+         * Flush what has been committed to a format; bytes still under the threshold stay buffered.
+         */
+        @Override
+        public void flush() throws IOException {
+            if (target != null) {
+                target.flush();
+            }
+        }
+
+        /**
+         * Write out whatever is buffered and end the gzip stream. The response stream itself is left open.
+         */
+        public void finish() throws IOException {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            if (target == null) {
+                start(false);
+            }
+            if (target instanceof GZIPOutputStream) {
+                ((GZIPOutputStream) target).finish();
+                compressedResponses.increment();
+                uncompressedBytes.add(written);
+                compressedBytes.add(sent.count);
+            }
+            target.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            finish();
+        }
+
+        private void start(boolean compress) throws IOException {
+            OutputStream out = response.getOutputStream();
+            if (compress) {
+                response.setHeader("Content-Encoding", "gzip");
+                sent = new CountingOutputStream(out);
+                target = new GZIPOutputStream(sent, MessageJsonEncoder.BUFFER_SIZE) {
+                    {
+                        def.setLevel(level);
+                    }
+                };
+            } else {
+                kept = null;
+                target = out;
+            }
+            pending.writeTo(target);
+        }
+
+        /**
+         * @return the compressed body, or null if it was not compressed or grew past the cache limit
+         */
+        private byte[] keptBytes() {
+            return finished && kept != null ? kept.toByteArray() : null;
+        }
+
+        /**
+         * Counts the compressed bytes on their way to the response, copying them for the cache while they fit.
+         */
+        private final class CountingOutputStream extends OutputStream {
+            private final OutputStream out;
+            private long count = 0;
+
+            CountingOutputStream(OutputStream out) {
+                this.out = out;
+            }
+
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[] {(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] bytes, int offset, int length) throws IOException {
+                out.write(bytes, offset, length);
+                count += length;
+                if (kept != null) {
+                    if (kept.size() + length > cacheMaxBytes) {
+                        kept = null;
+                    } else {
+                        kept.write(bytes, offset, length);
+                    }
+                }
+            }
+
+            @Override
+            public void flush() throws IOException {
+                out.flush();
+            }
+        }
+    }
+
+    /**
+     * The compressed full listing as of one message version.
+     */
+    private static final class CachedListing {
+        private final long version;
+        private final byte[] gzipped;
+
+        CachedListing(long version, byte[] gzipped) {
+            this.version = version;
+            this.gzipped = gzipped;
+        }
+    }
+}
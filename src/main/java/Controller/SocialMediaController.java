@@ -2,15 +2,49 @@ package Controller;
 
 import io.javalin.Javalin;
 import io.javalin.http.Context;
+import io.javalin.http.UnauthorizedResponse;
+import io.javalin.json.JavalinJackson;
+import io.javalin.util.ConcurrencyUtil;
+import io.javalin.util.LoomUtil;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import DAO.AccountIndexSocialMediaDAO;
+import DAO.MessageRowIterator;
 
 import Model.Account;
+import Model.BatchItemResult;
 import Model.Message;
-import Service.SocialMediaService;
+import Model.MessageBatchResult;
+import Model.MessagePage;
+import Service.ExecutorSocialMediaService;
+import Service.MessageWriteCoalescer;
 import Service.SocialMediaServiceImpl;
+import Util.ConnectionPool;
+import Util.ConnectionUtil;
+import Util.DatabaseExecutor;
+import Util.LfuCache;
+import Util.MessageCursor;
+import Util.QueryStats;
+import Util.RateLimiter;
+import Util.SessionTokens;
+import Util.Trace;
+import Util.Tracer;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 
 
 public class SocialMediaController {
@@ -20,29 +54,140 @@ public class SocialMediaController {
      * @return a Javalin app object which defines the behavior of the Javalin controller.
      */
 
+     //page size used when a client sends a cursor without a limit, and the largest page a client may ask for
+     static final int DEFAULT_PAGE_LIMIT = 100;
+     static final int MAX_PAGE_LIMIT = 1000;
+
+     //the most messages accepted by one POST /messages/batch request
+     static final int MAX_BATCH_SIZE = 1000;
+
+     //session token settings: -Dsession.secret takes a base64 key of at least 32 bytes, otherwise a random key is
+     //made at startup and tokens stop working on restart
+     static final long SESSION_TTL_SECONDS = Long.getLong("session.ttlSeconds", 3600L);
+     static final String SESSION_SECRET = System.getProperty("session.secret");
+
+     //-Dhttp.virtualThreads=true runs each request on its own virtual thread instead of Jetty's pool of 250 platform
+     //threads. It needs a JDK with virtual threads (build with -Pvirtual-threads); elsewhere requests stay on the pool.
+     static final boolean VIRTUAL_THREADS = Boolean.getBoolean("http.virtualThreads");
+
+     //write limits per posting account: -Dratelimit.<endpoint>.perSecond is the sustained rate, 0 turns the limit off,
+     //and -Dratelimit.<endpoint>.burst is how many requests may come at once. Idle accounts are dropped after a minute.
+     static final int CREATE_MESSAGE_RATE = Integer.getInteger("ratelimit.createMessage.perSecond", 5);
+     static final int CREATE_MESSAGE_BURST = Integer.getInteger("ratelimit.createMessage.burst", 20);
+     static final int UPDATE_MESSAGE_RATE = Integer.getInteger("ratelimit.updateMessage.perSecond", 5);
+     static final int UPDATE_MESSAGE_BURST = Integer.getInteger("ratelimit.updateMessage.burst", 20);
+     //a batch takes one permit per account it posts for, however many of its items that account has
+     static final int CREATE_MESSAGE_BATCH_RATE = Integer.getInteger("ratelimit.createMessageBatch.perSecond", 1);
+     static final int CREATE_MESSAGE_BATCH_BURST = Integer.getInteger("ratelimit.createMessageBatch.burst", 5);
+     static final long RATE_LIMIT_IDLE_MILLIS = 60000;
+
+     //response header carrying the token issued by /login; clients send it back as "Authorization: Bearer <token>"
+     public static final String SESSION_TOKEN_HEADER = "Session-Token";
+     //context attribute holding the account id of a request with a valid token
+     public static final String ACCOUNT_ID_ATTRIBUTE = "account_id";
+     //context attribute holding the System.nanoTime() at which a request reached the first before-handler
+     static final String REQUEST_START_ATTRIBUTE = "request_start_nanos";
+     //context attribute holding the request's Trace
+     static final String TRACE_ATTRIBUTE = "trace";
+     //request and response header carrying the request id, which is also the id of the request's trace
+     public static final String REQUEST_ID_HEADER = "X-Request-Id";
+     //the longest request id taken from a client; longer or odd ones are replaced with one of ours
+     static final int MAX_REQUEST_ID_LENGTH = 64;
+
      //social media service object
-     SocialMediaService socialMediaService;
+     SocialMediaServiceImpl socialMediaService;
+
+     //the same service run on the database executor, so handlers never block a request thread on H2
+     ExecutorSocialMediaService asyncService;
+
+     //the shared mapper and the prebuilt Account and Message readers and writers
+     JsonCodecs jsonCodecs = new JsonCodecs();
+
+     //codecs for every wire format a client can ask for, with JSON sharing the codecs above
+     Map<WireFormat, JsonCodecs> wireCodecs = new EnumMap<>(WireFormat.class);
+
+     //writes message listings and pages straight to the response without Jackson databind
+     MessageJsonEncoder messageJsonEncoder = new MessageJsonEncoder();
+
+     //gzips the message listings and keeps the compressed full listing until a message changes
+     ResponseCompression responseCompression = new ResponseCompression();
+
+     //builds the ETags of the message reads from the service's message versions
+     EntityTags entityTags = new EntityTags();
+
+     //latency and status counts per route, served at GET /metrics
+     RequestMetrics requestMetrics = new RequestMetrics();
+
+     //token buckets per posting account for POST /messages, POST /messages/batch and PATCH /messages/{messageId},
+     //null when turned off
+     RateLimiter createMessageLimiter = CREATE_MESSAGE_RATE > 0
+             ? new RateLimiter(CREATE_MESSAGE_RATE, CREATE_MESSAGE_BURST, RATE_LIMIT_IDLE_MILLIS) : null;
+     RateLimiter createMessageBatchLimiter = CREATE_MESSAGE_BATCH_RATE > 0
+             ? new RateLimiter(CREATE_MESSAGE_BATCH_RATE, CREATE_MESSAGE_BATCH_BURST, RATE_LIMIT_IDLE_MILLIS) : null;
+     RateLimiter updateMessageLimiter = UPDATE_MESSAGE_RATE > 0
+             ? new RateLimiter(UPDATE_MESSAGE_RATE, UPDATE_MESSAGE_BURST, RATE_LIMIT_IDLE_MILLIS) : null;
+
+     //issues and checks the signed session tokens
+     SessionTokens sessionTokens = new SessionTokens(
+             SESSION_SECRET != null ? Base64.getDecoder().decode(SESSION_SECRET) : SessionTokens.randomSecret(),
+             SESSION_TTL_SECONDS);
 
      //constructor
      public SocialMediaController() {
          this.socialMediaService = new SocialMediaServiceImpl();
+         this.asyncService = new ExecutorSocialMediaService(socialMediaService);
+         for(WireFormat format : WireFormat.values())
+         {
+             wireCodecs.put(format, format == WireFormat.JSON ? jsonCodecs : new JsonCodecs(format.newFactory()));
+         }
          
      }
 
      //method to start the Javalin app
     public Javalin startAPI() {
-        //create a Javalin app
-        Javalin app = Javalin.create();
+        //Javalin picks virtual threads on its own whenever the JDK has them; only use them when asked to
+        ConcurrencyUtil.INSTANCE.setUseLoom(VIRTUAL_THREADS);
+        if(VIRTUAL_THREADS && !LoomUtil.INSTANCE.getLoomAvailable())
+        {
+            System.out.println("Virtual threads are not available on Java " + System.getProperty("java.version")
+                    + ", serving requests from the platform thread pool");
+        }
+
+        //create a Javalin app, serializing through the same mapper as the handlers
+        Javalin app = Javalin.create(config -> config.jsonMapper(new JavalinJackson(jsonCodecs.getMapper())));
+
+        //time and trace every request from its first before-handler to its last after-handler, which for a request
+        //answered from a future is after the future completes
+        app.before(this::startRequestHandler);
+        app.after(this::recordRequestHandler);
+
+        //stop the database threads and the group commit pipeline along with the server, so a stopped app leaves no
+        //threads behind
+        app.events(event -> event.serverStopped(() ->
+        {
+            asyncService.close();
+            socialMediaService.close();
+        }));
+
+        //check the session token, if any, before every request
+        app.before(this::authenticateHandler);
+
+        //the database executor's queue is full: ask the client to come back rather than queue without limit
+        app.exception(RejectedExecutionException.class, (e, context) -> context.status(503));
 
         //register endpoints
         app.post("/register", this::registerUserHandler);
         app.post("/login", this::loginUserHandler);
+        app.post("/logout", this::logoutHandler);
         app.post("/messages", this::createMessageHandler);
+        app.post("/messages/batch", this::createMessageBatchHandler);
         app.get("/messages", this::getAllMessagesHandler);
         app.get("/messages/{messageId}", this::getMessageHandler);
         app.get("/accounts/{accountId}/messages", this::getMessagesForUserHandler);
         app.delete("/messages/{messageId}", this::deleteMessageHandler);
         app.patch("/messages/{messageId}", this::updateMessageHandler);
+        app.get("/metrics", this::metricsHandler);
+        app.get("/admin/traces", this::tracesHandler);
 
         //return app
         return app;
@@ -54,172 +199,903 @@ public class SocialMediaController {
      */
 
      //handler for registering a new user
-    private void registerUserHandler(Context context) throws JsonProcessingException 
+    private void registerUserHandler(Context context) throws IOException 
     {
-        //create new mapper object
-        ObjectMapper mapper = new ObjectMapper();
-
         //create new account object, retrieve username and password from context
-        Account account = mapper.readValue(context.body(), Account.class);
+        Account account = parseBody(context, JsonCodecs::readAccount);
         
         //retrieve username and password from account object
         String username = account.getUsername();
         String password = account.getPassword();
 
-        account = socialMediaService.createAccount(username, password);
-
-        //if createdAccount is not null
-        if(account != null)
+        respondWhenDone(context, () -> asyncService.createAccount(username, password), created ->
         {
-            //respond successful and return account object
-            context.status(200).json(account);
-        }
-        else
-        {
-            //return error 400
-            context.status(400);
-        }
+            //if createdAccount is not null
+            if(created != null)
+            {
+                //respond successful and return account object
+                context.status(200);
+                respondAccount(context, created);
+            }
+            else
+            {
+                //return error 400
+                context.status(400);
+            }
+        });
     }
 
     //handler for validating username and password
-    private void loginUserHandler(Context context) throws JsonProcessingException
+    private void loginUserHandler(Context context) throws IOException
     {
-        ObjectMapper mapper = new ObjectMapper();
-
-        Account account = mapper.readValue(context.body(), Account.class);
+        Account account = parseBody(context, JsonCodecs::readAccount);
         //retrieve username and password from context
         String username = account.getUsername();
         String password = account.getPassword();
         
         //validate username and password and return account if validated
-        account = socialMediaService.validatePassword(username, password);
+        respondWhenDone(context, () -> asyncService.validatePassword(username, password), validated ->
+        {
+            if(validated != null)
+            {
+                //issue a session token in a header so the body stays the plain account
+                context.header(SESSION_TOKEN_HEADER, sessionTokens.issue(validated.getAccount_id()));
+                //return account object
+                respondAccount(context, validated);
+            }
+            else
+            {
+                //return error 401
+                context.status(401);
+            }
+        });
+    }
+
+    //handler for revoking the session token sent with the request
+    private void logoutHandler(Context context)
+    {
+        String token = bearerToken(context);
 
-        if(account != null)
+        //a token that is missing or no longer valid cannot be logged out
+        if(token != null && sessionTokens.revoke(token))
         {
-            //return account object
-            context.json(account);
+            context.status(200);
         }
         else
         {
-            //return error 401
             context.status(401);
         }
     }
 
-    //handler for creating a message
-    private void createMessageHandler(Context context) throws JsonProcessingException
+    //before-handler: a request with a valid token gets its account id attached, one with a bad token is refused,
+    //and one without a token goes through as before. No database access is needed either way.
+    private void authenticateHandler(Context context)
+    {
+        String token = bearerToken(context);
+        if(token == null)
+        {
+            return;
+        }
+
+        Integer account_id = sessionTokens.verify(token);
+        if(account_id == null)
+        {
+            throw new UnauthorizedResponse();
+        }
+        context.attribute(ACCOUNT_ID_ATTRIBUTE, account_id);
+    }
+
+    //before-handler: note the start time, and start the request's trace under the client's request id if it sent a
+    //usable one, echoing the id back
+    private void startRequestHandler(Context context)
+    {
+        context.attribute(REQUEST_START_ATTRIBUTE, System.nanoTime());
+        Trace trace = Tracer.begin(usableRequestId(context.header(REQUEST_ID_HEADER)));
+        context.attribute(TRACE_ATTRIBUTE, trace);
+        context.header(REQUEST_ID_HEADER, trace.getRequestId());
+    }
+
+    //a client's request id if it is short and made of letters, digits, '-', '_' and '.', otherwise null
+    private String usableRequestId(String requestId)
+    {
+        if(requestId == null || requestId.isEmpty() || requestId.length() > MAX_REQUEST_ID_LENGTH)
+        {
+            return null;
+        }
+        for(int i = 0; i < requestId.length(); i++)
+        {
+            char c = requestId.charAt(i);
+            if(!(Character.isLetterOrDigit(c) && c < 128) && c != '-' && c != '_' && c != '.')
+            {
+                return null;
+            }
+        }
+        return requestId;
+    }
+
+    //after-handler: record the request's latency and status under the route it matched, and finish its trace
+    private void recordRequestHandler(Context context)
+    {
+        Long start = context.attribute(REQUEST_START_ATTRIBUTE);
+        if(start == null)
+        {
+            return;
+        }
+        String route = context.endpointHandlerPath();
+        String method = context.method().name();
+        route = route.startsWith("/") ? route : null;
+        requestMetrics.record(method, route, context.statusCode(), System.nanoTime() - start);
+        Tracer.finish(context.attribute(TRACE_ATTRIBUTE), method, route, context.statusCode());
+    }
+
+    //handler for the recent sampled traces as JSON, newest first, optionally only the one with a given request id
+    private void tracesHandler(Context context) throws IOException
+    {
+        String requestId = context.queryParam("requestId");
+        List<Map<String, Object>> traces = new ArrayList<>();
+        for(Trace trace : Tracer.getRecentTraces())
+        {
+            if(requestId == null || requestId.equals(trace.getRequestId()))
+            {
+                traces.add(traceJson(trace));
+            }
+        }
+        context.contentType("application/json");
+        context.result(jsonCodecs.getMapper().writeValueAsBytes(traces));
+    }
+
+    //a trace as a JSON object, its spans in the order they started with times in microseconds from the request start
+    private Map<String, Object> traceJson(Trace trace)
+    {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("request_id", trace.getRequestId());
+        json.put("method", trace.getMethod());
+        json.put("route", trace.getRoute());
+        json.put("status", trace.getStatus());
+        json.put("start_epoch_millis", trace.getStartEpochMillis());
+        json.put("duration_us", trace.getDurationMicros());
+        json.put("dropped_spans", trace.getDroppedSpans());
+        List<Map<String, Object>> spans = new ArrayList<>();
+        for(int i = 0; i < trace.getSpanCount(); i++)
+        {
+            Map<String, Object> span = new LinkedHashMap<>();
+            span.put("name", trace.getSpanName(i));
+            span.put("parent", trace.getSpanParent(i));
+            span.put("start_us", trace.getSpanStartMicros(i));
+            span.put("duration_us", trace.getSpanDurationMicros(i));
+            if(trace.getSpanDetail(i) != null)
+            {
+                span.put("detail", trace.getSpanDetail(i));
+            }
+            spans.add(span);
+        }
+        json.put("spans", spans);
+        return json;
+    }
+
+    //handler for the Prometheus scrape: the per-route metrics, then the database and write path counters
+    private void metricsHandler(Context context)
+    {
+        StringBuilder out = new StringBuilder(4096);
+        requestMetrics.writePrometheus(out);
+
+        DatabaseExecutor databaseExecutor = asyncService.getDatabaseExecutor();
+        RequestMetrics.sample(out, "db_executor_queue_depth", "gauge",
+                "Service calls waiting for a database thread.", databaseExecutor.getQueueDepth());
+        RequestMetrics.sample(out, "db_executor_active_threads", "gauge",
+                "Database threads running a service call.", databaseExecutor.getActiveCount());
+        RequestMetrics.sample(out, "db_executor_rejected_total", "counter",
+                "Service calls turned away because the queue was full.", databaseExecutor.getRejectedCount());
+        RequestMetrics.microsSummary(out, "db_executor_queue_wait_seconds",
+                "Time service calls waited for a database thread.", databaseExecutor.getQueueWaitMicros());
+        DatabaseExecutor streamExecutor = asyncService.getStreamExecutor();
+        RequestMetrics.sample(out, "db_stream_executor_queue_depth", "gauge",
+                "Streamed listings waiting for a stream thread.", streamExecutor.getQueueDepth());
+        RequestMetrics.sample(out, "db_stream_executor_active_threads", "gauge",
+                "Stream threads sending a listing.", streamExecutor.getActiveCount());
+
+        ConnectionPool pool = ConnectionUtil.getPool();
+        RequestMetrics.sample(out, "db_pool_active_connections", "gauge",
+                "Connections borrowed from the pool.", pool.getActiveCount());
+        RequestMetrics.sample(out, "db_pool_idle_connections", "gauge",
+                "Connections open and waiting in the pool.", pool.getIdleCount());
+        RequestMetrics.sample(out, "db_pool_waiting_threads", "gauge",
+                "Threads waiting for a connection.", pool.getWaitingCount());
+        RequestMetrics.sample(out, "db_statement_cache_hits_total", "counter",
+                "Prepared statements served from a connection's statement cache.", pool.getStatementCacheHits());
+        RequestMetrics.sample(out, "db_statement_cache_misses_total", "counter",
+                "Prepared statements that had to be prepared by the driver.", pool.getStatementCacheMisses());
+
+        QueryStats queryStats = ConnectionUtil.getQueryStats();
+        if(queryStats != null)
+        {
+            appendQueryStats(out, queryStats);
+        }
+
+        appendServiceMetrics(out);
+
+        RequestMetrics.sample(out, "http_compressed_responses_total", "counter",
+                "Listings sent gzipped.", responseCompression.getCompressedResponses());
+        RequestMetrics.sample(out, "http_listing_cache_hits_total", "counter",
+                "Full listings sent from the kept compressed copy.", responseCompression.getCacheHits());
+
+        RequestMetrics.header(out, "ratelimit_throttled_total", "counter", "Requests refused with 429, by endpoint.");
+        appendThrottled(out, "createMessage", createMessageLimiter);
+        appendThrottled(out, "createMessageBatch", createMessageBatchLimiter);
+        appendThrottled(out, "updateMessage", updateMessageLimiter);
+
+        context.contentType("text/plain; version=0.0.4; charset=utf-8");
+        context.result(out.toString());
+    }
+
+    //the message cache, account index and group commit counters, for whichever of them are turned on
+    private void appendServiceMetrics(StringBuilder out)
+    {
+        LfuCache<Integer, Message> messageCache = socialMediaService.getMessageCache();
+        if(messageCache != null)
+        {
+            RequestMetrics.sample(out, "message_cache_hits_total", "counter",
+                    "Message lookups answered from the message cache.", messageCache.getHits());
+            RequestMetrics.sample(out, "message_cache_misses_total", "counter",
+                    "Message lookups that went to the database.", messageCache.getMisses());
+            RequestMetrics.sample(out, "message_cache_evictions_total", "counter",
+                    "Cached messages dropped to make room.", messageCache.getEvictions());
+            RequestMetrics.sample(out, "message_cache_expirations_total", "counter",
+                    "Cached messages dropped for outliving the ttl.", messageCache.getExpirations());
+        }
+
+        AccountIndexSocialMediaDAO accountIndex = socialMediaService.getAccountIndex();
+        if(accountIndex != null)
+        {
+            LfuCache<String, Account> accountCache = accountIndex.getAccountCache();
+            RequestMetrics.sample(out, "account_cache_hits_total", "counter",
+                    "Account lookups answered from the account cache.", accountCache.getHits());
+            RequestMetrics.sample(out, "account_cache_misses_total", "counter",
+                    "Account lookups that went to the database.", accountCache.getMisses());
+            RequestMetrics.sample(out, "account_cache_evictions_total", "counter",
+                    "Cached accounts dropped to make room.", accountCache.getEvictions());
+            RequestMetrics.sample(out, "account_filter_rejections_total", "counter",
+                    "Lookups and registrations answered by the username filter or cache without a query.",
+                    accountIndex.getFilterRejections());
+        }
+
+        MessageWriteCoalescer writeCoalescer = socialMediaService.getWriteCoalescer();
+        if(writeCoalescer != null)
+        {
+            RequestMetrics.summary(out, "message_group_commit_batch_size",
+                    "Messages committed together by group commit.", writeCoalescer.getBatchSizes());
+            RequestMetrics.microsSummary(out, "message_group_commit_queue_wait_seconds",
+                    "Time messages waited for their group commit batch to start.", writeCoalescer.getQueueWaitMicros());
+            RequestMetrics.sample(out, "message_group_commit_queue_depth", "gauge",
+                    "Messages waiting for a group commit batch.", writeCoalescer.getQueueDepth());
+        }
+    }
+
+    //executions, rows, errors and phase timings per normalized statement
+    private void appendQueryStats(StringBuilder out, QueryStats queryStats)
+    {
+        Map<String, QueryStats.StatementStats> statements = queryStats.getStatements();
+
+        RequestMetrics.header(out, "db_query_executions_total", "counter", "Statements run, by normalized SQL.");
+        for(QueryStats.StatementStats stats : statements.values())
+        {
+            out.append("db_query_executions_total{").append(sqlLabel(stats)).append("} ")
+                    .append(stats.getExecutions()).append('\n');
+        }
+        RequestMetrics.header(out, "db_query_rows_total", "counter",
+                "Rows returned by queries or affected by updates, by normalized SQL.");
+        for(QueryStats.StatementStats stats : statements.values())
+        {
+            out.append("db_query_rows_total{").append(sqlLabel(stats)).append("} ")
+                    .append(stats.getRows()).append('\n');
+        }
+        RequestMetrics.header(out, "db_query_errors_total", "counter", "Statements that failed, by normalized SQL.");
+        for(QueryStats.StatementStats stats : statements.values())
+        {
+            out.append("db_query_errors_total{").append(sqlLabel(stats)).append("} ")
+                    .append(stats.getErrors()).append('\n');
+        }
+        RequestMetrics.header(out, "db_query_duration_seconds", "summary",
+                "Time in the execute call and in reading the rows, by normalized SQL.");
+        for(QueryStats.StatementStats stats : statements.values())
+        {
+            RequestMetrics.microsSummarySamples(out, "db_query_duration_seconds",
+                    sqlLabel(stats) + ",phase=\"execute\"", stats.getExecuteMicros());
+            if(stats.getFetchMicros().getCount() > 0)
+            {
+                RequestMetrics.microsSummarySamples(out, "db_query_duration_seconds",
+                        sqlLabel(stats) + ",phase=\"fetch\"", stats.getFetchMicros());
+            }
+        }
+        RequestMetrics.sample(out, "db_slow_queries_total", "counter",
+                "Statements written to the slow query log.", queryStats.getSlowQueryCount());
+    }
+
+    //the label naming a statement's series
+    private String sqlLabel(QueryStats.StatementStats stats)
+    {
+        return "sql=\"" + RequestMetrics.escape(stats.getSql()) + '"';
+    }
+
+    //one sample of ratelimit_throttled_total, if the limiter is on
+    private void appendThrottled(StringBuilder out, String endpoint, RateLimiter limiter)
+    {
+        if(limiter != null)
+        {
+            out.append("ratelimit_throttled_total{endpoint=\"").append(endpoint).append("\"} ")
+                    .append(limiter.getThrottledCount()).append('\n');
+        }
+    }
+
+    //the token from an "Authorization: Bearer <token>" header, or null if there is none
+    private String bearerToken(Context context)
     {
-        ObjectMapper mapper = new ObjectMapper();
+        String authorization = context.header("Authorization");
+        if(authorization == null || !authorization.regionMatches(true, 0, "Bearer ", 0, 7))
+        {
+            return null;
+        }
+        return authorization.substring(7).trim();
+    }
 
-        Message message = mapper.readValue(context.body(), Message.class);
+    //handler for creating a message
+    private void createMessageHandler(Context context) throws IOException
+    {
+        Message message = parseBody(context, JsonCodecs::readMessage);
 
         //retrieve messageText and postedBy from context
         String messageText = message.getMessage_text();
         int postedBy = message.getPosted_by();
         long timePosted = message.getTime_posted_epoch();
+
+        //refuse the post if the account is over its rate
+        if(throttled(context, createMessageLimiter, postedBy))
+        {
+            return;
+        }
         
         //create message
-        message = socialMediaService.createMessage(postedBy, messageText, timePosted);
+        respondWhenDone(context, () -> asyncService.createMessage(postedBy, messageText, timePosted), created ->
+        {
+            //if created message is not null
+            if(created != null)
+            {
+                //respond with status 200 and the created message
+                context.status(200);
+                respondMessage(context, created);
+            }
+            else
+            {
+                //an invalid post changed nothing, so it should not use up the account's rate
+                refund(createMessageLimiter, postedBy);
+                //return error 400
+                context.status(400);
+            }
+        });
+    }
 
-        //if created message is not null
-        if(message != null)
+    //handler for creating many messages in one request
+    private void createMessageBatchHandler(Context context) throws IOException
+    {
+        //read the array of messages, rejecting a body that is not one
+        List<Message> messages;
+        try
         {
-            //create json with status 200
-            context.status(200).json(message);
+            messages = parseBody(context, JsonCodecs::readMessages);
         }
-        else
+        catch(IOException e)
         {
-            //return error 400
             context.status(400);
+            return;
+        }
+        if(messages == null || messages.size() > MAX_BATCH_SIZE || messages.contains(null))
+        {
+            context.status(400);
+            return;
+        }
+
+        //take one batch permit from each poster in the batch; the items of posters over their batch rate are refused
+        Map<Integer, Long> posterWaits = new HashMap<>();
+        List<Message> admitted = new ArrayList<>(messages.size());
+        List<Integer> admittedIndexes = new ArrayList<>(messages.size());
+        List<BatchItemResult> throttledItems = new ArrayList<>();
+        long retryAfterNanos = Long.MAX_VALUE;
+        for(int i = 0; i < messages.size(); i++)
+        {
+            int postedBy = messages.get(i).getPosted_by();
+            long waitNanos = posterWaits.computeIfAbsent(postedBy, poster ->
+                    createMessageBatchLimiter == null ? 0 : createMessageBatchLimiter.tryAcquire(poster));
+            if(waitNanos == 0)
+            {
+                admitted.add(messages.get(i));
+                admittedIndexes.add(i);
+            }
+            else
+            {
+                throttledItems.add(BatchItemResult.rejected(i, "rate limit exceeded"));
+                retryAfterNanos = Math.min(retryAfterNanos, waitNanos);
+            }
         }
+
+        //if every item was over its poster's rate, refuse the whole batch like a single post
+        if(admitted.isEmpty() && !throttledItems.isEmpty())
+        {
+            tooManyRequests(context, retryAfterNanos);
+            return;
+        }
+
+        //create the valid messages and report per-item results
+        respondWhenDone(context, () -> asyncService.createMessages(admitted), result ->
+        {
+            if(result != null)
+            {
+                context.status(200);
+                MessageBatchResult response = restoreBatchIndexes(result, admitted, admittedIndexes, throttledItems);
+                wireCodecs.get(responseFormat(context)).writeValue(response, context.outputStream());
+            }
+            else
+            {
+                //nothing was saved, so give every poster's permit back
+                refundBatch(admitted, new HashSet<>());
+                context.status(500);
+            }
+        });
+    }
+
+    //give back the batch permit of every admitted poster none of whose items were created
+    private void refundBatch(List<Message> admitted, Set<Integer> postersCreated)
+    {
+        Set<Integer> refunded = new HashSet<>(postersCreated);
+        for(Message message : admitted)
+        {
+            if(refunded.add(message.getPosted_by()))
+            {
+                refund(createMessageBatchLimiter, message.getPosted_by());
+            }
+        }
+    }
+
+    //give back the permits of posters that had nothing created, and turn the result's positions in the admitted list
+    //back into positions in the request, alongside the items refused for their poster's rate
+    private MessageBatchResult restoreBatchIndexes(MessageBatchResult result, List<Message> admitted,
+            List<Integer> admittedIndexes, List<BatchItemResult> throttledItems)
+    {
+        Set<Integer> postersCreated = new HashSet<>();
+        for(BatchItemResult created : result.getCreated())
+        {
+            postersCreated.add(admitted.get(created.getIndex()).getPosted_by());
+            created.setIndex(admittedIndexes.get(created.getIndex()));
+        }
+        refundBatch(admitted, postersCreated);
+        for(BatchItemResult rejected : result.getErrors())
+        {
+            rejected.setIndex(admittedIndexes.get(rejected.getIndex()));
+        }
+        result.getErrors().addAll(throttledItems);
+        result.getErrors().sort(Comparator.comparingInt(BatchItemResult::getIndex));
+        return result;
     }
 
     //getAllMessagesHandler
-    private void getAllMessagesHandler(Context context)
+    private void getAllMessagesHandler(Context context) throws IOException
     {
-        //get all messages
-        List<Message> messages = socialMediaService.getAllMessages();
+        //a request for a page must have a valid limit and cursor
+        boolean pageRequest = isPageRequest(context);
+        Integer limit = readPageLimit(context);
+        Integer afterMessageId = readPageCursor(context);
+        if(pageRequest && (limit == null || afterMessageId == null))
+        {
+            context.status(400);
+            return;
+        }
 
-        //set status 200 and return messages
-        context.status(200).json(messages);
+        //read the version first, so a message changed during the query makes the tag and kept copy stale, not wrong
+        long version = socialMediaService.getMessageVersion();
+        WireFormat format = responseFormat(context);
+        boolean gzip = acceptsGzip(context);
+
+        //if the client already has this version, say so without querying
+        if(notModified(context, entityTags.forMessages(version, format, gzip)))
+        {
+            return;
+        }
+
+        //if the client asked for a page, serve one page instead of the whole table
+        if(pageRequest)
+        {
+            respondWhenDone(context, () -> asyncService.getMessagePage(afterMessageId, limit),
+                    page -> writeMessagePage(context, page, gzip));
+            return;
+        }
+
+        //if nothing has changed since the last full listing, send its compressed bytes again
+        if(gzip)
+        {
+            context.status(200);
+            if(responseCompression.sendCachedListing(context.res(), version, format))
+            {
+                return;
+            }
+        }
+
+        //stream all messages so the full listing is never held in memory, keeping the compressed copy
+        respondWhenDone(context,
+                () -> asyncService.streamAllMessages(messages -> writeMessageStream(context, messages, gzip, true)),
+                body ->
+                {
+                    if(body != null)
+                    {
+                        responseCompression.cacheListing(version, format, body);
+                    }
+                });
     }
 
     //getMessageHandler
-    private void getMessageHandler(Context context)
+    private void getMessageHandler(Context context) throws IOException
     {
         //retrieve messageId from context
         int messageId = Integer.parseInt(context.pathParam("messageId"));
-        //get message by message id
-        Message message = socialMediaService.getMessageById(messageId);
 
-        if(message != null)
+        //if no message has changed since the client's copy, say so without looking the message up
+        long version = socialMediaService.getMessageVersion();
+        if(notModified(context, entityTags.forMessages(version, responseFormat(context), false)))
         {
-            //set status 200 and return message
-            context.status(200).json(message);
+            return;
         }
-        else
+
+        //get message by message id
+        respondWhenDone(context, () -> asyncService.getMessageById(messageId), message ->
         {
-            context.status(200);
-        }
+            if(message != null)
+            {
+                //set status 200 and return message
+                context.status(200);
+                respondMessage(context, message);
+            }
+            else
+            {
+                context.status(200);
+            }
+        });
     }
 
     //getMessagesForUserHandler
-    private void getMessagesForUserHandler(Context context)
+    private void getMessagesForUserHandler(Context context) throws IOException
     {
         //retrieve account_id from context
         int account_id = Integer.parseInt(context.pathParam("accountId"));
 
-        //get all messages for user
-        List<Message> messages = socialMediaService.getAllMessagesForUser(account_id);
+        //a request for a page must have a valid limit and cursor
+        boolean pageRequest = isPageRequest(context);
+        Integer limit = readPageLimit(context);
+        Integer afterMessageId = readPageCursor(context);
+        if(pageRequest && (limit == null || afterMessageId == null))
+        {
+            context.status(400);
+            return;
+        }
+
+        //if none of the user's messages changed since the client's copy, say so without querying
+        long version = socialMediaService.getMessageVersion(account_id);
+        boolean gzip = acceptsGzip(context);
+        if(notModified(context, entityTags.forAccount(account_id, version, responseFormat(context), gzip)))
+        {
+            return;
+        }
+
+        //if the client asked for a page, serve one page instead of every message for the user
+        if(pageRequest)
+        {
+            respondWhenDone(context, () -> asyncService.getMessagePageForUser(account_id, afterMessageId, limit),
+                    page -> writeMessagePage(context, page, gzip));
+            return;
+        }
 
-        //return status 200 with messages List
-        context.status(200).json(messages);
+        //stream all messages for user so the full listing is never held in memory
+        context.future(() -> asyncService.streamAllMessagesForUser(account_id,
+                messages -> writeMessageStream(context, messages, gzip, false)));
     }
 
     //deleteMessageHandler
-    private void deleteMessageHandler(Context context)
+    private void deleteMessageHandler(Context context) throws IOException
     {
         //retrieve messageId from context
         int messageId = Integer.parseInt(context.pathParam("messageId"));
 
         //delete message and store boolean true if successful, false if not
-        Message deleted = socialMediaService.deleteMessage(messageId);
-        if(deleted != null)
+        respondWhenDone(context, () -> asyncService.deleteMessage(messageId), deleted ->
         {
-            //set status 200 and return deleted message
-            context.status(200).json(deleted);
-        }
-        else
-        {
-            context.status(200);
-        }
+            if(deleted != null)
+            {
+                //set status 200 and return deleted message
+                context.status(200);
+                respondMessage(context, deleted);
+            }
+            else
+            {
+                context.status(200);
+            }
+        });
     }
 
     //updateMessageHandler
-    private void updateMessageHandler(Context context) throws JsonProcessingException
+    private void updateMessageHandler(Context context) throws IOException
     {
-        ObjectMapper mapper = new ObjectMapper();
         //retrieve messageId from context
         int messageId = Integer.parseInt(context.pathParam("messageId"));
         //retrieve messageText from context
-        Message message = mapper.readValue(context.body(), Message.class);
+        Message message = parseBody(context, JsonCodecs::readMessage);
 
         //Get message text and store as string
         String messageText = message.getMessage_text();
 
         //update message in database using updateMessage
-        message = socialMediaService.updateMessage(messageId, messageText);
-        
-        //if message is not null
-        if(message != null)
+        Responder<Message> responder = updated ->
         {
-            //set status 200 and return message
-            context.status(200).json(message);
+            //if message is not null
+            if(updated != null)
+            {
+                //set status 200 and return message
+                context.status(200);
+                respondMessage(context, updated);
+            }
+            else
+            {
+                //return error 400
+                context.status(400);
+            }
+        };
+        if(updateMessageLimiter == null)
+        {
+            respondWhenDone(context, () -> asyncService.updateMessage(messageId, messageText), responder);
+            return;
+        }
+
+        //the limit is per poster, so look the message up first. The first edit of a message reads it from the
+        //database, but the message cache keeps the row each update returns, so later edits of it find the poster there
+        context.future(() -> asyncService.getMessageById(messageId).thenCompose(existing ->
+        {
+            if(existing != null && throttled(context, updateMessageLimiter, existing.getPosted_by()))
+            {
+                return CompletableFuture.completedFuture(null);
+            }
+            //an update that fails validation changed nothing, so it gives its permit back
+            return whenDone(asyncService.updateMessage(messageId, messageText).whenComplete((updated, error) ->
+            {
+                if(existing != null && updated == null)
+                {
+                    refund(updateMessageLimiter, existing.getPosted_by());
+                }
+            }), responder);
+        }));
+    }
+
+    //answer 429 with the seconds until the account's next permit, if the limiter is on and the account is over it
+    private boolean throttled(Context context, RateLimiter limiter, int account_id)
+    {
+        if(limiter == null)
+        {
+            return false;
+        }
+        long waitNanos = limiter.tryAcquire(account_id);
+        if(waitNanos == 0)
+        {
+            return false;
+        }
+        tooManyRequests(context, waitNanos);
+        return true;
+    }
+
+    //answer 429 with a Retry-After header for a wait in nanoseconds
+    private void tooManyRequests(Context context, long waitNanos)
+    {
+        //Retry-After is in whole seconds, so round up
+        long retryAfterSeconds = TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1);
+        context.status(429);
+        context.header("Retry-After", Long.toString(retryAfterSeconds));
+    }
+
+    //give a permit back to the account, if the limiter is on
+    private void refund(RateLimiter limiter, int account_id)
+    {
+        if(limiter != null)
+        {
+            limiter.refund(account_id);
+        }
+    }
+
+    //start a database call and release the request thread; the response is finished once the call completes
+    private <T> void respondWhenDone(Context context, Supplier<CompletableFuture<T>> call, Responder<T> responder)
+    {
+        context.future(() -> whenDone(call.get(), responder));
+    }
+
+    //write the response once a database call completes, on the thread that completed it, in the request's trace
+    private <T> CompletableFuture<Void> whenDone(CompletableFuture<T> call, Responder<T> responder)
+    {
+        Trace trace = Tracer.current();
+        return call.thenAccept(result ->
+        {
+            Trace previous = Tracer.attach(trace);
+            int span = Tracer.start("respond");
+            try
+            {
+                responder.respond(result);
+            }
+            catch(IOException e)
+            {
+                throw new UncheckedIOException(e);
+            }
+            finally
+            {
+                Tracer.end(span);
+                Tracer.attach(previous);
+            }
+        });
+    }
+
+    //writes the response from the result of a database call
+    private interface Responder<T>
+    {
+        void respond(T result) throws IOException;
+    }
+
+    //read the request body with the codecs for its Content-Type, in a trace span
+    private <T> T parseBody(Context context, BodyReader<T> reader) throws IOException
+    {
+        int span = Tracer.start("parse");
+        try
+        {
+            return reader.read(requestCodecs(context), context.bodyAsBytes());
+        }
+        finally
+        {
+            Tracer.end(span);
+        }
+    }
+
+    //reads a request body with one of the JsonCodecs readers
+    private interface BodyReader<T>
+    {
+        T read(JsonCodecs codecs, byte[] body) throws IOException;
+    }
+
+    //write an open message iterator to the response as an array, compressed if it is big enough and gzip is
+    //accepted, and return the finished body; respond 500 and return null if the query could not be opened
+    private ResponseCompression.Body writeMessageStream(Context context, MessageRowIterator messages, boolean gzip,
+            boolean keep) throws IOException
+    {
+        if(messages == null)
+        {
+            context.status(500);
+            return null;
+        }
+        context.status(200);
+        WireFormat format = responseFormat(context);
+        //rows are read from the database as they are written, so this span sits inside the query's span
+        int span = Tracer.start("write");
+        try
+        {
+            ResponseCompression.Body body = responseCompression.open(context.res(), gzip, keep);
+            if(format == WireFormat.JSON)
+            {
+                messageJsonEncoder.write(messages, body);
+            }
+            else
+            {
+                wireCodecs.get(format).writeMessages(messages, body);
+            }
+            body.finish();
+            return body;
+        }
+        finally
+        {
+            Tracer.end(span);
+        }
+    }
+
+    //write a page of messages in the format the client asked for, compressed if it is big enough and gzip is accepted
+    private void writeMessagePage(Context context, MessagePage page, boolean gzip) throws IOException
+    {
+        context.status(200);
+        WireFormat format = responseFormat(context);
+        ResponseCompression.Body body = responseCompression.open(context.res(), gzip, false);
+        if(format == WireFormat.JSON)
+        {
+            messageJsonEncoder.writePage(page, body);
         }
         else
         {
-            //return error 400
-            context.status(400);
-        }      
+            wireCodecs.get(format).writeValue(page, body);
+        }
+        body.finish();
+    }
+
+    //tag the response, and answer 304 with no body if the client's If-None-Match already holds the tag
+    private boolean notModified(Context context, String etag)
+    {
+        context.header("ETag", etag);
+        if(EntityTags.matches(context.header("If-None-Match"), etag))
+        {
+            context.status(304);
+            return true;
+        }
+        return false;
+    }
+
+    //whether the client accepts a gzipped listing; listings vary by Accept-Encoding as well as Accept from here on
+    private boolean acceptsGzip(Context context)
+    {
+        context.header("Vary", "Accept, Accept-Encoding");
+        return ResponseCompression.acceptsGzip(context.header("Accept-Encoding"));
+    }
+
+    //write an account in the format the client asked for
+    private void respondAccount(Context context, Account account) throws IOException
+    {
+        context.result(wireCodecs.get(responseFormat(context)).writeAccount(account));
+    }
+
+    //write a message in the format the client asked for
+    private void respondMessage(Context context, Message message) throws IOException
+    {
+        context.result(wireCodecs.get(responseFormat(context)).writeMessage(message));
+    }
+
+    //the codecs for the request body, chosen by its Content-Type; anything but Smile or CBOR is read as JSON
+    private JsonCodecs requestCodecs(Context context)
+    {
+        return wireCodecs.get(WireFormat.fromContentType(context.contentType()));
+    }
+
+    //pick the response format from the Accept header and set the matching Content-Type
+    private WireFormat responseFormat(Context context)
+    {
+        WireFormat format = WireFormat.fromAccept(context.header("Accept"));
+        //a listing that also varies by Accept-Encoding has set the fuller header already
+        if(!context.res().containsHeader("Vary"))
+        {
+            context.header("Vary", "Accept");
+        }
+        context.contentType(format.getMediaType());
+        return format;
+    }
+
+    //a list request is paginated when it carries a limit or a cursor; without either we keep the original full listing
+    private boolean isPageRequest(Context context)
+    {
+        return context.queryParam("limit") != null || context.queryParam("cursor") != null;
+    }
+
+    //read the limit query parameter, returning null if it is not a whole number between 1 and MAX_PAGE_LIMIT
+    private Integer readPageLimit(Context context)
+    {
+        String limitParam = context.queryParam("limit");
+        if(limitParam == null)
+        {
+            return DEFAULT_PAGE_LIMIT;
+        }
+        try
+        {
+            int limit = Integer.parseInt(limitParam);
+            return (limit >= 1 && limit <= MAX_PAGE_LIMIT) ? limit : null;
+        }
+        catch(NumberFormatException e)
+        {
+            return null;
+        }
+    }
+
+    //decode the cursor query parameter into the message id to start after, returning null if it is malformed
+    private Integer readPageCursor(Context context)
+    {
+        try
+        {
+            return MessageCursor.decode(context.queryParam("cursor"));
+        }
+        catch(IllegalArgumentException e)
+        {
+            return null;
+        }
     }
-}
\ No newline at end of file
+}
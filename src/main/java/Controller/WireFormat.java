@@ -0,0 +1,103 @@
+package Controller;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+/**
+ * The encodings the API reads and writes bodies in. JSON is the default; Smile and CBOR are binary encodings of the
+ * same data model, so every body has the same fields in every format. A client picks the request format with the
+ * Content-Type header and the response format with the Accept header.
+ */
+public enum WireFormat {
+
+    JSON("application/json"),
+    SMILE("application/x-jackson-smile"),
+    CBOR("application/cbor");
+
+    private final String mediaType;
+
+    WireFormat(String mediaType) {
+        this.mediaType = mediaType;
+    }
+
+    public String getMediaType() {
+        return mediaType;
+    }
+
+    /**
+     * @return a new Jackson factory that reads and writes this format
+     */
+    public JsonFactory newFactory() {
+        switch (this) {
+            case SMILE: return new SmileFactory();
+            case CBOR: return new CBORFactory();
+            default: return new JsonFactory();
+        }
+    }
+
+    /**
+     * @param contentType a Content-Type header value, possibly with parameters, or null
+     * @return the format it names, or JSON if it is missing or names anything else
+     */
+    public static WireFormat fromContentType(String contentType) {
+        WireFormat format = forMediaType(contentType == null ? "" : stripParameters(contentType));
+        return format != null ? format : JSON;
+    }
+
+    /**
+     * Pick the response format from an Accept header: the supported type with the highest q value, the earliest
+     * listed winning ties. A wildcard counts as JSON. A missing header, or one naming only unsupported types, also
+     * gets JSON rather than a 406, as before formats were negotiated.
+     * @param accept an Accept header value, or null
+     */
+    public static WireFormat fromAccept(String accept) {
+        if (accept == null) {
+            return JSON;
+        }
+        WireFormat best = JSON;
+        double bestQuality = -1;
+        for (String range : accept.split(",")) {
+            String mediaType = stripParameters(range);
+            WireFormat format = mediaType.equals("*/*") || mediaType.equals("application/*") ? JSON
+                    : forMediaType(mediaType);
+            double quality = quality(range);
+            if (format != null && quality > 0 && quality > bestQuality) {
+                best = format;
+                bestQuality = quality;
+            }
+        }
+        return best;
+    }
+
+    private static WireFormat forMediaType(String mediaType) {
+        for (WireFormat format : values()) {
+            if (format.mediaType.equalsIgnoreCase(mediaType)) {
+                return format;
+            }
+        }
+        return null;
+    }
+
+    static String stripParameters(String value) {
+        int semicolon = value.indexOf(';');
+        return (semicolon < 0 ? value : value.substring(0, semicolon)).trim();
+    }
+
+    /**
+     * @return the q parameter of one Accept or Accept-Encoding range, 1 if it has none, 0 if it is malformed
+     */
+    static double quality(String range) {
+        for (String parameter : range.split(";")) {
+            String trimmed = parameter.trim();
+            if (trimmed.startsWith("q=")) {
+                try {
+                    return Double.parseDouble(trimmed.substring(2));
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+}
@@ -0,0 +1,149 @@
+package DAO;
+
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+import Model.Account;
+import Util.BloomFilter;
+import Util.LfuCache;
+
+/**
+ * A SocialMediaDAO decorator which keeps an in-memory index of accounts so that logins and registrations do not all
+ * reach the database. A BloomFilter holds every username; a lookup for a username it has never seen is answered with
+ * null straight away, which keeps bursts of logins for made-up usernames off H2. Accounts that are found are kept in
+ * an LfuCache, so repeated logins for the same username, right or wrong password, are served from memory, and a
+ * registration for a username already in the cache is refused without an insert.
+ *
+ * Both are filled from the account table when the decorator is created and updated by createAccount. Accounts are
+ * never changed or deleted, so nothing needs invalidating, but the index assumes accounts are only created through
+ * this DAO while it is in use.
+ */
+public class AccountIndexSocialMediaDAO extends ForwardingSocialMediaDAO
+{
+    //false positive rate the username filter is sized for
+    static final double USERNAME_FILTER_FALSE_POSITIVE_RATE = 0.01;
+    //smallest number of usernames the filter is sized for, so that a new database does not rebuild it straight away
+    static final int MIN_USERNAME_FILTER_CAPACITY = 1024;
+
+    private final LfuCache<String, Account> accountCache;
+    //null when the usernames could not be read, in which case every lookup goes to the database
+    private volatile BloomFilter usernameFilter;
+    //usernames put in the current filter, guarded by this
+    private int indexedUsernames;
+    private final LongAdder filterRejections = new LongAdder();
+
+    /**
+     * @param delegate the DAO that reads and writes the database
+     * @param maxSize the most accounts cached
+     * @param ttlMillis how long a cached account may be served
+     */
+    public AccountIndexSocialMediaDAO(SocialMediaDAO delegate, int maxSize, long ttlMillis)
+    {
+        super(delegate);
+        this.accountCache = new LfuCache<>(maxSize, ttlMillis);
+        rebuildUsernameFilter(0);
+    }
+
+    //the account cache, for reading its hit, miss and eviction counts
+    public LfuCache<String, Account> getAccountCache()
+    {
+        return accountCache;
+    }
+
+    //the username filter, or null if it could not be built
+    public BloomFilter getUsernameFilter()
+    {
+        return usernameFilter;
+    }
+
+    //how many lookups and registrations were answered by the filter or cache without a query
+    public long getFilterRejections()
+    {
+        return filterRejections.sum();
+    }
+
+    //create account, refusing usernames already known to be taken and indexing the new account
+    @Override
+    public Account createAccount(String username, String password)
+    {
+        //a cached account means the username is taken, so the insert would fail on the unique constraint
+        if(username != null && mightExist(username) && accountCache.get(username) != null)
+        {
+            filterRejections.increment();
+            return null;
+        }
+
+        Account account = delegate.createAccount(username, password);
+        if(account != null)
+        {
+            index(account.getUsername());
+            accountCache.put(account.getUsername(), account);
+        }
+        return account;
+    }
+
+    //get account by username, from the cache when possible and not at all when the filter rules it out
+    @Override
+    public Account getAccountByUsername(String username)
+    {
+        if(username == null || !mightExist(username))
+        {
+            filterRejections.increment();
+            return null;
+        }
+
+        Account account = accountCache.get(username);
+        if(account == null)
+        {
+            //not caching a miss: it is either a filter false positive or a failed query
+            account = delegate.getAccountByUsername(username);
+            if(account != null)
+            {
+                accountCache.put(username, account);
+            }
+        }
+        return account;
+    }
+
+    //false only if the username is definitely not in the account table
+    private boolean mightExist(String username)
+    {
+        BloomFilter filter = usernameFilter;
+        return filter == null || filter.mightContain(username);
+    }
+
+    //add a new username to the filter, rebuilding it at twice the size once it holds more than it was sized for
+    private synchronized void index(String username)
+    {
+        BloomFilter filter = usernameFilter;
+        if(filter == null)
+        {
+            return;
+        }
+        filter.put(username);
+        if(++indexedUsernames > filter.getExpectedInsertions())
+        {
+            rebuildUsernameFilter(indexedUsernames * 2);
+        }
+    }
+
+    //read every username from the account table into a new filter sized for at least capacity of them
+    private synchronized void rebuildUsernameFilter(int capacity)
+    {
+        List<String> usernames = delegate.getAllUsernames();
+        if(usernames == null)
+        {
+            //without every username the filter would turn real accounts away, so go without it
+            usernameFilter = null;
+            return;
+        }
+        int expected = Math.max(MIN_USERNAME_FILTER_CAPACITY, Math.max(capacity, usernames.size() * 2));
+        BloomFilter filter = new BloomFilter(expected, USERNAME_FILTER_FALSE_POSITIVE_RATE);
+        for(String username : usernames)
+        {
+            filter.put(username);
+        }
+        indexedUsernames = usernames.size();
+        usernameFilter = filter;
+    }
+}
@@ -0,0 +1,75 @@
+package DAO;
+
+import Model.Message;
+import Util.LfuCache;
+
+/**
+ * A SocialMediaDAO decorator which serves getMessageById from an in-memory LfuCache and passes every other call
+ * through to the wrapped DAO. updateMessage caches the row the update statement returns, so reading a message after
+ * editing it needs no query, and deleteMessage drops the message from the cache once the database has changed. A read
+ * or update that races with another write can leave an older row cached; the cache ttl bounds how long that stale
+ * copy can be served.
+ */
+public class CachingSocialMediaDAO extends ForwardingSocialMediaDAO
+{
+    private final LfuCache<Integer, Message> messageCache;
+
+    /**
+     * @param delegate the DAO that reads and writes the database
+     * @param maxSize the most messages cached
+     * @param ttlMillis how long a cached message may be served
+     */
+    public CachingSocialMediaDAO(SocialMediaDAO delegate, int maxSize, long ttlMillis)
+    {
+        super(delegate);
+        this.messageCache = new LfuCache<>(maxSize, ttlMillis);
+    }
+
+    //the message cache, for reading its hit, miss and eviction counts
+    public LfuCache<Integer, Message> getMessageCache()
+    {
+        return messageCache;
+    }
+
+    //get message by message id, from the cache when possible
+    @Override
+    public Message getMessageById(int message_id)
+    {
+        Message message = messageCache.get(message_id);
+        if(message == null)
+        {
+            //missing messages are not cached, so a message created later is never hidden
+            message = delegate.getMessageById(message_id);
+            if(message != null)
+            {
+                messageCache.put(message_id, message);
+            }
+        }
+        return message;
+    }
+
+    //update message, then cache the updated row, or drop the cached copy if no row was updated
+    @Override
+    public Message updateMessage(int message_id, String new_text)
+    {
+        Message message = delegate.updateMessage(message_id, new_text);
+        if(message != null)
+        {
+            messageCache.put(message_id, message);
+        }
+        else
+        {
+            messageCache.invalidate(message_id);
+        }
+        return message;
+    }
+
+    //delete message, then drop the cached copy
+    @Override
+    public Message deleteMessage(int message_id)
+    {
+        Message message = delegate.deleteMessage(message_id);
+        messageCache.invalidate(message_id);
+        return message;
+    }
+}
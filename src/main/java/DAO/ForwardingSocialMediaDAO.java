@@ -0,0 +1,131 @@
+package DAO;
+
+import java.util.List;
+import java.util.Set;
+
+import Model.Account;
+import Model.Message;
+
+/**
+ * A SocialMediaDAO which passes every call through to another DAO. Decorators such as CachingSocialMediaDAO extend
+ * it and override only the calls they change, so they can be stacked on top of SocialMediaDAOImpl in any order.
+ */
+public abstract class ForwardingSocialMediaDAO implements SocialMediaDAO
+{
+    protected final SocialMediaDAO delegate;
+
+    /**
+     * @param delegate the DAO every call is passed on to
+     */
+    protected ForwardingSocialMediaDAO(SocialMediaDAO delegate)
+    {
+        this.delegate = delegate;
+    }
+
+    /**
+     * Find a decorator of the given type in the chain starting at dao.
+     * @return the first DAO in the chain that is an instance of type, or null if there is none
+     */
+    public static <T> T unwrap(SocialMediaDAO dao, Class<T> type)
+    {
+        while(dao != null)
+        {
+            if(type.isInstance(dao))
+            {
+                return type.cast(dao);
+            }
+            dao = (dao instanceof ForwardingSocialMediaDAO) ? ((ForwardingSocialMediaDAO) dao).delegate : null;
+        }
+        return null;
+    }
+
+    @Override
+    public Account createAccount(String username, String password)
+    {
+        return delegate.createAccount(username, password);
+    }
+
+    @Override
+    public Account getAccountByUsername(String username)
+    {
+        return delegate.getAccountByUsername(username);
+    }
+
+    @Override
+    public List<String> getAllUsernames()
+    {
+        return delegate.getAllUsernames();
+    }
+
+    @Override
+    public Message createMessage(int account_id, String message_text, long time_posted_epoch)
+    {
+        return delegate.createMessage(account_id, message_text, time_posted_epoch);
+    }
+
+    @Override
+    public List<Integer> createMessages(List<Message> messages)
+    {
+        return delegate.createMessages(messages);
+    }
+
+    @Override
+    public Set<Integer> getExistingAccountIds(Set<Integer> account_ids)
+    {
+        return delegate.getExistingAccountIds(account_ids);
+    }
+
+    @Override
+    public Message getMessageById(int message_id)
+    {
+        return delegate.getMessageById(message_id);
+    }
+
+    @Override
+    public List<Message> getAllMessages()
+    {
+        return delegate.getAllMessages();
+    }
+
+    @Override
+    public List<Message> getAllMessagesForUser(int account_id)
+    {
+        return delegate.getAllMessagesForUser(account_id);
+    }
+
+    @Override
+    public List<Message> getMessagesAfter(int after_message_id, int limit)
+    {
+        return delegate.getMessagesAfter(after_message_id, limit);
+    }
+
+    @Override
+    public List<Message> getMessagesForUserAfter(int account_id, int after_message_id, int limit)
+    {
+        return delegate.getMessagesForUserAfter(account_id, after_message_id, limit);
+    }
+
+    @Override
+    public MessageRowIterator streamAllMessages()
+    {
+        return delegate.streamAllMessages();
+    }
+
+    @Override
+    public MessageRowIterator streamAllMessagesForUser(int account_id)
+    {
+        return delegate.streamAllMessagesForUser(account_id);
+    }
+
+    @Override
+    public Message updateMessage(int message_id, String new_text)
+    {
+        return delegate.updateMessage(message_id, new_text);
+    }
+
+    @Override
+    public Message deleteMessage(int message_id)
+    {
+        return delegate.deleteMessage(message_id);
+    }
+}
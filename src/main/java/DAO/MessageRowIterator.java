@@ -0,0 +1,103 @@
+package DAO;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import Model.Message;
+
+/**
+ * A forward-only iterator over the rows of an open message ResultSet. Rows are mapped to Message objects one at a
+ * time as the caller asks for them, so memory use does not grow with the size of the result.
+ *
+ * The iterator owns the borrowed connection, statement and result set, and must be closed (ideally with
+ * try-with-resources) to hand the connection back to the pool. Errors while reading a row are rethrown as
+ * IllegalStateException, since Iterator methods cannot throw SQLException.
+ */
+public class MessageRowIterator implements Iterator<Message>, AutoCloseable
+{
+    private final Connection connection;
+    private final Statement statement;
+    private final ResultSet resultSet;
+    private final String resetSql;
+    private Message next;
+    private boolean done = false;
+
+    /**
+     * @param connection the borrowed connection, closed along with the iterator
+     * @param statement the statement that produced resultSet
+     * @param resultSet the rows to iterate over
+     * @param resetSql a statement run on the connection before it is returned to undo session settings, or null
+     */
+    MessageRowIterator(Connection connection, Statement statement, ResultSet resultSet, String resetSql)
+    {
+        this.connection = connection;
+        this.statement = statement;
+        this.resultSet = resultSet;
+        this.resetSql = resetSql;
+    }
+
+    @Override
+    public boolean hasNext()
+    {
+        if(next == null && !done)
+        {
+            try
+            {
+                if(resultSet.next())
+                {
+                    next = new Message(resultSet.getInt("message_id"), resultSet.getInt("posted_by"),
+                            resultSet.getString("message_text"), resultSet.getLong("time_posted_epoch"));
+                }
+                else
+                {
+                    done = true;
+                }
+            }
+            catch(SQLException e)
+            {
+                throw new IllegalStateException("Error reading message row: " + e.getMessage(), e);
+            }
+        }
+        return next != null;
+    }
+
+    @Override
+    public Message next()
+    {
+        if(!hasNext())
+        {
+            throw new NoSuchElementException();
+        }
+        Message message = next;
+        next = null;
+        return message;
+    }
+
+    //close the result set and statement, then return the connection to the pool
+    @Override
+    public void close()
+    {
+        done = true;
+        try(Connection c = connection)
+        {
+            //close the result set and statement before touching the connection again
+            resultSet.close();
+            statement.close();
+            if(resetSql != null)
+            {
+                try(Statement reset = c.createStatement())
+                {
+                    reset.execute(resetSql);
+                }
+            }
+        }
+        catch(SQLException e)
+        {
+            System.out.println("Error closing message rows: " + e.getMessage());
+        }
+    }
+}
@@ -3,19 +3,31 @@ package DAO;
 import Model.Account;
 import Model.Message;
 import java.util.List;
+import java.util.Set;
 
 public interface SocialMediaDAO 
 {
     //Account CRUD (create, read, update, delete)
     Account createAccount(String username, String password);
     Account getAccountByUsername(String username);
+    List<String> getAllUsernames();
     //boolean validatePassword(String username, String password);
     
     //Message CRUD (create, read, update, delete)
     Message createMessage(int account_id, String message_text, long time_posted_epoch);
+    //insert every message in one batched transaction, returning the generated ids in order, or null if it rolled back
+    List<Integer> createMessages(List<Message> messages);
+    //the subset of account_ids that exist, found in one query
+    Set<Integer> getExistingAccountIds(Set<Integer> account_ids);
     Message getMessageById(int message_id);
     List<Message> getAllMessages();
     List<Message> getAllMessagesForUser(int account_id);
+    //keyset pagination: up to limit messages with message_id greater than after_message_id, in message_id order
+    List<Message> getMessagesAfter(int after_message_id, int limit);
+    List<Message> getMessagesForUserAfter(int account_id, int after_message_id, int limit);
+    //row-at-a-time iteration over every message; the caller must close the iterator
+    MessageRowIterator streamAllMessages();
+    MessageRowIterator streamAllMessagesForUser(int account_id);
     Message updateMessage(int message_id, String new_text);
     Message deleteMessage(int message_id);
 }
\ No newline at end of file
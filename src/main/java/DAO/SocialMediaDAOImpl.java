@@ -4,11 +4,49 @@ import java.util.List;
 import Util.ConnectionUtil;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Set;
 import Model.Account;
 import Model.Message;
 
 public class SocialMediaDAOImpl implements SocialMediaDAO
 {
+    //rows fetched per round trip when streaming a listing
+    static final int STREAM_FETCH_SIZE = 500;
+
+    //sql state h2 reports when an insert breaks a unique constraint
+    static final String UNIQUE_VIOLATION = "23505";
+
+    //every statement this dao runs, public so their query plans can be checked against the schema
+    public static final String INSERT_ACCOUNT_SQL = "INSERT INTO account (username, password) VALUES (?, ?)";
+    public static final String ACCOUNT_BY_USERNAME_SQL = "SELECT * FROM account WHERE username = ?";
+    public static final String ALL_USERNAMES_SQL = "SELECT username FROM account";
+    public static final String INSERT_MESSAGE_SQL =
+            "INSERT INTO message (posted_by, message_text, time_posted_epoch) VALUES (?, ?, ?)";
+    public static final String EXISTING_ACCOUNT_IDS_SQL = "SELECT account_id FROM account WHERE account_id = ANY(?)";
+    public static final String MESSAGE_BY_ID_SQL = "SELECT * FROM message WHERE message_id = ?";
+    public static final String ALL_MESSAGES_SQL = "SELECT * FROM message";
+    public static final String MESSAGES_FOR_USER_SQL = "SELECT * FROM message WHERE posted_by = ?";
+    public static final String MESSAGES_PAGE_SQL =
+            "SELECT * FROM message WHERE message_id > ? ORDER BY message_id LIMIT ?";
+    public static final String MESSAGES_FOR_USER_PAGE_SQL =
+            "SELECT * FROM message WHERE posted_by = ? AND message_id > ? ORDER BY message_id LIMIT ?";
+    public static final String STREAM_MESSAGES_SQL = "SELECT * FROM message ORDER BY message_id";
+    public static final String STREAM_MESSAGES_FOR_USER_SQL =
+            "SELECT * FROM message WHERE posted_by = ? ORDER BY message_id";
+    public static final String UPDATE_MESSAGE_SQL =
+            "SELECT * FROM FINAL TABLE (UPDATE message SET message_text = ? WHERE message_id = ?)";
+    public static final String DELETE_MESSAGE_SQL = "SELECT * FROM OLD TABLE (DELETE FROM message WHERE message_id = ?)";
+
+    //all of the statements above, in the order the methods below use them
+    public static final List<String> STATEMENTS = List.of(INSERT_ACCOUNT_SQL, ACCOUNT_BY_USERNAME_SQL,
+            ALL_USERNAMES_SQL, INSERT_MESSAGE_SQL, EXISTING_ACCOUNT_IDS_SQL, MESSAGE_BY_ID_SQL, ALL_MESSAGES_SQL,
+            MESSAGES_FOR_USER_SQL, MESSAGES_PAGE_SQL, MESSAGES_FOR_USER_PAGE_SQL, STREAM_MESSAGES_SQL,
+            STREAM_MESSAGES_FOR_USER_SQL, UPDATE_MESSAGE_SQL, DELETE_MESSAGE_SQL);
+
+    //the statements that return every row of a table in no particular order, for which a table scan is the right plan
+    public static final List<String> FULL_SCANS = List.of(ALL_MESSAGES_SQL);
+
     //create account
     @Override
     public Account createAccount(String username, String password)
@@ -25,25 +63,16 @@ public class SocialMediaDAOImpl implements SocialMediaDAO
             return null;
         }
 
-        //attempt to retrieve account from database
-        Account account = getAccountByUsername(username);
-
-        //if account exists
-        if(account != null)
-        {
-            return null;
-        }
+        //create null account, only set if the insert succeeds
+        Account account = null;
 
-        //create connection to database
-        Connection connection = ConnectionUtil.getConnection();
+        //change sql statement to insert new account username and password
+        String sql = INSERT_ACCOUNT_SQL;
 
-        //try catch block
-        try
+        //try catch block, borrowing a connection from the pool and closing the statement and connection when done
+        try(Connection connection = ConnectionUtil.getConnection();
+            PreparedStatement preparedStatement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS))
         {
-            //change sql statement to insert new account username and password
-            String sql = "INSERT INTO account (username, password) VALUES (?, ?)";
-            PreparedStatement preparedStatement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
-
             //set values of sql prepared statement
             preparedStatement.setString(1, username);
             preparedStatement.setString(2, password);
@@ -76,7 +105,11 @@ public class SocialMediaDAOImpl implements SocialMediaDAO
         //catch exception if connection fails
         catch(SQLException e)
         {
-            System.out.println("Error creating account: " + e.getMessage());
+            //a duplicate username is rejected by the unique constraint, which is an expected outcome, not an error
+            if(!UNIQUE_VIOLATION.equals(e.getSQLState()))
+            {
+                System.out.println("Error creating account: " + e.getMessage());
+            }
         }
         //return account, set to null on failure
         return account;
@@ -89,30 +122,28 @@ public class SocialMediaDAOImpl implements SocialMediaDAO
         //create null account
         Account account = null;
 
-        //create connection to database
-        Connection connection = ConnectionUtil.getConnection();
+        //create sql prepared statement to find accounts with matching username
+        String sql = ACCOUNT_BY_USERNAME_SQL;
 
-        //try catch block
-        try
+        //try catch block, borrowing a connection from the pool and closing the statement and connection when done
+        try(Connection connection = ConnectionUtil.getConnection();
+            PreparedStatement preparedStatement = connection.prepareStatement(sql))
         {
-            //create sql prepared statement to find accounts with matching username
-            String sql = "SELECT * FROM account WHERE username = ?";
-            PreparedStatement preparedStatement = connection.prepareStatement(sql);
-
             //set values of sql prepared statement
             preparedStatement.setString(1, username);
 
             //execute sql statement and get results, if any
-            ResultSet resultSet = preparedStatement.executeQuery();
-
-            //if there are results, return them
-            if(resultSet.next())
+            try(ResultSet resultSet = preparedStatement.executeQuery())
             {
-                //get results and store account_id and password
-                int accountId = resultSet.getInt("account_id");
-                String password = resultSet.getString("password");
-                //return new account object
-                return new Account(accountId, username, password);
+                //if there are results, return them
+                if(resultSet.next())
+                {
+                    //get results and store account_id and password
+                    int accountId = resultSet.getInt("account_id");
+                    String password = resultSet.getString("password");
+                    //return new account object
+                    return new Account(accountId, username, password);
+                }
             }
         }
         //catch exception if connection fails
@@ -124,19 +155,45 @@ public class SocialMediaDAOImpl implements SocialMediaDAO
         return account;
     }
 
+    //get every username, used to build the in-memory username index at startup
+    @Override
+    public List<String> getAllUsernames()
+    {
+        //create sql prepared statement reading only the username column
+        String sql = ALL_USERNAMES_SQL;
+
+        //try catch block, borrowing a connection from the pool and closing the statement, results and connection when done
+        try(Connection connection = ConnectionUtil.getConnection();
+            PreparedStatement preparedStatement = connection.prepareStatement(sql);
+            ResultSet resultSet = preparedStatement.executeQuery())
+        {
+            List<String> usernames = new ArrayList<>();
+            while(resultSet.next())
+            {
+                usernames.add(resultSet.getString("username"));
+            }
+            return usernames;
+        }
+        //catch exception if connection fails
+        catch(SQLException e)
+        {
+            System.out.println("Error: " + e.getMessage());
+        }
+        //return null on failure
+        return null;
+    }
+
     //create message
     @Override
     public Message createMessage(int account_id, String message_text, long time_posted_epoch)
     {
-        //create connection to database
-        Connection connection = ConnectionUtil.getConnection();
+        //create sql prepared statement to insert values into message table
+        String sql = INSERT_MESSAGE_SQL;
 
-        //try catch block
-        try
+        //try catch block, borrowing a connection from the pool and closing the statement and connection when done
+        try(Connection connection = ConnectionUtil.getConnection();
+            PreparedStatement preparedStatement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS))
         {
-            //create sql prepared statement to insert values into message table
-            String sql = "INSERT INTO message (posted_by, message_text, time_posted_epoch) VALUES (?, ?, ?)";
-            PreparedStatement preparedStatement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
             //set values of sql prepared statement
             preparedStatement.setInt(1, account_id);
             preparedStatement.setString(2, message_text);
@@ -149,14 +206,16 @@ public class SocialMediaDAOImpl implements SocialMediaDAO
             if(affectedRows > 0)
             {
                 //get generated keys
-                ResultSet generatedKeys = preparedStatement.getGeneratedKeys();
-                //iterated through keys
-                if(generatedKeys.next())
+                try(ResultSet generatedKeys = preparedStatement.getGeneratedKeys())
                 {
-                    //generate messageId from key
-                    int messageId = generatedKeys.getInt(1);
-                    //return new message object
-                    return new Message(messageId, account_id, message_text, time_posted_epoch);
+                    //iterated through keys
+                    if(generatedKeys.next())
+                    {
+                        //generate messageId from key
+                        int messageId = generatedKeys.getInt(1);
+                        //return new message object
+                        return new Message(messageId, account_id, message_text, time_posted_epoch);
+                    }
                 }
             }
 
@@ -170,35 +229,124 @@ public class SocialMediaDAOImpl implements SocialMediaDAO
         return null;
     }
 
+    //create many messages in one transaction
+    @Override
+    public List<Integer> createMessages(List<Message> messages)
+    {
+        //create sql prepared statement to insert values into message table, reused for every row in the batch
+        String sql = INSERT_MESSAGE_SQL;
+
+        //try catch block, borrowing a connection from the pool and closing the statement and connection when done
+        try(Connection connection = ConnectionUtil.getConnection();
+            PreparedStatement preparedStatement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS))
+        {
+            //commit every row together, so one round of log writes covers the whole batch
+            connection.setAutoCommit(false);
+            try
+            {
+                //queue each row on the statement
+                for(Message message : messages)
+                {
+                    preparedStatement.setInt(1, message.getPosted_by());
+                    preparedStatement.setString(2, message.getMessage_text());
+                    preparedStatement.setLong(3, message.getTime_posted_epoch());
+                    preparedStatement.addBatch();
+                }
+                preparedStatement.executeBatch();
+
+                //collect one generated key per row, in insert order
+                List<Integer> messageIds = new ArrayList<>(messages.size());
+                try(ResultSet generatedKeys = preparedStatement.getGeneratedKeys())
+                {
+                    while(generatedKeys.next())
+                    {
+                        messageIds.add(generatedKeys.getInt(1));
+                    }
+                }
+                if(messageIds.size() != messages.size())
+                {
+                    throw new SQLException("Expected " + messages.size() + " generated keys but got " + messageIds.size());
+                }
+                connection.commit();
+                return messageIds;
+            }
+            catch(SQLException e)
+            {
+                //undo any rows already inserted, then let the outer catch report the error
+                connection.rollback();
+                throw e;
+            }
+        }
+        //catch exception if connection fails
+        catch(SQLException e)
+        {
+            System.out.println("Error: " + e.getMessage());
+        }
+        //return null if the batch was not created
+        return null;
+    }
+
+    //find which of the given accounts exist
+    @Override
+    public Set<Integer> getExistingAccountIds(Set<Integer> account_ids)
+    {
+        //create sql prepared statement matching every id at once against an array parameter
+        String sql = EXISTING_ACCOUNT_IDS_SQL;
+
+        //try catch block, borrowing a connection from the pool and closing the statement and connection when done
+        try(Connection connection = ConnectionUtil.getConnection();
+            PreparedStatement preparedStatement = connection.prepareStatement(sql))
+        {
+            //set values of sql prepared statement
+            preparedStatement.setObject(1, account_ids.toArray(new Integer[0]));
+
+            //execute sql prepared statement and collect the ids found
+            try(ResultSet resultSet = preparedStatement.executeQuery())
+            {
+                Set<Integer> existing = new HashSet<>();
+                while(resultSet.next())
+                {
+                    existing.add(resultSet.getInt("account_id"));
+                }
+                return existing;
+            }
+        }
+        //catch exception if connection fails
+        catch(SQLException e)
+        {
+            System.out.println("Error: " + e.getMessage());
+        }
+        //return null on failure
+        return null;
+    }
+
     //get message by message id
     @Override
     public Message getMessageById(int message_id)
     {
-        //create connection to database
-        Connection connection = ConnectionUtil.getConnection();
+        //create sql prepared statement searching for message by message_id
+        String sql = MESSAGE_BY_ID_SQL;
 
-        //try catch block
-        try
+        //try catch block, borrowing a connection from the pool and closing the statement and connection when done
+        try(Connection connection = ConnectionUtil.getConnection();
+            PreparedStatement preparedStatement = connection.prepareStatement(sql))
         {
-            //create sql prepared statement searching for message by message_id
-            String sql = "SELECT * FROM message WHERE message_id = ?";
-            PreparedStatement preparedStatement = connection.prepareStatement(sql);
-
             //set values of sql prepared statement
             preparedStatement.setInt(1, message_id);
 
             //execute sql prepared statement and get results, if any
-            ResultSet resultSet = preparedStatement.executeQuery();
-
-            //if there are results
-            if(resultSet.next())
+            try(ResultSet resultSet = preparedStatement.executeQuery())
             {
-                //retrieve message meta data, account_id, message_text, time_posted_epoch
-                int account_id = resultSet.getInt("posted_by");
-                String message_text = resultSet.getString("message_text");
-                long time_posted_epoch = resultSet.getLong("time_posted_epoch");
-                //return new message object using data parameters
-                return new Message(message_id, account_id, message_text, time_posted_epoch);
+                //if there are results
+                if(resultSet.next())
+                {
+                    //retrieve message meta data, account_id, message_text, time_posted_epoch
+                    int account_id = resultSet.getInt("posted_by");
+                    String message_text = resultSet.getString("message_text");
+                    long time_posted_epoch = resultSet.getLong("time_posted_epoch");
+                    //return new message object using data parameters
+                    return new Message(message_id, account_id, message_text, time_posted_epoch);
+                }
             }
         }
         //catch exception if connection fails
@@ -214,19 +362,14 @@ public class SocialMediaDAOImpl implements SocialMediaDAO
     @Override
     public List<Message> getAllMessages()
     {
-        //create connection to database
-        Connection connection = ConnectionUtil.getConnection();
+        //create sql prepared statement searching for all messages
+        String sql = ALL_MESSAGES_SQL;
 
-        //try catch block
-        try
-        {
-            //create sql prepared statement searching for all messages
-            String sql = "SELECT * FROM message";
+        //try catch block, borrowing a connection from the pool and closing the statement, results and connection when done
+        try(Connection connection = ConnectionUtil.getConnection();
             PreparedStatement preparedStatement = connection.prepareStatement(sql);
-
-            //execute sql prepared statement and get results, if any
-            ResultSet resultSet = preparedStatement.executeQuery();
-
+            ResultSet resultSet = preparedStatement.executeQuery())
+        {
             //create list to store any messages
             List<Message> messages = new ArrayList<>();
 
@@ -252,79 +395,218 @@ public class SocialMediaDAOImpl implements SocialMediaDAO
         //return null if no results
         return null;
     }
-    
+
     //get all messages for user
     @Override
     public List<Message> getAllMessagesForUser(int account_id)
     {
-        //create connection to database
-        Connection connection = ConnectionUtil.getConnection();
+        //create sql prepared statement searching for message by account_id
+        String sql = MESSAGES_FOR_USER_SQL;
 
-        //try catch block
-        try
+        //try catch block, borrowing a connection from the pool and closing the statement and connection when done
+        try(Connection connection = ConnectionUtil.getConnection();
+            PreparedStatement preparedStatement = connection.prepareStatement(sql))
         {
-            //create sql prepared statement searching for message by account_id
-            String sql = "SELECT * FROM message WHERE posted_by = ?";
-            PreparedStatement preparedStatement = connection.prepareStatement(sql);
-
             //set values of sql prepared statement
             preparedStatement.setInt(1, account_id);
 
             //execute sql prepared statement and get results, if any
-            ResultSet resultSet = preparedStatement.executeQuery();
+            try(ResultSet resultSet = preparedStatement.executeQuery())
+            {
+                //create list to store any messages
+                List<Message> messages = new ArrayList<>();
 
-            //create list to store any messages
-            List<Message> messages = new ArrayList<>();
+                //iterate through resultSet to store all results, creating new message objects and storing in message List
+                while(resultSet.next())
+                {
+                    //retrieve message meta data, message_id, account_id, message_text, time_posted_epoch
+                    int message_id = resultSet.getInt("message_id");
+                    String message_text = resultSet.getString("message_text");
+                    long time_posted_epoch = resultSet.getLong("time_posted_epoch");
+                    //create Message object and add to messages list
+                    messages.add(new Message(message_id, account_id, message_text, time_posted_epoch));
+                }
+                //return list of results
+                return messages;
+            }
+        }
+        //catch exception if connection fails
+        catch(SQLException e)
+        {
+            System.out.println("Error: " + e.getMessage());
+        }
+        //return null if no results
+        return null;
+    }
 
-            //iterate through resultSet to store all results, creating new message objects and storing in message List
-            while(resultSet.next())
+    //get a page of messages after a message id
+    @Override
+    public List<Message> getMessagesAfter(int after_message_id, int limit)
+    {
+        //create sql prepared statement seeking past the last message id seen, so each page reads only its own rows
+        String sql = MESSAGES_PAGE_SQL;
+
+        //try catch block, borrowing a connection from the pool and closing the statement and connection when done
+        try(Connection connection = ConnectionUtil.getConnection();
+            PreparedStatement preparedStatement = connection.prepareStatement(sql))
+        {
+            //set values of sql prepared statement
+            preparedStatement.setInt(1, after_message_id);
+            preparedStatement.setInt(2, limit);
+
+            //execute sql prepared statement and map results
+            try(ResultSet resultSet = preparedStatement.executeQuery())
             {
-                //retrieve message meta data, message_id, account_id, message_text, time_posted_epoch
-                int message_id = resultSet.getInt("message_id");
-                String message_text = resultSet.getString("message_text");
-                long time_posted_epoch = resultSet.getLong("time_posted_epoch");
-                //create Message object and add to messages list
-                messages.add(new Message(message_id, account_id, message_text, time_posted_epoch));
+                return mapMessages(resultSet);
             }
-            //return list of results
-            return messages;
         }
         //catch exception if connection fails
         catch(SQLException e)
         {
             System.out.println("Error: " + e.getMessage());
         }
-        //return null if no results
+        //return null on failure
         return null;
     }
 
-    //update message
+    //get a page of messages for user after a message id
     @Override
-    public Message updateMessage(int message_id, String new_text)
+    public List<Message> getMessagesForUserAfter(int account_id, int after_message_id, int limit)
     {
-        //create connection to database
-        Connection connection = ConnectionUtil.getConnection();
+        //create sql prepared statement seeking past the last message id seen for this user
+        String sql = MESSAGES_FOR_USER_PAGE_SQL;
 
-        //create null message object
-        Message message = null;
+        //try catch block, borrowing a connection from the pool and closing the statement and connection when done
+        try(Connection connection = ConnectionUtil.getConnection();
+            PreparedStatement preparedStatement = connection.prepareStatement(sql))
+        {
+            //set values of sql prepared statement
+            preparedStatement.setInt(1, account_id);
+            preparedStatement.setInt(2, after_message_id);
+            preparedStatement.setInt(3, limit);
+
+            //execute sql prepared statement and map results
+            try(ResultSet resultSet = preparedStatement.executeQuery())
+            {
+                return mapMessages(resultSet);
+            }
+        }
+        //catch exception if connection fails
+        catch(SQLException e)
+        {
+            System.out.println("Error: " + e.getMessage());
+        }
+        //return null on failure
+        return null;
+    }
+
+    //map every remaining row of a message result set to a Message
+    private List<Message> mapMessages(ResultSet resultSet) throws SQLException
+    {
+        //create list to store any messages
+        List<Message> messages = new ArrayList<>();
+
+        //iterate through resultSet, creating new message objects and storing in message List
+        while(resultSet.next())
+        {
+            int message_id = resultSet.getInt("message_id");
+            int account_id = resultSet.getInt("posted_by");
+            String message_text = resultSet.getString("message_text");
+            long time_posted_epoch = resultSet.getLong("time_posted_epoch");
+            messages.add(new Message(message_id, account_id, message_text, time_posted_epoch));
+        }
+        return messages;
+    }
 
-        //try catch block
+    //stream all messages
+    @Override
+    public MessageRowIterator streamAllMessages()
+    {
+        //create sql prepared statement searching for all messages, in a stable order for clients reading the stream
+        return streamMessages(STREAM_MESSAGES_SQL, null);
+    }
+
+    //stream all messages for user
+    @Override
+    public MessageRowIterator streamAllMessagesForUser(int account_id)
+    {
+        //create sql prepared statement searching for message by account_id
+        return streamMessages(STREAM_MESSAGES_FOR_USER_SQL, account_id);
+    }
+
+    //open a lazily evaluated query and hand the open rows to an iterator, which takes over closing them
+    private MessageRowIterator streamMessages(String sql, Integer account_id)
+    {
+        Connection connection = null;
+        PreparedStatement preparedStatement = null;
         try
         {
-            //create sql prepared statement searching for message by message_id
-            String sql = "UPDATE message SET message_text = ? WHERE message_id = ?";
-            PreparedStatement preparedStatement = connection.prepareStatement(sql);
+            //borrow a connection and ask h2 to produce rows as they are read instead of materializing the result
+            connection = ConnectionUtil.getConnection();
+            try(Statement lazy = connection.createStatement())
+            {
+                lazy.execute("SET LAZY_QUERY_EXECUTION TRUE");
+            }
 
+            preparedStatement = connection.prepareStatement(sql);
+            preparedStatement.setFetchSize(STREAM_FETCH_SIZE);
+            if(account_id != null)
+            {
+                preparedStatement.setInt(1, account_id);
+            }
+            ResultSet resultSet = preparedStatement.executeQuery();
+            return new MessageRowIterator(connection, preparedStatement, resultSet, "SET LAZY_QUERY_EXECUTION FALSE");
+        }
+        //catch exception if connection fails, returning anything already opened
+        catch(SQLException e)
+        {
+            System.out.println("Error: " + e.getMessage());
+            if(connection != null)
+            {
+                try(Connection c = connection)
+                {
+                    if(preparedStatement != null)
+                    {
+                        preparedStatement.close();
+                    }
+                    try(Statement reset = c.createStatement())
+                    {
+                        reset.execute("SET LAZY_QUERY_EXECUTION FALSE");
+                    }
+                }
+                catch(SQLException closeError)
+                {
+                    System.out.println("Error: " + closeError.getMessage());
+                }
+            }
+        }
+        //return null on failure
+        return null;
+    }
+
+    //update message
+    @Override
+    public Message updateMessage(int message_id, String new_text)
+    {
+        //create sql prepared statement updating the message and reading back the updated row in the same statement
+        String sql = UPDATE_MESSAGE_SQL;
+
+        //try catch block, borrowing a connection from the pool and closing the statement and connection when done
+        try(Connection connection = ConnectionUtil.getConnection();
+            PreparedStatement preparedStatement = connection.prepareStatement(sql))
+        {
             //set values of sql prepared statement
             preparedStatement.setString(1, new_text);
             preparedStatement.setInt(2, message_id);
 
-            //execute sql prepared statement and store results, if any
-            int affectedRows = preparedStatement.executeUpdate();
-            if(affectedRows > 0)
+            //execute sql prepared statement, which returns the updated row if the message existed
+            try(ResultSet resultSet = preparedStatement.executeQuery())
             {
-                //get updated message from database using message_id
-                message = getMessageById(message_id);
+                List<Message> updated = mapMessages(resultSet);
+                if(!updated.isEmpty())
+                {
+                    return updated.get(0);
+                }
             }
         }
         //catch exception if connection fails
@@ -332,43 +614,40 @@ public class SocialMediaDAOImpl implements SocialMediaDAO
         {
             System.out.println("Error: " + e.getMessage());
         }
-        //return message
-        return message;
+        //return null if no message was updated
+        return null;
     }
 
     //delete message
     @Override
     public Message deleteMessage(int message_id)
     {
-        //create connection to database
-        Connection connection = ConnectionUtil.getConnection();
-        
-        //create null message object
-        Message message = null;
-        //try catch block
-        try
+        //create sql prepared statement deleting the message and reading back the deleted row in the same statement
+        String sql = DELETE_MESSAGE_SQL;
+
+        //try catch block, borrowing a connection from the pool and closing the statement and connection when done
+        try(Connection connection = ConnectionUtil.getConnection();
+            PreparedStatement preparedStatement = connection.prepareStatement(sql))
         {
-            //retrieve message from database
-            message = getMessageById(message_id);
-            
-            //if message exists
-            if(message != null)
+            //set values of sql prepared statement
+            preparedStatement.setInt(1, message_id);
+
+            //execute sql prepared statement, which returns the deleted row if the message existed
+            try(ResultSet resultSet = preparedStatement.executeQuery())
             {
-                //create sql prepared statement deleting message
-                String sql = "DELETE FROM message WHERE message_id = ?";
-                PreparedStatement preparedStatement = connection.prepareStatement(sql);
-            
-                //set values of sql prepared statement and execute
-                preparedStatement.setInt(1, message_id);
-                preparedStatement.executeUpdate();
-            }            
+                List<Message> deleted = mapMessages(resultSet);
+                if(!deleted.isEmpty())
+                {
+                    return deleted.get(0);
+                }
+            }
         }
         //catch exception if connection fails
         catch(SQLException e)
         {
             System.out.println("Error: " + e.getMessage());
         }
-        //return message object
-        return message;
+        //return null if no message was deleted
+        return null;
     }
 }
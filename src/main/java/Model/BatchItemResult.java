@@ -0,0 +1,120 @@
+package Model;
+
+import java.util.Objects;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * This is a class that models the outcome of one item in a batch request. A created item carries its message_id, a
+ * rejected item carries an error instead; the field that does not apply is left out of the JSON.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BatchItemResult {
+    /**
+     * The position of the item in the request array, starting at 0.
+     */
+    public int index;
+    /**
+     * The id generated for the item, if it was created.
+     */
+    public Integer message_id;
+    /**
+     * Why the item was rejected, if it was.
+     */
+    public String error;
+    /**
+     * A default, no-args constructor, as well as correctly formatted getters and setters, are needed for
+     * Jackson Objectmapper to work.
+     */
+    public BatchItemResult(){
+    }
+    /**
+     * @param index
+     * @param message_id
+     * @param error
+     */
+    public BatchItemResult(int index, Integer message_id, String error) {
+        this.index = index;
+        this.message_id = message_id;
+        this.error = error;
+    }
+    /**
+     * @return a result for an item that was created with message_id
+     */
+    public static BatchItemResult created(int index, int message_id) {
+        return new BatchItemResult(index, message_id, null);
+    }
+    /**
+     * @return a result for an item that was rejected because of error
+     */
+    public static BatchItemResult rejected(int index, String error) {
+        return new BatchItemResult(index, null, error);
+    }
+    /**
+     * Properly named getters and setters are necessary for Jackson ObjectMapper to work. You may use them as well.
+     * @return index
+     */
+    public int getIndex() {
+        return index;
+    }
+    /**
+     * Properly named getters and setters are necessary for Jackson ObjectMapper to work. You may use them as well.
+     * @param index
+     */
+    public void setIndex(int index) {
+        this.index = index;
+    }
+    /**
+     * Properly named getters and setters are necessary for Jackson ObjectMapper to work. You may use them as well.
+     * @return message_id
+     */
+    public Integer getMessage_id() {
+        return message_id;
+    }
+    /**
+     * Properly named getters and setters are necessary for Jackson ObjectMapper to work. You may use them as well.
+     * @param message_id
+     */
+    public void setMessage_id(Integer message_id) {
+        this.message_id = message_id;
+    }
+    /**
+     * Properly named getters and setters are necessary for Jackson ObjectMapper to work. You may use them as well.
+     * @return error
+     */
+    public String getError() {
+        return error;
+    }
+    /**
+     * Properly named getters and setters are necessary for Jackson ObjectMapper to work. You may use them as well.
+     * @param error
+     */
+    public void setError(String error) {
+        this.error = error;
+    }
+    /**
+     * Overriding the default equals() method adds functionality to tell when two objects are identical, allowing
+     * Assert.assertEquals and List.contains to function.
+     * @param o the other object.
+     * @return true if o is equal to this object.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        BatchItemResult that = (BatchItemResult) o;
+        return index == that.index && Objects.equals(message_id, that.message_id) && Objects.equals(error, that.error);
+    }
+    /**
+     * Overriding the default toString() method allows for easy debugging.
+     * @return a String representation of this class.
+     */
+    @Override
+    public String toString() {
+        return "BatchItemResult{" +
+                "index=" + index +
+                ", message_id=" + message_id +
+                ", error='" + error + '\'' +
+                '}';
+    }
+}
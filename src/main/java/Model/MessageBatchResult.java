@@ -0,0 +1,66 @@
+package Model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This is a class that models the response to POST /messages/batch: the items that were created, with their new ids,
+ * and the items that were rejected, with the reason.
+ */
+public class MessageBatchResult {
+    /**
+     * Items that were inserted, in request order.
+     */
+    public List<BatchItemResult> created;
+    /**
+     * Items that were rejected, in request order.
+     */
+    public List<BatchItemResult> errors;
+    /**
+     * A default, no-args constructor, as well as correctly formatted getters and setters, are needed for
+     * Jackson Objectmapper to work.
+     */
+    public MessageBatchResult(){
+        this.created = new ArrayList<>();
+        this.errors = new ArrayList<>();
+    }
+    /**
+     * Properly named getters and setters are necessary for Jackson ObjectMapper to work. You may use them as well.
+     * @return created
+     */
+    public List<BatchItemResult> getCreated() {
+        return created;
+    }
+    /**
+     * Properly named getters and setters are necessary for Jackson ObjectMapper to work. You may use them as well.
+     * @param created
+     */
+    public void setCreated(List<BatchItemResult> created) {
+        this.created = created;
+    }
+    /**
+     * Properly named getters and setters are necessary for Jackson ObjectMapper to work. You may use them as well.
+     * @return errors
+     */
+    public List<BatchItemResult> getErrors() {
+        return errors;
+    }
+    /**
+     * Properly named getters and setters are necessary for Jackson ObjectMapper to work. You may use them as well.
+     * @param errors
+     */
+    public void setErrors(List<BatchItemResult> errors) {
+        this.errors = errors;
+    }
+    /**
+     * Overriding the default toString() method allows for easy debugging.
+     * @return a String representation of this class.
+     */
+    @Override
+    public String toString() {
+        return "MessageBatchResult{" +
+                "created=" + created +
+                ", errors=" + errors +
+                '}';
+    }
+}
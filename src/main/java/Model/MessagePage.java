@@ -0,0 +1,87 @@
+package Model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * This is a class that models one page of a keyset-paginated message listing.
+ */
+public class MessagePage {
+    /**
+     * The messages on this page, in ascending message_id order.
+     */
+    public List<Message> messages;
+    /**
+     * An opaque cursor to pass back as the cursor query parameter to fetch the next page, or null if this is the last
+     * page.
+     */
+    public String next_cursor;
+    /**
+     * A default, no-args constructor, as well as correctly formatted getters and setters, are needed for
+     * Jackson Objectmapper to work.
+     */
+    public MessagePage(){
+        this.messages = new ArrayList<>();
+    }
+    /**
+     * @param messages
+     * @param next_cursor
+     */
+    public MessagePage(List<Message> messages, String next_cursor) {
+        this.messages = messages;
+        this.next_cursor = next_cursor;
+    }
+    /**
+     * Properly named getters and setters are necessary for Jackson ObjectMapper to work. You may use them as well.
+     * @return messages
+     */
+    public List<Message> getMessages() {
+        return messages;
+    }
+    /**
+     * Properly named getters and setters are necessary for Jackson ObjectMapper to work. You may use them as well.
+     * @param messages
+     */
+    public void setMessages(List<Message> messages) {
+        this.messages = messages;
+    }
+    /**
+     * Properly named getters and setters are necessary for Jackson ObjectMapper to work. You may use them as well.
+     * @return next_cursor
+     */
+    public String getNext_cursor() {
+        return next_cursor;
+    }
+    /**
+     * Properly named getters and setters are necessary for Jackson ObjectMapper to work. You may use them as well.
+     * @param next_cursor
+     */
+    public void setNext_cursor(String next_cursor) {
+        this.next_cursor = next_cursor;
+    }
+    /**
+     * Overriding the default equals() method adds functionality to tell when two objects are identical, allowing
+     * Assert.assertEquals and List.contains to function.
+     * @param o the other object.
+     * @return true if o is equal to this object.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        MessagePage page = (MessagePage) o;
+        return messages.equals(page.messages) && Objects.equals(next_cursor, page.next_cursor);
+    }
+    /**
+     * Overriding the default toString() method allows for easy debugging.
+     * @return a String representation of this class.
+     */
+    @Override
+    public String toString() {
+        return "MessagePage{" +
+                "messages=" + messages +
+                ", next_cursor='" + next_cursor + '\'' +
+                '}';
+    }
+}
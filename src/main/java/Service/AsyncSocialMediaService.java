@@ -0,0 +1,42 @@
+package Service;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import DAO.MessageRowIterator;
+import Model.Account;
+import Model.Message;
+import Model.MessageBatchResult;
+import Model.MessagePage;
+
+//the SocialMediaService calls, run off the caller's thread; each future completes with what the blocking call returns
+public interface AsyncSocialMediaService
+{
+    //Account CRUD (create, read, update, delete)
+    CompletableFuture<Account> createAccount(String username, String password);
+    CompletableFuture<Account> getAccountByUsername(String username);
+    CompletableFuture<Account> validatePassword(String username, String password);
+
+    //Message CRUD (create, read, update, delete)
+    CompletableFuture<Message> createMessage(int account_id, String message_text, long time_posted_epoch);
+    CompletableFuture<MessageBatchResult> createMessages(List<Message> messages);
+    CompletableFuture<Message> getMessageById(int message_id);
+    CompletableFuture<List<Message>> getAllMessages();
+    CompletableFuture<List<Message>> getAllMessagesForUser(int account_id);
+    CompletableFuture<MessagePage> getMessagePage(int after_message_id, int limit);
+    CompletableFuture<MessagePage> getMessagePageForUser(int account_id, int after_message_id, int limit);
+    CompletableFuture<Message> updateMessage(int message_id, String new_text);
+    CompletableFuture<Message> deleteMessage(int message_id);
+
+    //stream messages to reader on the thread running the query, closing the iterator once reader returns; reader is
+    //given null if the query could not be opened
+    <T> CompletableFuture<T> streamAllMessages(MessageStreamReader<T> reader);
+    <T> CompletableFuture<T> streamAllMessagesForUser(int account_id, MessageStreamReader<T> reader);
+
+    //consumes an open message stream, such as by writing it to a response
+    interface MessageStreamReader<T>
+    {
+        T read(MessageRowIterator messages) throws IOException;
+    }
+}
@@ -0,0 +1,194 @@
+package Service;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+
+import DAO.MessageRowIterator;
+import Model.Account;
+import Model.Message;
+import Model.MessageBatchResult;
+import Model.MessagePage;
+import Util.ConnectionUtil;
+import Util.DatabaseExecutor;
+import Util.Tracer;
+
+//runs each call of a blocking SocialMediaService on a DatabaseExecutor. A whole service call is one task, so a call
+//that makes several DAO calls, such as validating a poster and then inserting, runs them back to back on one thread,
+//inside a trace span named after the call.
+//streamed listings hold their thread and connection until the client has read the whole response, so they run on a
+//second, smaller executor: clients that read slowly can tie up only those threads, never the ones other calls need.
+public class ExecutorSocialMediaService implements AsyncSocialMediaService, AutoCloseable
+{
+    //database executor settings: -Ddb.executor.threads defaults to the connection pool size, and
+    //-Ddb.executor.queueCapacity is how many calls may wait for a thread before more are turned away
+    static final int DB_EXECUTOR_THREADS = Integer.getInteger("db.executor.threads", 0);
+    static final int DB_EXECUTOR_QUEUE_CAPACITY = Integer.getInteger("db.executor.queueCapacity", 1000);
+
+    //-Ddb.executor.streamThreads is how many listings may stream at once; it defaults to a quarter of the connection
+    //pool and is kept below the pool size, so streams waiting on slow clients always leave connections for other calls
+    static final int DB_STREAM_THREADS = Integer.getInteger("db.executor.streamThreads", 0);
+
+    private final SocialMediaService socialMediaService;
+    private final DatabaseExecutor databaseExecutor;
+    private final DatabaseExecutor streamExecutor;
+
+    //constructor using the configured executor sizes
+    public ExecutorSocialMediaService(SocialMediaService socialMediaService)
+    {
+        this(socialMediaService, ConnectionUtil.getPool().getMaxSize());
+    }
+
+    //constructor sizing both executors for a connection pool of poolSize
+    private ExecutorSocialMediaService(SocialMediaService socialMediaService, int poolSize)
+    {
+        this(socialMediaService,
+                new DatabaseExecutor(DB_EXECUTOR_THREADS > 0 ? DB_EXECUTOR_THREADS : poolSize,
+                        DB_EXECUTOR_QUEUE_CAPACITY),
+                new DatabaseExecutor(streamThreads(poolSize), DB_EXECUTOR_QUEUE_CAPACITY));
+    }
+
+    //constructor with given executors for the calls and for the streamed listings
+    public ExecutorSocialMediaService(SocialMediaService socialMediaService, DatabaseExecutor databaseExecutor,
+            DatabaseExecutor streamExecutor)
+    {
+        this.socialMediaService = socialMediaService;
+        this.databaseExecutor = databaseExecutor;
+        this.streamExecutor = streamExecutor;
+    }
+
+    //the configured number of stream threads, or a quarter of the pool, at least 1 and below the pool size if it can be
+    static int streamThreads(int poolSize)
+    {
+        int threads = DB_STREAM_THREADS > 0 ? DB_STREAM_THREADS : poolSize / 4;
+        return Math.max(1, Math.min(threads, poolSize - 1));
+    }
+
+    //the executor the calls run on, for reading its queue metrics
+    public DatabaseExecutor getDatabaseExecutor()
+    {
+        return databaseExecutor;
+    }
+
+    //the executor the streamed listings run on, for reading its queue metrics
+    public DatabaseExecutor getStreamExecutor()
+    {
+        return streamExecutor;
+    }
+
+    //stop taking calls; calls already queued still run
+    @Override
+    public void close()
+    {
+        databaseExecutor.close();
+        streamExecutor.close();
+    }
+
+    //run a service call on the database executor inside a span named for it
+    private <T> CompletableFuture<T> submit(String span, Callable<T> call)
+    {
+        return submit(databaseExecutor, span, call);
+    }
+
+    //run a service call on the given executor inside a span named for it
+    private <T> CompletableFuture<T> submit(DatabaseExecutor executor, String span, Callable<T> call)
+    {
+        return executor.submit(() ->
+        {
+            int started = Tracer.start(span);
+            try
+            {
+                return call.call();
+            }
+            finally
+            {
+                Tracer.end(started);
+            }
+        });
+    }
+
+    public CompletableFuture<Account> createAccount(String username, String password)
+    {
+        return submit("service.createAccount", () -> socialMediaService.createAccount(username, password));
+    }
+
+    public CompletableFuture<Account> getAccountByUsername(String username)
+    {
+        return submit("service.getAccountByUsername", () -> socialMediaService.getAccountByUsername(username));
+    }
+
+    public CompletableFuture<Account> validatePassword(String username, String password)
+    {
+        return submit("service.validatePassword", () -> socialMediaService.validatePassword(username, password));
+    }
+
+    public CompletableFuture<Message> createMessage(int account_id, String message_text, long time_posted_epoch)
+    {
+        return submit("service.createMessage", () ->
+                socialMediaService.createMessage(account_id, message_text, time_posted_epoch));
+    }
+
+    public CompletableFuture<MessageBatchResult> createMessages(List<Message> messages)
+    {
+        return submit("service.createMessages", () -> socialMediaService.createMessages(messages));
+    }
+
+    public CompletableFuture<Message> getMessageById(int message_id)
+    {
+        return submit("service.getMessageById", () -> socialMediaService.getMessageById(message_id));
+    }
+
+    public CompletableFuture<List<Message>> getAllMessages()
+    {
+        return submit("service.getAllMessages", socialMediaService::getAllMessages);
+    }
+
+    public CompletableFuture<List<Message>> getAllMessagesForUser(int account_id)
+    {
+        return submit("service.getAllMessagesForUser", () -> socialMediaService.getAllMessagesForUser(account_id));
+    }
+
+    public CompletableFuture<MessagePage> getMessagePage(int after_message_id, int limit)
+    {
+        return submit("service.getMessagePage", () -> socialMediaService.getMessagePage(after_message_id, limit));
+    }
+
+    public CompletableFuture<MessagePage> getMessagePageForUser(int account_id, int after_message_id, int limit)
+    {
+        return submit("service.getMessagePageForUser", () ->
+                socialMediaService.getMessagePageForUser(account_id, after_message_id, limit));
+    }
+
+    public CompletableFuture<Message> updateMessage(int message_id, String new_text)
+    {
+        return submit("service.updateMessage", () -> socialMediaService.updateMessage(message_id, new_text));
+    }
+
+    public CompletableFuture<Message> deleteMessage(int message_id)
+    {
+        return submit("service.deleteMessage", () -> socialMediaService.deleteMessage(message_id));
+    }
+
+    //the stream holds its connection until reader returns, so reading it stays on a stream thread
+    public <T> CompletableFuture<T> streamAllMessages(MessageStreamReader<T> reader)
+    {
+        return submit(streamExecutor, "service.streamAllMessages", () ->
+        {
+            try(MessageRowIterator messages = socialMediaService.streamAllMessages())
+            {
+                return reader.read(messages);
+            }
+        });
+    }
+
+    public <T> CompletableFuture<T> streamAllMessagesForUser(int account_id, MessageStreamReader<T> reader)
+    {
+        return submit(streamExecutor, "service.streamAllMessagesForUser", () ->
+        {
+            try(MessageRowIterator messages = socialMediaService.streamAllMessagesForUser(account_id))
+            {
+                return reader.read(messages);
+            }
+        });
+    }
+}
@@ -0,0 +1,256 @@
+package Service;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import DAO.SocialMediaDAO;
+import Model.Message;
+import Util.Histogram;
+
+/**
+ * The MessageWriteCoalescer class groups concurrent message inserts into shared transactions. Callers of submit() are
+ * queued; a single committer thread takes up to batchSize of them, waiting at most lingerMicros after the first one
+ * for more to arrive, and inserts them with one batched statement and one commit. Each caller blocks until its own
+ * row is committed and then gets its generated message_id back, so the result is the same as an individual insert.
+ * Since every caller holds its thread while it waits, a batch never holds more messages than there are threads
+ * calling submit() at once.
+ *
+ * Messages are expected to have passed the message text rules already. Posters are checked for the whole batch in one
+ * query, and if the batched insert fails, every message in it is retried on its own so one bad row cannot fail the
+ * others.
+ */
+public class MessageWriteCoalescer implements AutoCloseable
+{
+    private final SocialMediaDAO socialDAO;
+    private final int batchSize;
+    private final long lingerNanos;
+    private final BlockingQueue<PendingMessage> queue = new LinkedBlockingQueue<>();
+    private final Thread committer;
+    private volatile boolean closed = false;
+
+    //how many messages went into each commit, and how long each message waited in the queue, in microseconds
+    private final Histogram batchSizes = new Histogram();
+    private final Histogram queueWaitMicros = new Histogram();
+
+    /**
+     * @param socialDAO the DAO used to insert the batches
+     * @param batchSize the most messages committed together
+     * @param lingerMicros how long to wait after the first queued message for the batch to fill
+     */
+    public MessageWriteCoalescer(SocialMediaDAO socialDAO, int batchSize, long lingerMicros)
+    {
+        if(batchSize < 1)
+        {
+            throw new IllegalArgumentException("batchSize must be at least 1");
+        }
+        this.socialDAO = socialDAO;
+        this.batchSize = batchSize;
+        this.lingerNanos = TimeUnit.MICROSECONDS.toNanos(lingerMicros);
+        this.committer = new Thread(this::run, "message-group-commit");
+        this.committer.setDaemon(true);
+        this.committer.start();
+    }
+
+    /**
+     * Queue a message and wait for the batch holding it to commit.
+     * @return the created message with its message_id, or null if it could not be created
+     */
+    public Message submit(int account_id, String message_text, long time_posted_epoch)
+    {
+        if(closed)
+        {
+            return null;
+        }
+        PendingMessage pending = new PendingMessage(new Message(account_id, message_text, time_posted_epoch));
+        queue.add(pending);
+        //close() may have drained the queue between the check above and the add
+        if(closed && queue.remove(pending))
+        {
+            return null;
+        }
+        try
+        {
+            return pending.result.get();
+        }
+        catch(InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        catch(ExecutionException e)
+        {
+            System.out.println("Error: " + e.getCause().getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * @return the number of messages in each committed batch
+     */
+    public Histogram getBatchSizes()
+    {
+        return batchSizes;
+    }
+
+    /**
+     * @return how long messages waited between being queued and their batch starting, in microseconds
+     */
+    public Histogram getQueueWaitMicros()
+    {
+        return queueWaitMicros;
+    }
+
+    /**
+     * @return the number of messages waiting for a batch
+     */
+    public int getQueueDepth()
+    {
+        return queue.size();
+    }
+
+    /**
+     * Stop the committer thread. Messages still queued are completed with null.
+     */
+    @Override
+    public void close()
+    {
+        closed = true;
+        committer.interrupt();
+        PendingMessage pending;
+        while((pending = queue.poll()) != null)
+        {
+            pending.result.complete(null);
+        }
+    }
+
+    //committer loop: block for the first message, then gather more until the batch is full or the linger time is up
+    private void run()
+    {
+        List<PendingMessage> batch = new ArrayList<>(batchSize);
+        while(!closed)
+        {
+            try
+            {
+                batch.add(queue.take());
+                long deadline = System.nanoTime() + lingerNanos;
+                while(batch.size() < batchSize)
+                {
+                    //take whatever is already queued without waiting, then wait out the rest of the linger time
+                    if(queue.drainTo(batch, batchSize - batch.size()) > 0)
+                    {
+                        continue;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    if(remaining <= 0)
+                    {
+                        break;
+                    }
+                    PendingMessage next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if(next == null)
+                    {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            }
+            catch(InterruptedException e)
+            {
+                for(PendingMessage pending : batch)
+                {
+                    pending.result.complete(null);
+                }
+                return;
+            }
+
+            try
+            {
+                commit(batch);
+            }
+            catch(RuntimeException e)
+            {
+                for(PendingMessage pending : batch)
+                {
+                    pending.result.completeExceptionally(e);
+                }
+            }
+            batch.clear();
+        }
+    }
+
+    //insert one batch and hand each caller its result
+    private void commit(List<PendingMessage> batch)
+    {
+        long started = System.nanoTime();
+        for(PendingMessage pending : batch)
+        {
+            queueWaitMicros.record(TimeUnit.NANOSECONDS.toMicros(started - pending.queuedAt));
+        }
+
+        //check every poster in one query, failing messages whose poster does not exist
+        Set<Integer> postedBy = new HashSet<>();
+        for(PendingMessage pending : batch)
+        {
+            postedBy.add(pending.message.getPosted_by());
+        }
+        Set<Integer> existingAccounts = socialDAO.getExistingAccountIds(postedBy);
+        List<PendingMessage> valid = new ArrayList<>(batch.size());
+        for(PendingMessage pending : batch)
+        {
+            if(existingAccounts != null && existingAccounts.contains(pending.message.getPosted_by()))
+            {
+                valid.add(pending);
+            }
+            else
+            {
+                pending.result.complete(null);
+            }
+        }
+        if(valid.isEmpty())
+        {
+            return;
+        }
+        batchSizes.record(valid.size());
+
+        List<Message> messages = new ArrayList<>(valid.size());
+        for(PendingMessage pending : valid)
+        {
+            messages.add(pending.message);
+        }
+        List<Integer> messageIds = socialDAO.createMessages(messages);
+
+        for(int i = 0; i < valid.size(); i++)
+        {
+            Message message = valid.get(i).message;
+            if(messageIds != null)
+            {
+                valid.get(i).result.complete(new Message(messageIds.get(i), message.getPosted_by(),
+                        message.getMessage_text(), message.getTime_posted_epoch()));
+            }
+            else
+            {
+                //the batch rolled back, so fall back to inserting each message on its own
+                valid.get(i).result.complete(socialDAO.createMessage(message.getPosted_by(),
+                        message.getMessage_text(), message.getTime_posted_epoch()));
+            }
+        }
+    }
+
+    private static final class PendingMessage
+    {
+        private final Message message;
+        private final long queuedAt = System.nanoTime();
+        private final CompletableFuture<Message> result = new CompletableFuture<>();
+
+        PendingMessage(Message message)
+        {
+            this.message = message;
+        }
+    }
+}
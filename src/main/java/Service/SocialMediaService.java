@@ -2,8 +2,11 @@ package Service;
 
 import java.util.List;
 
+import DAO.MessageRowIterator;
 import Model.Account;
 import Model.Message;
+import Model.MessageBatchResult;
+import Model.MessagePage;
 
 public interface SocialMediaService
 {
@@ -14,9 +17,22 @@ public interface SocialMediaService
 
     //Message CRUD (create, read, update, delete)
     Message createMessage(int account_id, String message_text, long time_posted_epoch);
+    MessageBatchResult createMessages(List<Message> messages);
     Message getMessageById(int message_id);
     List<Message> getAllMessages();
     List<Message> getAllMessagesForUser(int account_id);
+    MessagePage getMessagePage(int after_message_id, int limit);
+    MessagePage getMessagePageForUser(int account_id, int after_message_id, int limit);
+    MessageRowIterator streamAllMessages();
+    MessageRowIterator streamAllMessagesForUser(int account_id);
     Message updateMessage(int message_id, String new_text);
     Message deleteMessage(int message_id);
+
+    //changes after every committed message create, update or delete
+    long getMessageVersion();
+    //changes after every committed create, update or delete of a message posted by the account
+    long getMessageVersion(int account_id);
+
+    //stop any background work the service started, such as the group commit pipeline
+    void close();
 }
\ No newline at end of file
@@ -1,21 +1,144 @@
 package Service;
 
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import Model.Account;
+import Model.BatchItemResult;
 import Model.Message;
+import Model.MessageBatchResult;
+import Model.MessagePage;
+import Util.LfuCache;
+import Util.MessageCursor;
+import Util.Tracer;
+import DAO.AccountIndexSocialMediaDAO;
+import DAO.CachingSocialMediaDAO;
+import DAO.ForwardingSocialMediaDAO;
+import DAO.MessageRowIterator;
 import DAO.SocialMediaDAO;
 import DAO.SocialMediaDAOImpl;
 
 public class SocialMediaServiceImpl implements SocialMediaService {
 
+    //group commit settings: -Dmessages.groupCommit.batchSize=N turns coalescing on, 0 (the default) leaves it off.
+    //each createMessage holds its DatabaseExecutor thread until its batch commits, so a batch can hold at most as
+    //many single posts as there are executor threads (-Ddb.executor.threads, the connection pool size by default);
+    //a batchSize above the thread count is never reached, so raise -Ddb.executor.threads along with it
+    static final int GROUP_COMMIT_BATCH_SIZE = Integer.getInteger("messages.groupCommit.batchSize", 0);
+    static final long GROUP_COMMIT_LINGER_MICROS = Long.getLong("messages.groupCommit.lingerMicros", 200L);
+
+    //message cache settings: -Dmessages.cache.maxSize=0 turns the read-through cache off
+    static final int MESSAGE_CACHE_SIZE = Integer.getInteger("messages.cache.maxSize", 10000);
+    static final long MESSAGE_CACHE_TTL_MILLIS = Long.getLong("messages.cache.ttlMillis", 60000L);
+
+    //account index settings: -Daccounts.cache.maxSize=0 turns the username filter and account cache off
+    static final int ACCOUNT_CACHE_SIZE = Integer.getInteger("accounts.cache.maxSize", 10000);
+    static final long ACCOUNT_CACHE_TTL_MILLIS = Long.getLong("accounts.cache.ttlMillis", 600000L);
+
     //SocialMediaDAO object
     private SocialMediaDAO socialDAO;
 
+    //coalesces concurrent createMessage calls into shared commits, null when group commit is off
+    private MessageWriteCoalescer writeCoalescer;
+
+    //bumped after every committed message create, update or delete, so callers can tell when listings change
+    private final AtomicLong messageVersion = new AtomicLong();
+
+    //the message version as of the last change to each account's messages; absent for accounts unchanged since
+    //startup, which are at version 0
+    private final Map<Integer, Long> accountVersions = new ConcurrentHashMap<>();
+
     //constructor
     public SocialMediaServiceImpl()
     {
-        this.socialDAO = new SocialMediaDAOImpl();
+        this(decorate(new SocialMediaDAOImpl()), GROUP_COMMIT_BATCH_SIZE, GROUP_COMMIT_LINGER_MICROS);
+    }
+
+    //constructor for a given DAO, with group commit off
+    public SocialMediaServiceImpl(SocialMediaDAO socialDAO)
+    {
+        this(socialDAO, 0, 0);
+    }
+
+    //constructor for a given DAO, with group commit on when groupCommitBatchSize is above 0
+    public SocialMediaServiceImpl(SocialMediaDAO socialDAO, int groupCommitBatchSize, long groupCommitLingerMicros)
+    {
+        this.socialDAO = socialDAO;
+        if(groupCommitBatchSize > 0)
+        {
+            this.writeCoalescer = new MessageWriteCoalescer(socialDAO, groupCommitBatchSize, groupCommitLingerMicros);
+        }
+    }
+
+    //wrap the DAO in the read-through message cache and the account index, unless they are turned off
+    private static SocialMediaDAO decorate(SocialMediaDAO socialDAO)
+    {
+        if(MESSAGE_CACHE_SIZE > 0)
+        {
+            socialDAO = new CachingSocialMediaDAO(socialDAO, MESSAGE_CACHE_SIZE, MESSAGE_CACHE_TTL_MILLIS);
+        }
+        if(ACCOUNT_CACHE_SIZE > 0)
+        {
+            socialDAO = new AccountIndexSocialMediaDAO(socialDAO, ACCOUNT_CACHE_SIZE, ACCOUNT_CACHE_TTL_MILLIS);
+        }
+        return socialDAO;
+    }
+
+    //the message cache, for reading its hit, miss and eviction counts; null when the cache is off
+    public LfuCache<Integer, Message> getMessageCache()
+    {
+        CachingSocialMediaDAO cachingDAO = ForwardingSocialMediaDAO.unwrap(socialDAO, CachingSocialMediaDAO.class);
+        return cachingDAO == null ? null : cachingDAO.getMessageCache();
+    }
+
+    //the username filter and account cache, for reading their counts; null when they are off
+    public AccountIndexSocialMediaDAO getAccountIndex()
+    {
+        return ForwardingSocialMediaDAO.unwrap(socialDAO, AccountIndexSocialMediaDAO.class);
+    }
+
+    //the message data version: it changes after every committed message create, update or delete
+    public long getMessageVersion()
+    {
+        return messageVersion.get();
+    }
+
+    //the version of one account's messages: it changes after every committed change to a message the account posted
+    public long getMessageVersion(int account_id)
+    {
+        return accountVersions.getOrDefault(account_id, 0L);
+    }
+
+    //bump the global and the poster's message version if a write changed a message, passing the write's result through
+    private Message changed(Message message)
+    {
+        if(message != null)
+        {
+            long version = messageVersion.incrementAndGet();
+            accountVersions.merge(message.getPosted_by(), version, Math::max);
+        }
+        return message;
+    }
+
+    //the group commit pipeline, for reading its batch size and queue wait histograms; null when group commit is off
+    public MessageWriteCoalescer getWriteCoalescer()
+    {
+        return writeCoalescer;
+    }
+
+    //stop the group commit pipeline, if it is on; creates still waiting in it complete with null
+    public void close()
+    {
+        if(writeCoalescer != null)
+        {
+            writeCoalescer.close();
+        }
     }
     
     //create account
@@ -57,14 +180,113 @@ public class SocialMediaServiceImpl implements SocialMediaService {
     //create message
     public Message createMessage(int account_id, String message_text, long time_posted_epoch)
     {
-        if(message_text != null && !message_text.isBlank() && message_text.length() < 255)
+        if(validMessageText(message_text))
         {
+            //with group commit on, wait for the shared batch holding this message to commit
+            if(writeCoalescer != null)
+            {
+                return changed(writeCoalescer.submit(account_id, message_text, time_posted_epoch));
+            }
             //interact with DAO and return created message
-            return socialDAO.createMessage(account_id, message_text, time_posted_epoch);
+            return changed(socialDAO.createMessage(account_id, message_text, time_posted_epoch));
         }
         return null;        
     }
 
+    //create many messages, inserting the valid ones together and reporting why the others were rejected
+    public MessageBatchResult createMessages(List<Message> messages)
+    {
+        MessageBatchResult result = new MessageBatchResult();
+
+        //look up every poster in one query instead of one per message
+        Set<Integer> postedBy = new HashSet<>();
+        for(Message message : messages)
+        {
+            postedBy.add(message.getPosted_by());
+        }
+        Set<Integer> existingAccounts = postedBy.isEmpty() ? postedBy : socialDAO.getExistingAccountIds(postedBy);
+        if(existingAccounts == null)
+        {
+            return null;
+        }
+
+        //apply the same rules as createMessage to each item, keeping the valid ones and their request positions
+        int validateSpan = Tracer.start("validate");
+        List<Message> valid = new ArrayList<>();
+        List<Integer> validIndexes = new ArrayList<>();
+        for(int i = 0; i < messages.size(); i++)
+        {
+            Message message = messages.get(i);
+            String error = checkMessageText(message.getMessage_text());
+            if(error == null && !existingAccounts.contains(message.getPosted_by()))
+            {
+                error = "posted_by does not refer to an existing account";
+            }
+            if(error != null)
+            {
+                result.getErrors().add(BatchItemResult.rejected(i, error));
+            }
+            else
+            {
+                valid.add(message);
+                validIndexes.add(i);
+            }
+        }
+        Tracer.end(validateSpan);
+        if(valid.isEmpty())
+        {
+            return result;
+        }
+
+        //interact with DAO to insert the valid messages together
+        List<Integer> messageIds = socialDAO.createMessages(valid);
+        if(messageIds != null)
+        {
+            long version = messageVersion.incrementAndGet();
+            for(Message message : valid)
+            {
+                accountVersions.merge(message.getPosted_by(), version, Math::max);
+            }
+        }
+        for(int i = 0; i < validIndexes.size(); i++)
+        {
+            if(messageIds != null)
+            {
+                result.getCreated().add(BatchItemResult.created(validIndexes.get(i), messageIds.get(i)));
+            }
+            else
+            {
+                result.getErrors().add(BatchItemResult.rejected(validIndexes.get(i), "could not be saved"));
+            }
+        }
+        //keep errors in request order when save failures were appended after validation failures
+        result.getErrors().sort(Comparator.comparingInt(BatchItemResult::getIndex));
+        return result;
+    }
+
+    //check message text against the message rules in a trace span
+    private boolean validMessageText(String message_text)
+    {
+        int span = Tracer.start("validate");
+        boolean valid = checkMessageText(message_text) == null;
+        Tracer.end(span);
+        return valid;
+    }
+
+    //check message text against the message rules, returning why it is invalid or null if it is valid
+    private String checkMessageText(String message_text)
+    {
+        if(message_text == null || message_text.isBlank())
+        {
+            return "message_text must not be blank";
+        }
+        if(message_text.length() >= 255)
+        {
+            return "message_text must be under 255 characters";
+        }
+        return null;
+    }
+
     //get message by message id
     public Message getMessageById(int message_id)
     {
@@ -86,22 +308,65 @@ public class SocialMediaServiceImpl implements SocialMediaService {
         return socialDAO.getAllMessagesForUser(account_id);
     }
 
+    //get a page of messages
+    public MessagePage getMessagePage(int after_message_id, int limit)
+    {
+        //ask for one extra row so we know whether another page follows without a count query
+        return toPage(socialDAO.getMessagesAfter(after_message_id, limit + 1), limit);
+    }
+
+    //get a page of messages for user
+    public MessagePage getMessagePageForUser(int account_id, int after_message_id, int limit)
+    {
+        //ask for one extra row so we know whether another page follows without a count query
+        return toPage(socialDAO.getMessagesForUserAfter(account_id, after_message_id, limit + 1), limit);
+    }
+
+    //trim the extra row and point the next cursor at the last message kept
+    private MessagePage toPage(List<Message> messages, int limit)
+    {
+        if(messages == null)
+        {
+            return null;
+        }
+        if(messages.size() > limit)
+        {
+            List<Message> page = messages.subList(0, limit);
+            return new MessagePage(page, MessageCursor.encode(page.get(limit - 1).getMessage_id()));
+        }
+        return new MessagePage(messages, null);
+    }
+
+    //stream all messages
+    public MessageRowIterator streamAllMessages()
+    {
+        //interact with DAO and return an open iterator over all messages
+        return socialDAO.streamAllMessages();
+    }
+
+    //stream all messages for user
+    public MessageRowIterator streamAllMessagesForUser(int account_id)
+    {
+        //interact with DAO and return an open iterator over all messages for user
+        return socialDAO.streamAllMessagesForUser(account_id);
+    }
+
     //update message
     public Message updateMessage(int message_id, String new_text)
     {
         //if new_text is not null and not empty and length <= 255
-        if(new_text == null || new_text.isBlank() || new_text.length() >= 255)
+        if(!validMessageText(new_text))
         {
             return null;
         }
         //interact with DAO and return updated message
-        return socialDAO.updateMessage(message_id, new_text);
+        return changed(socialDAO.updateMessage(message_id, new_text));
     }
 
     //delete message
     public Message deleteMessage(int message_id)
     {
         //interact with DAO and return deleted message
-        return socialDAO.deleteMessage(message_id);
+        return changed(socialDAO.deleteMessage(message_id));
     }
 }
\ No newline at end of file
@@ -0,0 +1,116 @@
+package Util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The BloomFilter class is a fixed-size set of strings which can answer "definitely not present" without storing the
+ * strings themselves. mightContain never returns false for a string that was put, but may return true for one that
+ * was not, at roughly the false positive rate the filter was sized for once expectedInsertions strings are in it.
+ *
+ * Bits are set with atomic compare-and-set, so put and mightContain may be called from any thread without locking.
+ */
+public class BloomFilter {
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final AtomicLongArray words;
+    private final long bitCount;
+    private final int hashCount;
+    private final int expectedInsertions;
+
+    /**
+     * @param expectedInsertions how many strings the filter is sized for
+     * @param falsePositiveRate the target rate of false positives at expectedInsertions, between 0 and 1 exclusive
+     */
+    public BloomFilter(int expectedInsertions, double falsePositiveRate) {
+        if (expectedInsertions < 1) {
+            throw new IllegalArgumentException("expectedInsertions must be at least 1");
+        }
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("falsePositiveRate must be between 0 and 1");
+        }
+        long bits = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        int wordCount = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(1, (bits + 63) / 64));
+        this.words = new AtomicLongArray(wordCount);
+        this.bitCount = (long) wordCount * 64;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedInsertions * Math.log(2)));
+        this.expectedInsertions = expectedInsertions;
+    }
+
+    /**
+     * Add value to the filter.
+     */
+    public void put(String value) {
+        long hash1 = hash(value);
+        long hash2 = mix(hash1 ^ FNV_OFFSET_BASIS) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Long.remainderUnsigned(hash1 + i * hash2, bitCount);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long current = words.get(word);
+            while ((current & mask) == 0 && !words.compareAndSet(word, current, current | mask)) {
+                current = words.get(word);
+            }
+        }
+    }
+
+    /**
+     * @return false if value was definitely never put, true if it probably was
+     */
+    public boolean mightContain(String value) {
+        long hash1 = hash(value);
+        long hash2 = mix(hash1 ^ FNV_OFFSET_BASIS) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Long.remainderUnsigned(hash1 + i * hash2, bitCount);
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return how many strings the filter was sized for
+     */
+    public int getExpectedInsertions() {
+        return expectedInsertions;
+    }
+
+    /**
+     * @return the number of hash functions, that is, bits set per string
+     */
+    public int getHashCount() {
+        return hashCount;
+    }
+
+    /**
+     * @return the size of the filter in bits
+     */
+    public long getBitCount() {
+        return bitCount;
+    }
+
+    /**
+     * FNV-1a over the string's chars, finished with a 64 bit mixer so that every output bit depends on every char.
+     */
+    private static long hash(String value) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < value.length(); i++) {
+            hash = (hash ^ value.charAt(i)) * FNV_PRIME;
+        }
+        return mix(hash);
+    }
+
+    /**
+     * The finalizer from MurmurHash3's 64 bit variant.
+     */
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
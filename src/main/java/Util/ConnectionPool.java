@@ -0,0 +1,427 @@
+package Util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The ConnectionPool class hands out a bounded number of physical JDBC connections to callers. A borrowed connection
+ * is returned to the pool when it is closed, so DAO methods should borrow a connection per operation inside a
+ * try-with-resources block.
+ *
+ * Connections are validated on every borrow, callers wait at most acquireTimeoutMillis for a free connection, and
+ * connections which have sat idle longer than idleTimeoutMillis are closed by a background evictor.
+ *
+ * Each physical connection keeps a StatementCache, so prepareStatement(sql) on a borrowed connection reuses the
+ * statement parsed by an earlier borrower of the same physical connection.
+ *
+ * Borrowers may be virtual threads: waiting for a permit or for the idle list parks them without pinning their carrier
+ * thread. H2 2.1 runs every statement while holding its session's monitor, so a statement does pin its caller for as
+ * long as it runs, but only on a borrowed connection, so no more than maxSize carriers are ever pinned at once.
+ */
+public class ConnectionPool implements AutoCloseable {
+
+    /**
+     * Seconds to wait for Connection.isValid() when validating a connection on borrow.
+     */
+    private static final int VALIDATION_TIMEOUT_SECONDS = 1;
+    /**
+     * Statements kept per physical connection when no size is given.
+     */
+    public static final int DEFAULT_STATEMENT_CACHE_SIZE = 32;
+
+    private final String url;
+    private final String username;
+    private final String password;
+    private final int maxSize;
+    private final long acquireTimeoutMillis;
+    private final long idleTimeoutMillis;
+    private final int statementCacheSize;
+
+    /**
+     * One permit per connection the pool is allowed to hand out. Fair so waiting threads are served in order.
+     */
+    private final Semaphore permits;
+    /**
+     * Idle connections, most recently returned first. Guarded by idleLock.
+     */
+    private final Deque<PooledConnection> idle = new ArrayDeque<>();
+    /**
+     * A lock rather than the deque's monitor: a virtual thread that blocks on a monitor pins its carrier thread, while
+     * one that blocks on a ReentrantLock is unmounted, so callers on virtual threads never pin here.
+     */
+    private final ReentrantLock idleLock = new ReentrantLock();
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final LongAdder statementCacheHits = new LongAdder();
+    private final LongAdder statementCacheMisses = new LongAdder();
+    private final ScheduledExecutorService evictor;
+    private volatile boolean closed = false;
+
+    /**
+     * @param url the JDBC connection string
+     * @param username the database username
+     * @param password the database password
+     * @param maxSize the maximum number of connections open at once
+     * @param acquireTimeoutMillis how long a borrower waits for a free connection before failing
+     * @param idleTimeoutMillis how long an unused connection is kept open before it is evicted
+     */
+    public ConnectionPool(String url, String username, String password, int maxSize,
+                          long acquireTimeoutMillis, long idleTimeoutMillis) {
+        this(url, username, password, maxSize, acquireTimeoutMillis, idleTimeoutMillis, DEFAULT_STATEMENT_CACHE_SIZE);
+    }
+
+    /**
+     * @param url the JDBC connection string
+     * @param username the database username
+     * @param password the database password
+     * @param maxSize the maximum number of connections open at once
+     * @param acquireTimeoutMillis how long a borrower waits for a free connection before failing
+     * @param idleTimeoutMillis how long an unused connection is kept open before it is evicted
+     * @param statementCacheSize how many prepared statements each connection keeps open; 0 disables the cache
+     */
+    public ConnectionPool(String url, String username, String password, int maxSize,
+                          long acquireTimeoutMillis, long idleTimeoutMillis, int statementCacheSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize must be at least 1");
+        }
+        this.url = url;
+        this.username = username;
+        this.password = password;
+        this.maxSize = maxSize;
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.statementCacheSize = statementCacheSize;
+        this.permits = new Semaphore(maxSize, true);
+        this.evictor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "connection-pool-evictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(idleTimeoutMillis / 2, 1000);
+        evictor.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Borrow a connection from the pool. The returned connection goes back to the pool when it is closed.
+     * @return a validated connection
+     * @throws SQLException if no connection became free within the acquire timeout, or a new one could not be opened
+     */
+    public Connection borrow() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+        waiting.incrementAndGet();
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("Interrupted while waiting for a connection", e);
+        } finally {
+            waiting.decrementAndGet();
+        }
+        if (!acquired) {
+            throw new SQLTransientConnectionException("Timed out after " + acquireTimeoutMillis
+                    + "ms waiting for a connection (active=" + getActiveCount() + ", max=" + maxSize + ")");
+        }
+
+        try {
+            PooledConnection pooled = takeValidConnection();
+            active.incrementAndGet();
+            return pooled.lease(this);
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Reuse the most recently returned idle connection if it is still valid, otherwise open a new one.
+     */
+    private PooledConnection takeValidConnection() throws SQLException {
+        while (true) {
+            PooledConnection pooled;
+            idleLock.lock();
+            try {
+                pooled = idle.pollFirst();
+            } finally {
+                idleLock.unlock();
+            }
+            if (pooled == null) {
+                Connection physical = DriverManager.getConnection(url, username, password);
+                return new PooledConnection(physical,
+                        new StatementCache(physical, statementCacheSize, statementCacheHits, statementCacheMisses));
+            }
+            if (pooled.isValid(VALIDATION_TIMEOUT_SECONDS)) {
+                return pooled;
+            }
+            pooled.closePhysical();
+        }
+    }
+
+    /**
+     * Called by a leased connection when the borrower closes it.
+     */
+    void release(PooledConnection pooled) {
+        active.decrementAndGet();
+        try {
+            if (closed || !pooled.resetForReuse()) {
+                pooled.closePhysical();
+            } else {
+                idleLock.lock();
+                try {
+                    idle.offerFirst(pooled);
+                } finally {
+                    idleLock.unlock();
+                }
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Close connections that have been idle longer than the idle timeout. The oldest connections sit at the tail.
+     */
+    void evictIdle() {
+        long cutoff = System.currentTimeMillis() - idleTimeoutMillis;
+        Deque<PooledConnection> stale = new ArrayDeque<>();
+        idleLock.lock();
+        try {
+            Iterator<PooledConnection> iterator = idle.descendingIterator();
+            while (iterator.hasNext()) {
+                PooledConnection pooled = iterator.next();
+                if (pooled.getLastReturnedMillis() >= cutoff) {
+                    break;
+                }
+                iterator.remove();
+                stale.add(pooled);
+            }
+        } finally {
+            idleLock.unlock();
+        }
+        for (PooledConnection pooled : stale) {
+            pooled.closePhysical();
+        }
+    }
+
+    /**
+     * @return the number of connections currently borrowed
+     */
+    public int getActiveCount() {
+        return active.get();
+    }
+
+    /**
+     * @return the number of open connections waiting in the pool
+     */
+    public int getIdleCount() {
+        idleLock.lock();
+        try {
+            return idle.size();
+        } finally {
+            idleLock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of threads currently blocked waiting for a connection
+     */
+    public int getWaitingCount() {
+        return waiting.get();
+    }
+
+    /**
+     * @return how many prepareStatement calls were served by an already parsed statement
+     */
+    public long getStatementCacheHits() {
+        return statementCacheHits.sum();
+    }
+
+    /**
+     * @return how many prepareStatement calls had to parse the SQL
+     */
+    public long getStatementCacheMisses() {
+        return statementCacheMisses.sum();
+    }
+
+    /**
+     * @return the maximum number of connections this pool will open
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Close every idle connection and stop the evictor. Connections still borrowed are closed when they are returned.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        evictor.shutdownNow();
+        idleLock.lock();
+        try {
+            for (PooledConnection pooled : idle) {
+                pooled.closePhysical();
+            }
+            idle.clear();
+        } finally {
+            idleLock.unlock();
+        }
+    }
+
+    /**
+     * A physical connection owned by the pool, along with the bookkeeping the pool needs for it.
+     */
+    static class PooledConnection {
+        private final Connection physical;
+        private final StatementCache statementCache;
+        private volatile long lastReturnedMillis = System.currentTimeMillis();
+
+        PooledConnection(Connection physical, StatementCache statementCache) {
+            this.physical = physical;
+            this.statementCache = statementCache;
+        }
+
+        Connection getPhysical() {
+            return physical;
+        }
+
+        StatementCache getStatementCache() {
+            return statementCache;
+        }
+
+        long getLastReturnedMillis() {
+            return lastReturnedMillis;
+        }
+
+        boolean isValid(int timeoutSeconds) {
+            try {
+                return physical.isValid(timeoutSeconds);
+            } catch (SQLException e) {
+                return false;
+            }
+        }
+
+        /**
+         * Wrap the physical connection in a proxy whose close() returns it to the pool.
+         */
+        Connection lease(ConnectionPool pool) {
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, new LeaseHandler(pool, this));
+        }
+
+        /**
+         * Undo anything the borrower left behind so the next borrower gets a clean autocommit connection.
+         * @return false if the connection is no longer usable
+         */
+        boolean resetForReuse() {
+            try {
+                if (physical.isClosed()) {
+                    return false;
+                }
+                if (!physical.getAutoCommit()) {
+                    physical.rollback();
+                    physical.setAutoCommit(true);
+                }
+                physical.clearWarnings();
+                lastReturnedMillis = System.currentTimeMillis();
+                return true;
+            } catch (SQLException e) {
+                return false;
+            }
+        }
+
+        void closePhysical() {
+            statementCache.closeAll();
+            try {
+                physical.close();
+            } catch (SQLException e) {
+                System.out.println("Error closing pooled connection: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Forwards calls to the physical connection until the borrower closes it, after which the lease is dead.
+     */
+    private static class LeaseHandler implements InvocationHandler {
+        private final ConnectionPool pool;
+        private final PooledConnection pooled;
+        private boolean returned = false;
+
+        LeaseHandler(ConnectionPool pool, PooledConnection pooled) {
+            this.pool = pool;
+            this.pooled = pooled;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!returned) {
+                        returned = true;
+                        pool.release(pooled);
+                    }
+                    return null;
+                case "isClosed":
+                    return returned || pooled.getPhysical().isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledConnection[" + pooled.getPhysical() + (returned ? ", returned]" : "]");
+                default:
+                    break;
+            }
+            if (returned) {
+                throw new SQLException("Connection has already been returned to the pool");
+            }
+            if (method.getName().equals("prepareStatement")) {
+                PreparedStatement cached = prepareCached(method, args);
+                if (cached != null) {
+                    return cached;
+                }
+            }
+            try {
+                return method.invoke(pooled.getPhysical(), args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+
+        /**
+         * Serve prepareStatement(sql) and prepareStatement(sql, autoGeneratedKeys) from the statement cache. Other
+         * overloads return null and fall through to the physical connection.
+         */
+        private PreparedStatement prepareCached(Method method, Object[] args) throws SQLException {
+            Class<?>[] types = method.getParameterTypes();
+            if (types.length == 1) {
+                return pooled.getStatementCache().prepare((String) args[0], Statement.NO_GENERATED_KEYS);
+            }
+            if (types.length == 2 && types[1] == int.class) {
+                return pooled.getStatementCache().prepare((String) args[0], (Integer) args[1]);
+            }
+            return null;
+        }
+    }
+}
@@ -2,24 +2,28 @@ package Util;
 
 import org.h2.tools.RunScript;
 
-import java.io.FileNotFoundException;
-import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
- * The ConnectionUtil class will be utilized to create an active connection to our database. This class utilizes the singleton design pattern.
+ * The ConnectionUtil class will be utilized to hand out connections to our database. Connections come from a single
+ * shared ConnectionPool, so every DAO call gets its own connection and must close it to return it to the pool.
  * We will be utilizing an in-memory called h2database for the sql demos.
- *
- * DO NOT CHANGE ANYTHING IN THIS CLASS
  */
 public class ConnectionUtil {
 
     /**
-     * url will represent our connection string. Since this is an in-memory db, we will represent a file location to store the data
+     * url will represent our connection string. Since this is an in-memory db, we will represent a file location to store the data.
+     * Can be overridden with -Ddb.url, such as jdbc:h2:mem:bench;DB_CLOSE_DELAY=-1 to leave the file alone.
      */
-    private static String url = "jdbc:h2:./h2/db";
+    private static String url = System.getProperty("db.url", "jdbc:h2:./h2/db");
     /**
      * Default username for connecting to h2
      */
@@ -29,42 +33,128 @@ public class ConnectionUtil {
      */
     private static String password = "sa";
     /**
-     * a static object which represents the connection to h2. Because it is static, any DAO interacting
-     * with this connection object is referring to the same object.
+     * The maximum number of connections open at once. Can be overridden with -Ddb.pool.maxSize.
      */
-    private static Connection connection = null;
+    private static int maxPoolSize = Integer.getInteger("db.pool.maxSize", 10);
     /**
-     * @return an active connection to the database and set up the database tables if this is the first time the
-     * Connection has been established
+     * How long a caller waits for a free connection before giving up. Can be overridden with -Ddb.pool.acquireTimeoutMillis.
      */
-    public static Connection getConnection(){
-        if(connection == null){
-            try {
-                connection = DriverManager.getConnection(url, username, password);
-                resetTestDatabase();
-            } catch (SQLException e) {
-                e.printStackTrace();
+    private static long acquireTimeoutMillis = Long.getLong("db.pool.acquireTimeoutMillis", 5000L);
+    /**
+     * How long an unused connection stays open in the pool. Can be overridden with -Ddb.pool.idleTimeoutMillis.
+     */
+    private static long idleTimeoutMillis = Long.getLong("db.pool.idleTimeoutMillis", 60000L);
+    /**
+     * How many prepared statements each pooled connection keeps parsed. Can be overridden with -Ddb.pool.statementCacheSize.
+     */
+    private static int statementCacheSize = Integer.getInteger("db.pool.statementCacheSize", ConnectionPool.DEFAULT_STATEMENT_CACHE_SIZE);
+    /**
+     * Statements taking at least this many milliseconds are written to the slow query log; -1 turns the log off. Can be
+     * overridden with -Ddb.slowQueryMillis.
+     */
+    private static long slowQueryMillis = Long.getLong("db.slowQueryMillis", 100L);
+    /**
+     * Timings per statement for every connection handed out by getConnection(). -Ddb.queryStats=false hands out the
+     * pool's connections unwrapped.
+     */
+    private static final QueryStats queryStats = Boolean.parseBoolean(System.getProperty("db.queryStats", "true"))
+            ? new QueryStats(slowQueryMillis, System.out::println) : null;
+    /**
+     * a static pool which owns the connections to h2. Because it is static, every DAO borrows from the same pool.
+     */
+    private static volatile ConnectionPool pool = null;
+    /**
+     * Serializes creating the pool. A lock rather than a monitor, since migrating runs SQL and a virtual thread blocked
+     * on a monitor would pin its carrier thread meanwhile.
+     */
+    private static final ReentrantLock poolLock = new ReentrantLock();
+    /**
+     * The test data script, on the classpath.
+     */
+    private static final String TEST_DATA_SCRIPT = "SocialMedia.sql";
+    /**
+     * The database as the first resetTestDatabase() call left it, so later calls can put the test data back without
+     * rebuilding the schema.
+     */
+    private static volatile DatabaseSnapshot testSnapshot = null;
+
+    /**
+     * @return the shared connection pool, creating it and applying any pending schema migrations if this is the first
+     * time it has been used. Existing data is kept.
+     */
+    public static ConnectionPool getPool(){
+        if(pool == null){
+            poolLock.lock();
+            try{
+                if(pool == null){
+                    ConnectionPool created = new ConnectionPool(url, username, password, maxPoolSize,
+                            acquireTimeoutMillis, idleTimeoutMillis, statementCacheSize);
+                    migrate(created);
+                    pool = created;
+                }
+            } finally {
+                poolLock.unlock();
             }
         }
+        return pool;
+    }
 
-        return connection;
+    /**
+     * @return a connection borrowed from the pool, timed by the query stats unless they are turned off. Closing the
+     * connection returns it to the pool.
+     * @throws SQLException if no connection became available within the acquire timeout
+     */
+    public static Connection getConnection() throws SQLException {
+        Connection connection = getPool().borrow();
+        return queryStats != null ? queryStats.wrap(connection) : connection;
     }
+
+    /**
+     * @return the timings of the statements run on connections from getConnection(), or null if they are turned off
+     */
+    public static QueryStats getQueryStats() {
+        return queryStats;
+    }
+
     /**
      * For the purpose of testing, we will need to drop and recreate our database tables to keep it consistent across
-     * all tests. The method will read the sql file in resources. This will be performed before every test.
+     * all tests. The first call drops everything, re-applies the migrations, loads the test data in the sql file in
+     * resources and takes a snapshot of the result; later calls restore that snapshot, which only truncates and
+     * refills the tables, unless the schema has changed since. This will be performed before every test. Never call
+     * this against a database whose data matters.
      */
     public static void resetTestDatabase(){
-//        if there is no connection, use the getConnection method to set it up
-        if(connection == null){
-            getConnection();
-        }else {
-//            otherwise, recreate the tables without setting up a new connection
-            try {
-                FileReader sqlReader = new FileReader("src/main/resources/SocialMedia.sql");
+        try (Connection connection = getPool().borrow()) {
+            DatabaseSnapshot snapshot = testSnapshot;
+            if(snapshot != null && snapshot.restore(connection)){
+                return;
+            }
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("DROP ALL OBJECTS");
+            }
+            SchemaMigrator.migrate(connection);
+            try (Reader sqlReader = openTestDataScript()) {
                 RunScript.execute(connection, sqlReader);
-            } catch (SQLException | FileNotFoundException e) {
-                e.printStackTrace();
             }
+            testSnapshot = DatabaseSnapshot.capture(connection);
+        } catch (SQLException | IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static Reader openTestDataScript() throws IOException {
+        InputStream in = ConnectionUtil.class.getClassLoader().getResourceAsStream(TEST_DATA_SCRIPT);
+        if(in == null){
+            throw new IOException("Test data script not found on classpath: " + TEST_DATA_SCRIPT);
+        }
+        return new InputStreamReader(in, StandardCharsets.UTF_8);
+    }
+
+    private static void migrate(ConnectionPool target){
+        try (Connection connection = target.borrow()) {
+            SchemaMigrator.migrate(connection);
+        } catch (SQLException e) {
+            e.printStackTrace();
         }
     }
 
@@ -0,0 +1,120 @@
+package Util;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The DatabaseExecutor class runs blocking database work on a fixed number of threads of its own and hands back a
+ * CompletableFuture, so the request thread that submitted the work is free while it runs. It is meant to have as
+ * many threads as the connection pool has connections: more would only wait for a connection, fewer would leave
+ * connections unused.
+ *
+ * Work waits for a thread in a bounded queue. Once the queue is full, submit fails the returned future with a
+ * RejectedExecutionException at once rather than letting the backlog, and every caller's latency, grow without limit.
+ * The queue depth, how long each task waited for a thread and how many tasks were rejected are kept for monitoring.
+ *
+ * A task runs with the Tracer trace of the thread that submitted it, so spans it opens land in the request's trace,
+ * along with a "queue" span for its wait.
+ *
+ * Threads that have been idle for a minute exit, so an executor which is no longer used does not keep them.
+ */
+public class DatabaseExecutor implements AutoCloseable {
+
+    private static final long IDLE_THREAD_TIMEOUT_MILLIS = 60000;
+    private static final AtomicInteger EXECUTOR_NUMBER = new AtomicInteger();
+
+    private final ThreadPoolExecutor executor;
+    private final Histogram queueWaitMicros = new Histogram();
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * @param threads the number of tasks run at once
+     * @param queueCapacity the most tasks waiting for a thread before submit rejects more
+     */
+    public DatabaseExecutor(int threads, int queueCapacity) {
+        int executorNumber = EXECUTOR_NUMBER.incrementAndGet();
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, IDLE_THREAD_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable,
+                            "database-" + executorNumber + "-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Queue a task for a database thread.
+     * @return a future completed with the task's result, or failed with what it threw, or with a
+     * RejectedExecutionException if the queue was full or the executor closed
+     */
+    public <T> CompletableFuture<T> submit(Callable<T> task) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        long queuedNanos = System.nanoTime();
+        Trace trace = Tracer.current();
+        try {
+            executor.execute(() -> {
+                long startedNanos = System.nanoTime();
+                queueWaitMicros.record((startedNanos - queuedNanos) / 1000);
+                //the submitter's trace stays attached while the future completes, so the stages it runs right
+                //away, such as writing the response, are traced too
+                Trace previous = Tracer.attach(trace);
+                try {
+                    Tracer.record("queue", queuedNanos, startedNanos);
+                    result.complete(task.call());
+                } catch (Throwable e) {
+                    result.completeExceptionally(e);
+                } finally {
+                    Tracer.attach(previous);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    /**
+     * @return the number of tasks waiting for a thread
+     */
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * @return the number of tasks running now
+     */
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    /**
+     * @return how long tasks waited between being submitted and starting, in microseconds
+     */
+    public Histogram getQueueWaitMicros() {
+        return queueWaitMicros;
+    }
+
+    /**
+     * @return the number of tasks turned away because the queue was full or the executor closed
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * Stop taking tasks. Tasks already queued still run.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+}
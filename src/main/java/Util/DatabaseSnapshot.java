@@ -0,0 +1,152 @@
+package Util;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The DatabaseSnapshot class holds the rows of every table in the PUBLIC schema, and where each identity column would
+ * continue numbering, as they were when the snapshot was captured, and puts them back on request.
+ *
+ * Restoring truncates every table and inserts the captured rows again, with referential integrity off meanwhile so the
+ * tables can be emptied in any order, then restarts each identity column where it was. That is a few statements per
+ * table rather than dropping and rebuilding the schema, so it suits putting a small baseline, such as the test data,
+ * back before every test. Only data is restored: if a table or column was added, dropped or renamed since the
+ * capture, restore() leaves the database alone and returns false, and the snapshot should be captured again.
+ */
+public class DatabaseSnapshot {
+
+    private static final String COLUMNS_SQL = "SELECT c.TABLE_NAME, c.COLUMN_NAME, c.IS_IDENTITY, c.IDENTITY_BASE "
+            + "FROM INFORMATION_SCHEMA.COLUMNS c JOIN INFORMATION_SCHEMA.TABLES t "
+            + "ON t.TABLE_SCHEMA = c.TABLE_SCHEMA AND t.TABLE_NAME = c.TABLE_NAME "
+            + "WHERE t.TABLE_SCHEMA = 'PUBLIC' AND t.TABLE_TYPE = 'BASE TABLE' "
+            + "ORDER BY c.TABLE_NAME, c.ORDINAL_POSITION";
+
+    private final String shape;
+    private final List<TableRows> tables;
+
+    private DatabaseSnapshot(String shape, List<TableRows> tables) {
+        this.shape = shape;
+        this.tables = tables;
+    }
+
+    /**
+     * Read every table in the PUBLIC schema.
+     * @param connection the connection to read through
+     * @return the snapshot
+     */
+    public static DatabaseSnapshot capture(Connection connection) throws SQLException {
+        Map<String, TableRows> tables = new LinkedHashMap<>();
+        String shape = readShape(connection, tables);
+        for (TableRows table : tables.values()) {
+            try (Statement statement = connection.createStatement();
+                 ResultSet resultSet = statement.executeQuery("SELECT * FROM " + quote(table.name))) {
+                ResultSetMetaData metaData = resultSet.getMetaData();
+                while (resultSet.next()) {
+                    Object[] row = new Object[metaData.getColumnCount()];
+                    for (int i = 0; i < row.length; i++) {
+                        row[i] = resultSet.getObject(i + 1);
+                    }
+                    table.rows.add(row);
+                }
+            }
+        }
+        return new DatabaseSnapshot(shape, new ArrayList<>(tables.values()));
+    }
+
+    /**
+     * Put every table back as it was when the snapshot was captured. Nothing else may use the database meanwhile.
+     * @param connection the connection to restore through, in auto-commit mode
+     * @return true if the tables were restored, false if they no longer match the snapshot and were left alone
+     */
+    public boolean restore(Connection connection) throws SQLException {
+        if (!shape.equals(readShape(connection, new LinkedHashMap<>()))) {
+            return false;
+        }
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("SET REFERENTIAL_INTEGRITY FALSE");
+            try {
+                for (TableRows table : tables) {
+                    statement.execute("TRUNCATE TABLE " + quote(table.name));
+                    insertRows(connection, table);
+                    for (Map.Entry<String, Long> identity : table.identityBases.entrySet()) {
+                        statement.execute("ALTER TABLE " + quote(table.name) + " ALTER COLUMN "
+                                + quote(identity.getKey()) + " RESTART WITH " + identity.getValue());
+                    }
+                }
+            } finally {
+                statement.execute("SET REFERENTIAL_INTEGRITY TRUE");
+            }
+        }
+        return true;
+    }
+
+    private static void insertRows(Connection connection, TableRows table) throws SQLException {
+        if (table.rows.isEmpty()) {
+            return;
+        }
+        StringBuilder sql = new StringBuilder("INSERT INTO ").append(quote(table.name)).append(" (");
+        StringBuilder values = new StringBuilder();
+        for (int i = 0; i < table.columns.size(); i++) {
+            sql.append(i == 0 ? "" : ", ").append(quote(table.columns.get(i)));
+            values.append(i == 0 ? "?" : ", ?");
+        }
+        sql.append(") VALUES (").append(values).append(")");
+        try (PreparedStatement insert = connection.prepareStatement(sql.toString())) {
+            for (Object[] row : table.rows) {
+                for (int i = 0; i < row.length; i++) {
+                    insert.setObject(i + 1, row[i]);
+                }
+                insert.addBatch();
+            }
+            insert.executeBatch();
+        }
+    }
+
+    /**
+     * Add the name, columns and identity bases of every table to tables.
+     * @return the tables and their columns in one string, to tell whether the schema changed since a capture
+     */
+    private static String readShape(Connection connection, Map<String, TableRows> tables) throws SQLException {
+        StringBuilder shape = new StringBuilder();
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(COLUMNS_SQL)) {
+            while (resultSet.next()) {
+                String tableName = resultSet.getString("TABLE_NAME");
+                String columnName = resultSet.getString("COLUMN_NAME");
+                shape.append(tableName).append('.').append(columnName).append(';');
+                TableRows table = tables.computeIfAbsent(tableName, TableRows::new);
+                table.columns.add(columnName);
+                if ("YES".equals(resultSet.getString("IS_IDENTITY"))) {
+                    table.identityBases.put(columnName, resultSet.getLong("IDENTITY_BASE"));
+                }
+            }
+        }
+        return shape.toString();
+    }
+
+    private static String quote(String identifier) {
+        return '"' + identifier.replace("\"", "\"\"") + '"';
+    }
+
+    /**
+     * The captured rows of one table, each with a value per column in column order.
+     */
+    private static final class TableRows {
+        final String name;
+        final List<String> columns = new ArrayList<>();
+        final Map<String, Long> identityBases = new LinkedHashMap<>();
+        final List<Object[]> rows = new ArrayList<>();
+
+        TableRows(String name) {
+            this.name = name;
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package Util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The Histogram class records non-negative long values, such as latencies or batch sizes, into log-linear buckets.
+ * By default each power of two is split into 8 buckets, so a reported percentile is within 12.5% of the true value;
+ * a histogram made with more sub-bucket bits is finer, at 8 bytes per extra bucket. Recording is a couple of atomic
+ * adds with no locking or allocation, so it is safe to call from every request thread.
+ */
+public class Histogram {
+
+    /**
+     * Sub-buckets per power of two, as a number of bits. 3 bits gives 8 sub-buckets.
+     */
+    private static final int DEFAULT_SUB_BUCKET_BITS = 3;
+
+    private final int subBucketBits;
+    private final int subBuckets;
+    private final int bucketCount;
+    private final AtomicLongArray buckets;
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    public Histogram() {
+        this(DEFAULT_SUB_BUCKET_BITS);
+    }
+
+    /**
+     * @param subBucketBits sub-buckets per power of two as a number of bits, from 1 to 10; n bits keeps a reported
+     * percentile within 1/2^n of the true value
+     */
+    public Histogram(int subBucketBits) {
+        if (subBucketBits < 1 || subBucketBits > 10) {
+            throw new IllegalArgumentException("subBucketBits must be between 1 and 10");
+        }
+        this.subBucketBits = subBucketBits;
+        this.subBuckets = 1 << subBucketBits;
+        this.bucketCount = (64 - subBucketBits + 1) * subBuckets;
+        this.buckets = new AtomicLongArray(bucketCount);
+    }
+
+    /**
+     * @param value the value to record; negative values are recorded as 0
+     */
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        buckets.incrementAndGet(bucketIndex(value));
+        count.increment();
+        sum.add(value);
+        if (value > max.get()) {
+            max.accumulateAndGet(value, Math::max);
+        }
+    }
+
+    /**
+     * @return how many values have been recorded
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * @return the sum of every recorded value
+     */
+    public long getSum() {
+        return sum.sum();
+    }
+
+    /**
+     * @return the largest recorded value, or 0 if nothing was recorded
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * @return the mean of the recorded values, or 0 if nothing was recorded
+     */
+    public double getMean() {
+        long n = getCount();
+        return n == 0 ? 0 : (double) getSum() / n;
+    }
+
+    /**
+     * @param percentile a value between 0 and 100, such as 99.9
+     * @return the upper bound of the bucket holding that percentile, capped at the largest recorded value; 0 if
+     * nothing was recorded
+     */
+    public long getPercentile(double percentile) {
+        long total = getCount();
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(total * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < bucketCount; i++) {
+            seen += buckets.get(i);
+            if (seen >= rank) {
+                return Math.min(bucketUpperBound(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * @return the number of values recorded in each bucket whose count is non-zero, paired with the bucket's upper
+     * bound, as {upperBound, count} pairs in ascending order
+     */
+    public long[][] getBuckets() {
+        int used = 0;
+        long[] counts = new long[bucketCount];
+        for (int i = 0; i < bucketCount; i++) {
+            counts[i] = buckets.get(i);
+            if (counts[i] != 0) {
+                used++;
+            }
+        }
+        long[][] result = new long[used][];
+        int next = 0;
+        for (int i = 0; i < bucketCount; i++) {
+            if (counts[i] != 0) {
+                result[next++] = new long[]{bucketUpperBound(i), counts[i]};
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Values below subBuckets get a bucket each; above that, the top subBucketBits bits after the leading one pick
+     * the sub-bucket within the value's power of two.
+     */
+    int bucketIndex(long value) {
+        if (value < subBuckets) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - subBucketBits)) & (subBuckets - 1);
+        return (exponent - subBucketBits + 1) * subBuckets + subBucket;
+    }
+
+    long bucketUpperBound(int index) {
+        if (index < subBuckets) {
+            return index;
+        }
+        int exponent = index / subBuckets + subBucketBits - 1;
+        long subBucket = index % subBuckets;
+        long lower = (subBuckets + subBucket) << (exponent - subBucketBits);
+        long width = 1L << (exponent - subBucketBits);
+        long upper = lower + width - 1;
+        return upper < 0 ? Long.MAX_VALUE : upper;
+    }
+}
@@ -0,0 +1,227 @@
+package Util;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * The LfuCache class is a bounded in-memory cache which, when full, evicts the least frequently used entry, breaking
+ * ties by evicting the one that has gone longest without being used. Entries also expire ttlMillis after they were
+ * written. Frequencies are halved every few thousand reads so that entries which were popular once but have gone
+ * cold do not stay pinned forever.
+ *
+ * Reads and writes are constant time apart from the periodic halving. The cache is synchronized; each call holds the
+ * lock for a handful of map operations only.
+ */
+public class LfuCache<K, V> {
+
+    /**
+     * Frequencies are halved after this many reads per slot of capacity.
+     */
+    private static final int AGING_READS_PER_ENTRY = 10;
+
+    private final int maxSize;
+    private final long ttlNanos;
+    private final LongSupplier clock;
+    private final Map<K, Node<V>> nodes = new HashMap<>();
+    /**
+     * Keys grouped by frequency; each group is in least recently used first order.
+     */
+    private final Map<Integer, LinkedHashSet<K>> frequencies = new HashMap<>();
+    private int minFrequency = 0;
+    private long readsSinceAging = 0;
+
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+    private long expirations = 0;
+
+    /**
+     * @param maxSize the most entries kept
+     * @param ttlMillis how long an entry may be served after it was written
+     */
+    public LfuCache(int maxSize, long ttlMillis) {
+        this(maxSize, ttlMillis, System::nanoTime);
+    }
+
+    /**
+     * @param maxSize the most entries kept
+     * @param ttlMillis how long an entry may be served after it was written
+     * @param clock the source of nanosecond timestamps used for expiry, replaceable in tests
+     */
+    public LfuCache(int maxSize, long ttlMillis, LongSupplier clock) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize must be at least 1");
+        }
+        this.maxSize = maxSize;
+        this.ttlNanos = ttlMillis * 1_000_000L;
+        this.clock = clock;
+    }
+
+    /**
+     * @return the cached value for key, or null if it is not cached or has expired
+     */
+    public synchronized V get(K key) {
+        Node<V> node = nodes.get(key);
+        if (node == null) {
+            misses++;
+            return null;
+        }
+        if (clock.getAsLong() - node.writtenAt > ttlNanos) {
+            remove(key, node);
+            expirations++;
+            misses++;
+            return null;
+        }
+        hits++;
+        touch(key, node);
+        if (++readsSinceAging >= (long) maxSize * AGING_READS_PER_ENTRY) {
+            age();
+        }
+        return node.value;
+    }
+
+    /**
+     * Cache value under key, evicting the least frequently used entry if the cache is full.
+     */
+    public synchronized void put(K key, V value) {
+        Node<V> node = nodes.get(key);
+        if (node != null) {
+            node.value = value;
+            node.writtenAt = clock.getAsLong();
+            touch(key, node);
+            return;
+        }
+        if (nodes.size() >= maxSize) {
+            evictOne();
+        }
+        node = new Node<>(value, clock.getAsLong());
+        nodes.put(key, node);
+        frequencies.computeIfAbsent(1, f -> new LinkedHashSet<>()).add(key);
+        minFrequency = 1;
+    }
+
+    /**
+     * Drop key from the cache, if it is there.
+     */
+    public synchronized void invalidate(K key) {
+        Node<V> node = nodes.get(key);
+        if (node != null) {
+            remove(key, node);
+        }
+    }
+
+    /**
+     * Drop every entry. Statistics are kept.
+     */
+    public synchronized void clear() {
+        nodes.clear();
+        frequencies.clear();
+        minFrequency = 0;
+    }
+
+    public synchronized int size() {
+        return nodes.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return how many entries were dropped to make room for new ones
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * @return how many entries were dropped because they outlived the ttl
+     */
+    public synchronized long getExpirations() {
+        return expirations;
+    }
+
+    private void touch(K key, Node<V> node) {
+        LinkedHashSet<K> group = frequencies.get(node.frequency);
+        group.remove(key);
+        if (group.isEmpty()) {
+            frequencies.remove(node.frequency);
+            if (minFrequency == node.frequency) {
+                minFrequency = node.frequency + 1;
+            }
+        }
+        node.frequency++;
+        frequencies.computeIfAbsent(node.frequency, f -> new LinkedHashSet<>()).add(key);
+    }
+
+    private void remove(K key, Node<V> node) {
+        nodes.remove(key);
+        LinkedHashSet<K> group = frequencies.get(node.frequency);
+        group.remove(key);
+        if (group.isEmpty()) {
+            frequencies.remove(node.frequency);
+            if (minFrequency == node.frequency) {
+                minFrequency = lowestFrequency();
+            }
+        }
+    }
+
+    private void evictOne() {
+        LinkedHashSet<K> group = frequencies.get(minFrequency);
+        if (group == null) {
+            minFrequency = lowestFrequency();
+            group = frequencies.get(minFrequency);
+        }
+        Iterator<K> oldest = group.iterator();
+        K key = oldest.next();
+        remove(key, nodes.get(key));
+        evictions++;
+    }
+
+    /**
+     * Halve every frequency, keeping the recency order within each new group.
+     */
+    private void age() {
+        readsSinceAging = 0;
+        Map<Integer, LinkedHashSet<K>> aged = new HashMap<>();
+        frequencies.keySet().stream().sorted().forEach(frequency -> {
+            int halved = Math.max(1, frequency / 2);
+            LinkedHashSet<K> target = aged.computeIfAbsent(halved, f -> new LinkedHashSet<>());
+            for (K key : frequencies.get(frequency)) {
+                nodes.get(key).frequency = halved;
+                target.add(key);
+            }
+        });
+        frequencies.clear();
+        frequencies.putAll(aged);
+        minFrequency = lowestFrequency();
+    }
+
+    private int lowestFrequency() {
+        int lowest = 0;
+        for (int frequency : frequencies.keySet()) {
+            if (lowest == 0 || frequency < lowest) {
+                lowest = frequency;
+            }
+        }
+        return lowest;
+    }
+
+    private static final class Node<V> {
+        private V value;
+        private long writtenAt;
+        private int frequency = 1;
+
+        Node(V value, long writtenAt) {
+            this.value = value;
+            this.writtenAt = writtenAt;
+        }
+    }
+}
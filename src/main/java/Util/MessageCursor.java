@@ -0,0 +1,45 @@
+package Util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * The MessageCursor class turns the last message_id of a page into the opaque cursor string handed to clients, and
+ * back again. Clients should treat the cursor as an opaque token; its encoding may change.
+ */
+public class MessageCursor {
+
+    private static final String PREFIX = "m:";
+
+    private MessageCursor() {
+    }
+
+    /**
+     * @param lastMessageId the message_id of the last message on the current page
+     * @return the cursor for the page that follows it
+     */
+    public static String encode(int lastMessageId) {
+        byte[] raw = (PREFIX + lastMessageId).getBytes(StandardCharsets.UTF_8);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw);
+    }
+
+    /**
+     * @param cursor a cursor previously returned by encode, or null for the first page
+     * @return the message_id that the next page starts after; 0 for the first page
+     * @throws IllegalArgumentException if the cursor was not produced by encode
+     */
+    public static int decode(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return 0;
+        }
+        String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        if (!raw.startsWith(PREFIX)) {
+            throw new IllegalArgumentException("Malformed cursor");
+        }
+        int lastMessageId = Integer.parseInt(raw.substring(PREFIX.length()));
+        if (lastMessageId < 0) {
+            throw new IllegalArgumentException("Malformed cursor");
+        }
+        return lastMessageId;
+    }
+}
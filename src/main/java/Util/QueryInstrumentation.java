@@ -0,0 +1,235 @@
+package Util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The proxies QueryStats wraps connections in. A connection hands out instrumented statements, a statement times its
+ * execute calls and remembers the types of its bound parameters, and a query's result set times its next() calls
+ * and reports the whole query to QueryStats when it is closed or runs out of rows. Each execution is a Tracer span,
+ * from the execute call until the rows have been read.
+ *
+ * Connections and statements are proxies, as in ConnectionPool; result sets are a ForwardingResultSet, as their
+ * getters are called far too often to go through reflection.
+ */
+final class QueryInstrumentation {
+
+    private QueryInstrumentation() {
+    }
+
+    private static Object forward(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Wraps the statements a connection creates. Everything else goes straight to the connection.
+     */
+    static final class ConnectionHandler implements InvocationHandler {
+        private final QueryStats queryStats;
+        private final Connection connection;
+
+        ConnectionHandler(QueryStats queryStats, Connection connection) {
+            this.queryStats = queryStats;
+            this.connection = connection;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "prepareStatement":
+                    return statement(PreparedStatement.class, forward(connection, method, args), (String) args[0]);
+                case "createStatement":
+                    return statement(Statement.class, forward(connection, method, args), null);
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    return forward(connection, method, args);
+            }
+        }
+
+        private Object statement(Class<? extends Statement> type, Object statement, String sql) {
+            return Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                    new StatementHandler(queryStats, (Statement) statement, sql));
+        }
+    }
+
+    /**
+     * Times execute calls. A prepared statement knows its SQL from the start; a plain statement is given it with each
+     * execute.
+     */
+    static final class StatementHandler implements InvocationHandler {
+        private final QueryStats queryStats;
+        private final Statement statement;
+        private final String sql;
+        private final List<String> parameterTypes = new ArrayList<>();
+        private int batches = 0;
+
+        StatementHandler(QueryStats queryStats, Statement statement, String sql) {
+            this.queryStats = queryStats;
+            this.statement = statement;
+            this.sql = sql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.startsWith("execute")) {
+                return execute(method, args);
+            }
+            switch (name) {
+                case "addBatch":
+                    if (args == null) {
+                        batches++;
+                    }
+                    break;
+                case "clearParameters":
+                    parameterTypes.clear();
+                    break;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    //setInt(1, x), setString(2, s) and so on; single argument setters such as setFetchSize configure
+                    //the statement rather than bind a parameter
+                    if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                        bind((Integer) args[0], name.equals("setNull") ? "null"
+                                : Character.toLowerCase(name.charAt(3)) + name.substring(4));
+                    }
+                    break;
+            }
+            return forward(statement, method, args);
+        }
+
+        private void bind(int index, String type) {
+            while (parameterTypes.size() < index) {
+                parameterTypes.add("?");
+            }
+            parameterTypes.set(index - 1, type);
+        }
+
+        private Object execute(Method method, Object[] args) throws Throwable {
+            String executed = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : sql;
+            if (executed == null) {
+                return forward(statement, method, args);
+            }
+            QueryStats.StatementStats stats = queryStats.forSql(executed);
+            int span = Tracer.start(stats.spanName);
+            long start = System.nanoTime();
+            Object result;
+            try {
+                result = forward(statement, method, args);
+            } catch (SQLException e) {
+                queryStats.recordError(stats);
+                Tracer.end(span, "failed");
+                throw e;
+            }
+            long executeNanos = System.nanoTime() - start;
+            String bindShape = bindShape();
+            batches = 0;
+
+            if (result instanceof ResultSet) {
+                //the query is recorded, and its span closed, once its rows have been read
+                return new TimedResultSet(queryStats, stats, (ResultSet) result, executeNanos, bindShape, span);
+            }
+            long rows = affectedRows(result);
+            queryStats.record(stats, executeNanos, -1, rows, bindShape);
+            if (span >= 0) {
+                Tracer.end(span, rows + " rows");
+            }
+            return result;
+        }
+
+        private String bindShape() {
+            String shape = "(" + String.join(", ", parameterTypes) + ")";
+            return batches > 1 ? shape + " x " + batches : shape;
+        }
+
+        private static long affectedRows(Object result) {
+            if (result instanceof Number) {
+                return Math.max(((Number) result).longValue(), 0);
+            }
+            long rows = 0;
+            if (result instanceof int[]) {
+                for (int count : (int[]) result) {
+                    rows += Math.max(count, 0);
+                }
+            } else if (result instanceof long[]) {
+                for (long count : (long[]) result) {
+                    rows += Math.max(count, 0);
+                }
+            }
+            return rows;
+        }
+    }
+
+    /**
+     * Times next() and counts rows, and reports the query once, when the rows run out or the result set is closed.
+     * A ForwardingResultSet rather than a proxy, since its getters run for every column of every row.
+     */
+    static final class TimedResultSet extends ForwardingResultSet {
+        private final QueryStats queryStats;
+        private final QueryStats.StatementStats stats;
+        private final long executeNanos;
+        private final String bindShape;
+        private final int span;
+        private long fetchNanos = 0;
+        private long rows = 0;
+        private boolean recorded = false;
+
+        TimedResultSet(QueryStats queryStats, QueryStats.StatementStats stats, ResultSet resultSet,
+                       long executeNanos, String bindShape, int span) {
+            super(resultSet);
+            this.queryStats = queryStats;
+            this.stats = stats;
+            this.executeNanos = executeNanos;
+            this.bindShape = bindShape;
+            this.span = span;
+        }
+
+        @Override
+        public boolean next() throws SQLException {
+            long start = System.nanoTime();
+            boolean more = delegate.next();
+            fetchNanos += System.nanoTime() - start;
+            if (more) {
+                rows++;
+            } else {
+                finish();
+            }
+            return more;
+        }
+
+        @Override
+        public void close() throws SQLException {
+            finish();
+            delegate.close();
+        }
+
+        private void finish() {
+            if (!recorded) {
+                recorded = true;
+                queryStats.record(stats, executeNanos, fetchNanos, rows, bindShape);
+                if (span >= 0) {
+                    Tracer.end(span, rows + " rows, execute " + executeNanos / 1000 + " us, fetch "
+                            + fetchNanos / 1000 + " us");
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package Util;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * The QueryStats class times the statements run on the connections it wraps, per normalized SQL statement, and logs
+ * the slow ones.
+ *
+ * A query's time is split in two: execute, the executeQuery() call itself, and fetch, the time spent inside
+ * ResultSet.next() until the result set is closed or runs out. With H2's lazy query execution most of a streamed
+ * listing's database work shows up as fetch, and anything the caller does between rows, such as writing JSON, is in
+ * neither. Updates and batches only have an execute phase, and count affected rows instead of rows returned.
+ *
+ * Statements are grouped by their SQL with literals replaced by ? and IN lists of placeholders collapsed, so the same
+ * statement with different values or list lengths is one entry. Bind parameter values are never kept: the slow query
+ * log names only their types, as the statement's bind shape, along with the Tracer request id of the request that
+ * ran it. Each execution is also a span in the request's trace, when the request is sampled.
+ *
+ * Recording is a map lookup and a few lock-free adds per execute and per result set, a proxy call per statement
+ * method, and two clock reads per row fetched; see Benchmark.QueryStatsBenchmark for what that costs a listing.
+ */
+public class QueryStats {
+
+    /**
+     * Distinct raw SQL strings whose normalized form is remembered; past this each new string is normalized again.
+     */
+    private static final int MAX_REMEMBERED_SQL = 1024;
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("(?<![\\w.])-?\\d+(?:\\.\\d+)?(?![\\w.])");
+    private static final Pattern PLACEHOLDER_LIST = Pattern.compile("\\(\\s*\\?(?:\\s*,\\s*\\?)+\\s*\\)");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final long slowQueryNanos;
+    private final Consumer<String> slowQueryLog;
+    private final Map<String, StatementStats> bySql = new ConcurrentHashMap<>();
+    private final Map<String, StatementStats> byNormalizedSql = new ConcurrentHashMap<>();
+    private final LongAdder slowQueries = new LongAdder();
+
+    /**
+     * @param slowQueryMillis statements taking at least this long in total are logged; negative to log none
+     * @param slowQueryLog where slow query lines are written
+     */
+    public QueryStats(long slowQueryMillis, Consumer<String> slowQueryLog) {
+        this.slowQueryNanos = slowQueryMillis < 0 ? Long.MAX_VALUE : TimeUnit.MILLISECONDS.toNanos(slowQueryMillis);
+        this.slowQueryLog = slowQueryLog;
+    }
+
+    /**
+     * @param connection a connection to instrument
+     * @return a connection whose statements, prepared statements and result sets report to this QueryStats; closing
+     * it closes the wrapped connection
+     */
+    public Connection wrap(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new QueryInstrumentation.ConnectionHandler(this, connection));
+    }
+
+    /**
+     * @return the stats of every statement run so far, keyed by normalized SQL in name order
+     */
+    public Map<String, StatementStats> getStatements() {
+        return new TreeMap<>(byNormalizedSql);
+    }
+
+    /**
+     * @return how many statements were written to the slow query log
+     */
+    public long getSlowQueryCount() {
+        return slowQueries.sum();
+    }
+
+    /**
+     * @return the stats entry for a raw SQL string, created on first use
+     */
+    StatementStats forSql(String sql) {
+        StatementStats stats = bySql.get(sql);
+        if (stats != null) {
+            return stats;
+        }
+        stats = byNormalizedSql.computeIfAbsent(normalize(sql), StatementStats::new);
+        if (bySql.size() < MAX_REMEMBERED_SQL) {
+            bySql.putIfAbsent(sql, stats);
+        }
+        return stats;
+    }
+
+    /**
+     * Record one finished execution, and log it if it was slow.
+     * @param rows rows returned by a query, or rows affected by an update
+     * @param bindShape the types of the bound parameters, such as "(int, string)"
+     */
+    void record(StatementStats stats, long executeNanos, long fetchNanos, long rows, String bindShape) {
+        stats.executions.increment();
+        stats.executeMicros.record(TimeUnit.NANOSECONDS.toMicros(executeNanos));
+        if (fetchNanos >= 0) {
+            stats.fetchMicros.record(TimeUnit.NANOSECONDS.toMicros(fetchNanos));
+        }
+        stats.rows.add(rows);
+        long totalNanos = executeNanos + Math.max(fetchNanos, 0);
+        if (totalNanos >= slowQueryNanos) {
+            slowQueries.increment();
+            String requestId = Tracer.currentRequestId();
+            slowQueryLog.accept("Slow query: " + millis(totalNanos) + " ms (execute " + millis(executeNanos)
+                    + " ms" + (fetchNanos >= 0 ? ", fetch " + millis(fetchNanos) + " ms" : "") + ", " + rows
+                    + " rows) " + stats.sql + " params " + bindShape
+                    + (requestId != null ? " request " + requestId : ""));
+        }
+    }
+
+    void recordError(StatementStats stats) {
+        stats.errors.increment();
+    }
+
+    private static String millis(long nanos) {
+        return String.format("%.1f", nanos / 1e6);
+    }
+
+    /**
+     * @return sql with string and number literals replaced by ?, lists of placeholders collapsed to (?+), and runs of
+     * whitespace collapsed to one space
+     */
+    static String normalize(String sql) {
+        String normalized = STRING_LITERAL.matcher(sql).replaceAll("?");
+        normalized = NUMBER_LITERAL.matcher(normalized).replaceAll("?");
+        normalized = PLACEHOLDER_LIST.matcher(normalized).replaceAll("(?+)");
+        return WHITESPACE.matcher(normalized).replaceAll(" ").trim();
+    }
+
+    /**
+     * Totals for one normalized statement. Times are in microseconds.
+     */
+    public static final class StatementStats {
+        private final String sql;
+        final String spanName;
+        private final LongAdder executions = new LongAdder();
+        private final LongAdder rows = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final Histogram executeMicros = new Histogram();
+        private final Histogram fetchMicros = new Histogram();
+
+        StatementStats(String sql) {
+            this.sql = sql;
+            this.spanName = "jdbc " + sql;
+        }
+
+        /**
+         * @return the normalized SQL
+         */
+        public String getSql() {
+            return sql;
+        }
+
+        /**
+         * @return how many times the statement ran without an error
+         */
+        public long getExecutions() {
+            return executions.sum();
+        }
+
+        /**
+         * @return rows returned by the statement as a query, or affected by it as an update, over every execution
+         */
+        public long getRows() {
+            return rows.sum();
+        }
+
+        /**
+         * @return how many executions threw an SQLException
+         */
+        public long getErrors() {
+            return errors.sum();
+        }
+
+        /**
+         * @return the time spent in the execute call
+         */
+        public Histogram getExecuteMicros() {
+            return executeMicros;
+        }
+
+        /**
+         * @return the time spent reading the result set, for queries only
+         */
+        public Histogram getFetchMicros() {
+            return fetchMicros;
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package Util;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * The RateLimiter class keeps a token bucket per key, such as an account id: each key may make burst requests at
+ * once, and after that one request per 1/permitsPerSecond seconds.
+ *
+ * Each bucket is a single AtomicLong holding the time at which it will next be full, the generic cell rate algorithm
+ * form of a token bucket. A request advances that time by one interval with one compare-and-set, and is refused if
+ * it would push the time more than a burst past now, so a check takes no lock and allocates nothing for a key it has
+ * seen before. A request that is refused later, for example by validation, can give its permit back by moving the
+ * time back an interval. Buckets live in a ConcurrentHashMap, whose lookups take no lock and whose inserts only contend within
+ * one bin, so checks for different keys do not get in each other's way.
+ *
+ * A bucket that has been full for longer than the idle timeout is dropped, since a new bucket would behave the same.
+ * Once per idle timeout the calling threads sweep the map for such buckets, each checking a slice of at most
+ * SWEEP_SLICE buckets where the previous one stopped, so the map only holds recently active keys and no request pays
+ * for more than one slice however many keys there are.
+ */
+public class RateLimiter {
+
+    static final int SWEEP_SLICE = 64;
+
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final long idleNanos;
+    private final LongSupplier clock;
+    private final Map<Integer, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final AtomicLong nextSweepNanos;
+    /**
+     * Set while a thread is sweeping a slice, so only one thread at a time uses the sweep iterator.
+     */
+    private final AtomicBoolean sweeping = new AtomicBoolean();
+    /**
+     * Where the sweep in progress has got to, or null between sweeps. Guarded by sweeping.
+     */
+    private Iterator<Map.Entry<Integer, AtomicLong>> sweep;
+    private final LongAdder allowed = new LongAdder();
+    private final LongAdder throttled = new LongAdder();
+
+    /**
+     * @param permitsPerSecond the sustained request rate allowed per key
+     * @param burst how many requests a key with a full bucket may make at once
+     * @param idleMillis how long a full bucket is kept before it is dropped
+     */
+    public RateLimiter(double permitsPerSecond, int burst, long idleMillis) {
+        this(permitsPerSecond, burst, idleMillis, System::nanoTime);
+    }
+
+    /**
+     * @param clock the time source in nanoseconds, for tests
+     */
+    public RateLimiter(double permitsPerSecond, int burst, long idleMillis, LongSupplier clock) {
+        if (permitsPerSecond <= 0 || burst < 1) {
+            throw new IllegalArgumentException("permitsPerSecond must be positive and burst at least 1");
+        }
+        this.intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond);
+        this.burstNanos = intervalNanos * burst;
+        this.idleNanos = TimeUnit.MILLISECONDS.toNanos(idleMillis);
+        this.clock = clock;
+        this.nextSweepNanos = new AtomicLong(clock.getAsLong() + idleNanos);
+    }
+
+    /**
+     * Take a permit for key if its bucket has one.
+     * @return 0 if the request may go ahead, otherwise how many nanoseconds until the key's next permit
+     */
+    public long tryAcquire(int key) {
+        long now = clock.getAsLong();
+        sweepIfDue(now);
+        AtomicLong fullAt = buckets.get(key);
+        if (fullAt == null) {
+            fullAt = buckets.computeIfAbsent(key, k -> new AtomicLong(now));
+        }
+        while (true) {
+            long current = fullAt.get();
+            long next = Math.max(current, now) + intervalNanos;
+            if (next - now > burstNanos) {
+                throttled.increment();
+                return next - now - burstNanos;
+            }
+            if (fullAt.compareAndSet(current, next)) {
+                allowed.increment();
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Give back a permit taken by tryAcquire for a request that turned out to change nothing, such as one that failed
+     * validation, so that it does not count against key.
+     */
+    public void refund(int key) {
+        AtomicLong fullAt = buckets.get(key);
+        if (fullAt != null) {
+            fullAt.addAndGet(-intervalNanos);
+        }
+    }
+
+    /**
+     * If a sweep is due and no other thread is sweeping, drop the buckets in the next slice of the map that have been
+     * full for longer than the idle timeout. The next sweep falls due an idle timeout after the last slice.
+     */
+    private void sweepIfDue(long now) {
+        if (now - nextSweepNanos.get() < 0 || !sweeping.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            if (now - nextSweepNanos.get() < 0) {
+                return;
+            }
+            if (sweep == null) {
+                sweep = buckets.entrySet().iterator();
+            }
+            for (int i = 0; i < SWEEP_SLICE && sweep.hasNext(); i++) {
+                Map.Entry<Integer, AtomicLong> bucket = sweep.next();
+                if (now - bucket.getValue().get() > idleNanos) {
+                    buckets.remove(bucket.getKey(), bucket.getValue());
+                }
+            }
+            if (!sweep.hasNext()) {
+                sweep = null;
+                nextSweepNanos.set(now + idleNanos);
+            }
+        } finally {
+            sweeping.set(false);
+        }
+    }
+
+    /**
+     * @return how many requests were let through
+     */
+    public long getAllowedCount() {
+        return allowed.sum();
+    }
+
+    /**
+     * @return how many requests were refused
+     */
+    public long getThrottledCount() {
+        return throttled.sum();
+    }
+
+    /**
+     * @return the number of keys with a bucket
+     */
+    public int getTrackedKeys() {
+        return buckets.size();
+    }
+}
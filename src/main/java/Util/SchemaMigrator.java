@@ -0,0 +1,115 @@
+package Util;
+
+import org.h2.tools.RunScript;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * The SchemaMigrator class brings the database schema up to date by applying the scripts in db/migration on the
+ * classpath, in order, exactly once each. Applied scripts are recorded in the schema_version table together with a
+ * checksum, so a script that is edited after it has been applied is reported instead of silently skipped.
+ *
+ * To change the schema, add a new script to MIGRATIONS rather than editing an applied one.
+ */
+public class SchemaMigrator {
+
+    /**
+     * Every migration script, in the order it must be applied. The version is the position in this list, starting at 1.
+     */
+    static final String[] MIGRATIONS = {
+            "V1__create_tables.sql",
+            "V2__message_posted_by_index.sql",
+    };
+
+    private static final String MIGRATION_PATH = "db/migration/";
+
+    private SchemaMigrator() {
+    }
+
+    /**
+     * Apply every migration that has not been applied to the database yet.
+     * @param connection the connection to migrate through
+     * @return the number of migrations applied by this call
+     * @throws SQLException if a script fails
+     * @throws IllegalStateException if an applied script no longer matches its recorded checksum
+     */
+    public static int migrate(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("create table if not exists schema_version ("
+                    + "version int primary key, "
+                    + "script varchar(255) not null, "
+                    + "checksum bigint not null, "
+                    + "applied_on timestamp default current_timestamp)");
+        }
+        Map<Integer, Long> applied = readAppliedChecksums(connection);
+
+        int count = 0;
+        for (int i = 0; i < MIGRATIONS.length; i++) {
+            int version = i + 1;
+            String script = MIGRATIONS[i];
+            String sql = readScript(script);
+            long checksum = checksum(sql);
+
+            Long appliedChecksum = applied.get(version);
+            if (appliedChecksum != null) {
+                if (appliedChecksum != checksum) {
+                    throw new IllegalStateException("Migration " + script + " was changed after it was applied");
+                }
+                continue;
+            }
+
+            RunScript.execute(connection, new StringReader(sql));
+            try (PreparedStatement record = connection.prepareStatement(
+                    "insert into schema_version (version, script, checksum) values (?, ?, ?)")) {
+                record.setInt(1, version);
+                record.setString(2, script);
+                record.setLong(3, checksum);
+                record.executeUpdate();
+            }
+            count++;
+        }
+        return count;
+    }
+
+    private static Map<Integer, Long> readAppliedChecksums(Connection connection) throws SQLException {
+        Map<Integer, Long> applied = new HashMap<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("select version, checksum from schema_version")) {
+            while (resultSet.next()) {
+                applied.put(resultSet.getInt("version"), resultSet.getLong("checksum"));
+            }
+        }
+        return applied;
+    }
+
+    private static String readScript(String script) throws SQLException {
+        try (InputStream in = SchemaMigrator.class.getClassLoader().getResourceAsStream(MIGRATION_PATH + script)) {
+            if (in == null) {
+                throw new SQLException("Migration script not found on classpath: " + MIGRATION_PATH + script);
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new SQLException("Could not read migration script " + script, e);
+        }
+    }
+
+    /**
+     * Checksum the script with line endings normalized, so checking it out on another platform does not change it.
+     */
+    private static long checksum(String sql) {
+        CRC32 crc = new CRC32();
+        crc.update(sql.replace("\r\n", "\n").getBytes(StandardCharsets.UTF_8));
+        return crc.getValue();
+    }
+}
@@ -0,0 +1,226 @@
+package Util;
+
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * The SessionTokens class issues and checks stateless session tokens. A token is the base64url encoding of a 20 byte
+ * payload (token id, account id, expiry in epoch seconds) followed by a '.' and the base64url HMAC-SHA256 of that
+ * payload. Checking a token recomputes the HMAC in memory, so no database access is needed to know which account a
+ * request comes from.
+ *
+ * Revoked tokens are kept by token id in a hash set until they would have expired anyway, so the revocation check is
+ * a single constant time lookup. Once a minute the revoking threads sweep the set for expired revocations, each
+ * checking a slice of at most SWEEP_SLICE entries where the previous one stopped, so no logout pays for more than one
+ * slice. A sweep drops entries faster than revokes add them, so the set holds little beyond the live tokens.
+ */
+public class SessionTokens {
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final int PAYLOAD_BYTES = Long.BYTES + Integer.BYTES + Long.BYTES;
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+    private static final long SWEEP_INTERVAL_SECONDS = 60;
+    /**
+     * The most revocations one revoke checks while sweeping.
+     */
+    static final int SWEEP_SLICE = 64;
+
+    private final SecretKeySpec key;
+    private final long ttlSeconds;
+    private final LongSupplier clock;
+    private final SecureRandom random = new SecureRandom();
+    /**
+     * Mac is not thread safe, so each thread keeps its own, initialised once with the key.
+     */
+    private final ThreadLocal<Mac> macs;
+    /**
+     * Revoked token ids mapped to the epoch second at which they expire.
+     */
+    private final Map<Long, Long> revoked = new ConcurrentHashMap<>();
+    /**
+     * The epoch second from which revokes sweep out expired revocations.
+     */
+    private final AtomicLong nextSweep = new AtomicLong();
+    /**
+     * Set while a thread is sweeping a slice, so only one thread at a time uses the sweep iterator.
+     */
+    private final AtomicBoolean sweeping = new AtomicBoolean();
+    /**
+     * Where the sweep in progress has got to, or null between sweeps. Guarded by sweeping.
+     */
+    private Iterator<Long> sweep;
+
+    /**
+     * @param secret the HMAC key, at least 32 bytes
+     * @param ttlSeconds how long an issued token stays valid
+     */
+    public SessionTokens(byte[] secret, long ttlSeconds) {
+        this(secret, ttlSeconds, System::currentTimeMillis);
+    }
+
+    /**
+     * @param secret the HMAC key, at least 32 bytes
+     * @param ttlSeconds how long an issued token stays valid
+     * @param clock the source of epoch millisecond timestamps, replaceable in tests
+     */
+    public SessionTokens(byte[] secret, long ttlSeconds, LongSupplier clock) {
+        if (secret.length < 32) {
+            throw new IllegalArgumentException("secret must be at least 32 bytes");
+        }
+        this.key = new SecretKeySpec(secret.clone(), ALGORITHM);
+        this.ttlSeconds = ttlSeconds;
+        this.clock = clock;
+        this.macs = ThreadLocal.withInitial(this::newMac);
+    }
+
+    /**
+     * @return a random 32 byte secret, for when none is configured; tokens signed with it do not survive a restart
+     */
+    public static byte[] randomSecret() {
+        byte[] secret = new byte[32];
+        new SecureRandom().nextBytes(secret);
+        return secret;
+    }
+
+    /**
+     * @return a new token for accountId, valid for ttlSeconds from now
+     */
+    public String issue(int accountId) {
+        ByteBuffer payload = ByteBuffer.allocate(PAYLOAD_BYTES);
+        payload.putLong(random.nextLong());
+        payload.putInt(accountId);
+        payload.putLong(nowSeconds() + ttlSeconds);
+        byte[] bytes = payload.array();
+        return ENCODER.encodeToString(bytes) + "." + ENCODER.encodeToString(sign(bytes));
+    }
+
+    /**
+     * @return the account id the token was issued for, or null if it is malformed, forged, expired or revoked
+     */
+    public Integer verify(String token) {
+        ByteBuffer payload = checkedPayload(token);
+        if (payload == null) {
+            return null;
+        }
+        long tokenId = payload.getLong();
+        int accountId = payload.getInt();
+        long expiresAt = payload.getLong();
+        if (expiresAt <= nowSeconds() || revoked.containsKey(tokenId)) {
+            return null;
+        }
+        return accountId;
+    }
+
+    /**
+     * Revoke a valid token so verify rejects it from now on.
+     * @return true if the token was valid and is now revoked
+     */
+    public boolean revoke(String token) {
+        ByteBuffer payload = checkedPayload(token);
+        if (payload == null) {
+            return false;
+        }
+        long tokenId = payload.getLong();
+        payload.getInt();
+        long expiresAt = payload.getLong();
+        long now = nowSeconds();
+        if (expiresAt <= now) {
+            return false;
+        }
+        sweepIfDue(now);
+        return revoked.putIfAbsent(tokenId, expiresAt) == null;
+    }
+
+    /**
+     * @return how many revoked tokens are being remembered
+     */
+    public int getRevokedCount() {
+        return revoked.size();
+    }
+
+    /**
+     * @return the payload of a well-formed token whose signature matches, positioned at its start, or null
+     */
+    private ByteBuffer checkedPayload(String token) {
+        if (token == null) {
+            return null;
+        }
+        int dot = token.indexOf('.');
+        if (dot < 0) {
+            return null;
+        }
+        byte[] payload;
+        byte[] signature;
+        try {
+            payload = DECODER.decode(token.substring(0, dot));
+            signature = DECODER.decode(token.substring(dot + 1));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        // MessageDigest.isEqual takes the same time wherever the first differing byte is
+        if (payload.length != PAYLOAD_BYTES || !MessageDigest.isEqual(sign(payload), signature)) {
+            return null;
+        }
+        return ByteBuffer.wrap(payload);
+    }
+
+    /**
+     * If a sweep is due and no other thread is sweeping, drop the revocations in the next slice of the set whose tokens
+     * have expired, since verify rejects those anyway. The next sweep falls due a minute after the last slice.
+     */
+    private void sweepIfDue(long now) {
+        if (now < nextSweep.get() || !sweeping.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            if (now < nextSweep.get()) {
+                return;
+            }
+            if (sweep == null) {
+                sweep = revoked.values().iterator();
+            }
+            for (int i = 0; i < SWEEP_SLICE && sweep.hasNext(); i++) {
+                if (sweep.next() <= now) {
+                    sweep.remove();
+                }
+            }
+            if (!sweep.hasNext()) {
+                sweep = null;
+                nextSweep.set(now + SWEEP_INTERVAL_SECONDS);
+            }
+        } finally {
+            sweeping.set(false);
+        }
+    }
+
+    private byte[] sign(byte[] payload) {
+        return macs.get().doFinal(payload);
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 is not available", e);
+        }
+    }
+
+    private long nowSeconds() {
+        return clock.getAsLong() / 1000;
+    }
+}
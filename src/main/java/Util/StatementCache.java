@@ -0,0 +1,239 @@
+package Util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The StatementCache class keeps the PreparedStatements of one pooled connection alive across borrows, so the same SQL
+ * text is only parsed once per physical connection. Entries are evicted least recently used first once the cache holds
+ * more than maxSize statements.
+ *
+ * A physical connection is only ever used by one borrower at a time, so the cache itself is not synchronized. The hit
+ * and miss counters are shared by every cache in a pool.
+ */
+class StatementCache {
+
+    private final Connection physical;
+    private final int maxSize;
+    private final LongAdder hits;
+    private final LongAdder misses;
+    private final Map<Key, CachedStatement> statements;
+
+    /**
+     * @param physical the connection the statements belong to
+     * @param maxSize the maximum number of statements kept open; 0 disables caching
+     * @param hits the pool wide hit counter
+     * @param misses the pool wide miss counter
+     */
+    StatementCache(Connection physical, int maxSize, LongAdder hits, LongAdder misses) {
+        this.physical = physical;
+        this.maxSize = maxSize;
+        this.hits = hits;
+        this.misses = misses;
+        this.statements = new LinkedHashMap<Key, CachedStatement>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, CachedStatement> eldest) {
+                if (size() > StatementCache.this.maxSize) {
+                    eldest.getValue().evict();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Return a statement for sql, reusing a cached one if it is free. Closing the returned statement hands it back to
+     * the cache instead of closing it.
+     * @param sql the SQL text
+     * @param autoGeneratedKeys Statement.RETURN_GENERATED_KEYS or Statement.NO_GENERATED_KEYS
+     */
+    PreparedStatement prepare(String sql, int autoGeneratedKeys) throws SQLException {
+        if (maxSize <= 0) {
+            misses.increment();
+            return physical.prepareStatement(sql, autoGeneratedKeys);
+        }
+        Key key = new Key(sql, autoGeneratedKeys);
+        CachedStatement cached = statements.get(key);
+        if (cached != null && cached.evicted && !cached.inUse()) {
+            //its reset failed when it was last handed back, so it is already closed
+            statements.remove(key);
+            cached = null;
+        }
+        if (cached != null && !cached.inUse()) {
+            hits.increment();
+            return cached.lease();
+        }
+        misses.increment();
+        PreparedStatement statement = physical.prepareStatement(sql, autoGeneratedKeys);
+        if (cached != null) {
+            //the cached copy is already handed out on this connection, so give this caller a plain statement
+            return statement;
+        }
+        cached = new CachedStatement(statement);
+        statements.put(key, cached);
+        return cached.lease();
+    }
+
+    /**
+     * @return the number of statements currently held open
+     */
+    int size() {
+        return statements.size();
+    }
+
+    /**
+     * Close every cached statement. Called when the physical connection is closed.
+     */
+    void closeAll() {
+        for (CachedStatement cached : statements.values()) {
+            cached.evict();
+        }
+        statements.clear();
+    }
+
+    private static final class Key {
+        private final String sql;
+        private final int autoGeneratedKeys;
+
+        Key(String sql, int autoGeneratedKeys) {
+            this.sql = sql;
+            this.autoGeneratedKeys = autoGeneratedKeys;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return autoGeneratedKeys == key.autoGeneratedKeys && sql.equals(key.sql);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * sql.hashCode() + autoGeneratedKeys;
+        }
+    }
+
+    /**
+     * A physical statement plus the lease it is currently handed out under, if any, and whether it has been evicted
+     * while handed out.
+     */
+    private static final class CachedStatement {
+        private final PreparedStatement physical;
+        private final int defaultFetchSize;
+        private Lease lease = null;
+        private boolean evicted = false;
+
+        CachedStatement(PreparedStatement physical) throws SQLException {
+            this.physical = physical;
+            this.defaultFetchSize = physical.getFetchSize();
+        }
+
+        boolean inUse() {
+            return lease != null;
+        }
+
+        /**
+         * Hand the statement out behind a new proxy, so a reference kept by an earlier borrower stays closed.
+         */
+        PreparedStatement lease() {
+            lease = new Lease(this);
+            return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class}, lease);
+        }
+
+        /**
+         * Take the statement back from a lease, clearing everything a borrower may have left on it: parameters, a
+         * batch that was added to but never executed, warnings and a changed fetch size. A statement that cannot be
+         * cleared is closed and dropped from the cache.
+         */
+        void release(Lease released) {
+            if (lease != released) {
+                return;
+            }
+            lease = null;
+            if (evicted) {
+                closeQuietly(physical);
+                return;
+            }
+            try {
+                physical.clearParameters();
+                physical.clearBatch();
+                physical.clearWarnings();
+                if (physical.getFetchSize() != defaultFetchSize) {
+                    physical.setFetchSize(defaultFetchSize);
+                }
+            } catch (SQLException e) {
+                System.out.println("Error resetting cached statement: " + e.getMessage());
+                evicted = true;
+                closeQuietly(physical);
+            }
+        }
+
+        void evict() {
+            evicted = true;
+            if (lease == null) {
+                closeQuietly(physical);
+            }
+        }
+    }
+
+    /**
+     * One borrower's handle on a cached statement. Closing it hands the statement back to the cache, after which every
+     * call through it fails as on a closed statement.
+     */
+    private static final class Lease implements InvocationHandler {
+        private final CachedStatement cached;
+        private boolean closed = false;
+
+        Lease(CachedStatement cached) {
+            this.cached = cached;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        cached.release(this);
+                    }
+                    return null;
+                case "isClosed":
+                    return closed || cached.physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    break;
+            }
+            if (closed) {
+                throw new SQLException("Statement has already been closed");
+            }
+            try {
+                return method.invoke(cached.physical, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    private static void closeQuietly(Statement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            System.out.println("Error closing cached statement: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package Util;
+
+/**
+ * The Trace class holds the request id of one request and, if the request was sampled, the spans timed while it ran.
+ *
+ * Spans are kept in parallel arrays sized once when the trace is made, so starting and ending a span allocates
+ * nothing; spans past the capacity are counted and dropped. A trace is written by one thread at a time, moving from
+ * the request thread to a database thread and back, with each handover going through an executor or a future, so
+ * its fields need no locking.
+ */
+public class Trace {
+
+    private final String requestId;
+    private final boolean sampled;
+    private final long startNanos;
+    private final long startEpochMillis;
+    private final String[] names;
+    private final String[] details;
+    private final long[] spanStarts;
+    private final long[] spanEnds;
+    private final int[] parents;
+    private int spanCount = 0;
+    private int droppedSpans = 0;
+    private int open = -1;
+    private long endNanos;
+    private String method;
+    private String route;
+    private int status;
+
+    /**
+     * @param requestId the id the request is known by in logs and responses
+     * @param maxSpans the most spans kept, or 0 for an unsampled trace that only carries the request id
+     */
+    Trace(String requestId, int maxSpans) {
+        this.requestId = requestId;
+        this.sampled = maxSpans > 0;
+        this.startNanos = System.nanoTime();
+        this.startEpochMillis = System.currentTimeMillis();
+        this.names = sampled ? new String[maxSpans] : null;
+        this.details = sampled ? new String[maxSpans] : null;
+        this.spanStarts = sampled ? new long[maxSpans] : null;
+        this.spanEnds = sampled ? new long[maxSpans] : null;
+        this.parents = sampled ? new int[maxSpans] : null;
+    }
+
+    /**
+     * Open a span inside the innermost open span.
+     * @return the span's index, to pass to end(), or -1 if it was not kept
+     */
+    int start(String name, long nanos) {
+        if (!sampled) {
+            return -1;
+        }
+        if (spanCount == names.length) {
+            droppedSpans++;
+            return -1;
+        }
+        int span = spanCount++;
+        names[span] = name;
+        spanStarts[span] = nanos;
+        spanEnds[span] = -1;
+        parents[span] = open;
+        open = span;
+        return span;
+    }
+
+    /**
+     * Close a span, and make its parent the innermost open span again if it was the innermost one.
+     * @param detail extra text shown with the span, or null
+     */
+    void end(int span, long nanos, String detail) {
+        if (span < 0) {
+            return;
+        }
+        spanEnds[span] = nanos;
+        details[span] = detail;
+        if (open == span) {
+            open = parents[span];
+        }
+    }
+
+    void finish(String method, String route, int status) {
+        this.endNanos = System.nanoTime();
+        this.method = method;
+        this.route = route;
+        this.status = status;
+    }
+
+    /**
+     * @return the request id
+     */
+    public String getRequestId() {
+        return requestId;
+    }
+
+    /**
+     * @return whether spans are kept for this request
+     */
+    public boolean isSampled() {
+        return sampled;
+    }
+
+    /**
+     * @return when the request started, in milliseconds since the epoch
+     */
+    public long getStartEpochMillis() {
+        return startEpochMillis;
+    }
+
+    /**
+     * @return the time from the start of the request to its end, in microseconds
+     */
+    public long getDurationMicros() {
+        return (endNanos - startNanos) / 1000;
+    }
+
+    /**
+     * @return the request method, once the trace is finished
+     */
+    public String getMethod() {
+        return method;
+    }
+
+    /**
+     * @return the route the request matched, such as /messages/{messageId}
+     */
+    public String getRoute() {
+        return route;
+    }
+
+    /**
+     * @return the response status code, once the trace is finished
+     */
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * @return the number of spans kept, indexed from 0 in the order they started
+     */
+    public int getSpanCount() {
+        return spanCount;
+    }
+
+    /**
+     * @return how many spans were not kept because the trace was full
+     */
+    public int getDroppedSpans() {
+        return droppedSpans;
+    }
+
+    /**
+     * @return the span's name, such as "parse" or the SQL of a statement
+     */
+    public String getSpanName(int span) {
+        return names[span];
+    }
+
+    /**
+     * @return the span's extra text, such as the rows a query returned, or null
+     */
+    public String getSpanDetail(int span) {
+        return details[span];
+    }
+
+    /**
+     * @return the index of the span this one started inside, or -1 for a top level span
+     */
+    public int getSpanParent(int span) {
+        return parents[span];
+    }
+
+    /**
+     * @return when the span started, in microseconds after the request started
+     */
+    public long getSpanStartMicros(int span) {
+        return (spanStarts[span] - startNanos) / 1000;
+    }
+
+    /**
+     * @return how long the span took in microseconds, or -1 if it never ended
+     */
+    public long getSpanDurationMicros(int span) {
+        return spanEnds[span] < 0 ? -1 : (spanEnds[span] - spanStarts[span]) / 1000;
+    }
+}
@@ -0,0 +1,170 @@
+package Util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The Tracer class times spans of work inside a request, such as parsing the body, a service call or a JDBC
+ * statement, for a sampled fraction of requests, and keeps the most recent sampled traces in a ring buffer.
+ *
+ * The current request's Trace lives in a thread local. Code anywhere in the request's path calls start() and end()
+ * around the work it wants timed; on an unsampled request, or on a thread with no request, those are a thread local
+ * read and a null or flag check. Work handed to another thread carries the trace along by calling attach() there, as
+ * DatabaseExecutor does for every task.
+ *
+ * Every request gets a Trace, sampled or not, so its request id can be read wherever the request's work runs, such
+ * as in the slow query log. Finished sampled traces go into the ring buffer, overwriting the oldest, so reading them
+ * never holds up a request.
+ */
+public final class Tracer {
+
+    /**
+     * The fraction of requests whose spans are kept, from 0 to 1. Can be overridden with -Dtrace.sampleRate.
+     */
+    static final double SAMPLE_RATE = Double.parseDouble(System.getProperty("trace.sampleRate", "0.01"));
+    /**
+     * How many finished sampled traces are kept. Can be overridden with -Dtrace.bufferSize.
+     */
+    static final int BUFFER_SIZE = Integer.getInteger("trace.bufferSize", 256);
+    /**
+     * The most spans kept per trace. Can be overridden with -Dtrace.maxSpans.
+     */
+    static final int MAX_SPANS = Integer.getInteger("trace.maxSpans", 64);
+
+    private static final ThreadLocal<Trace> current = new ThreadLocal<>();
+    private static final AtomicReferenceArray<Trace> finished = new AtomicReferenceArray<>(Math.max(BUFFER_SIZE, 1));
+    private static final AtomicLong finishedCount = new AtomicLong();
+    private static final AtomicLong nextRequestId = new AtomicLong();
+    private static final String instance = Long.toHexString(ThreadLocalRandom.current().nextLong() & 0xffffffL);
+    private static volatile double sampleRate = SAMPLE_RATE;
+
+    private Tracer() {
+    }
+
+    /**
+     * Start tracing a request on this thread, sampling it at the configured rate.
+     * @param requestId the id the client sent, or null to make one
+     * @return the request's trace, which is also the thread's current trace
+     */
+    public static Trace begin(String requestId) {
+        double rate = sampleRate;
+        boolean sampled = rate >= 1 || (rate > 0 && ThreadLocalRandom.current().nextDouble() < rate);
+        Trace trace = new Trace(requestId != null ? requestId : instance + "-" + nextRequestId.incrementAndGet(),
+                sampled ? MAX_SPANS : 0);
+        current.set(trace);
+        return trace;
+    }
+
+    /**
+     * End a request's trace, keeping it if it was sampled, and clear this thread's current trace.
+     * @param route the route the request matched
+     */
+    public static void finish(Trace trace, String method, String route, int status) {
+        //set to null rather than removed, so the thread's next request reuses the thread local's entry
+        current.set(null);
+        if (trace == null || !trace.isSampled()) {
+            return;
+        }
+        trace.finish(method, route, status);
+        long sequence = finishedCount.getAndIncrement();
+        finished.set((int) (sequence % finished.length()), trace);
+    }
+
+    /**
+     * @return this thread's current trace, or null if it has none
+     */
+    public static Trace current() {
+        return current.get();
+    }
+
+    /**
+     * @return the request id of this thread's current trace, or null if it has none
+     */
+    public static String currentRequestId() {
+        Trace trace = current.get();
+        return trace != null ? trace.getRequestId() : null;
+    }
+
+    /**
+     * Make trace this thread's current trace, for work a request handed to this thread.
+     * @param trace the trace to attach, or null to clear the current trace
+     * @return the trace that was current before, to put back with attach() when the work is done
+     */
+    public static Trace attach(Trace trace) {
+        Trace previous = current.get();
+        current.set(trace);
+        return previous;
+    }
+
+    /**
+     * Open a span on this thread's current trace.
+     * @return the span, to pass to end(), or -1 if the request is not sampled
+     */
+    public static int start(String name) {
+        Trace trace = current.get();
+        return trace != null && trace.isSampled() ? trace.start(name, System.nanoTime()) : -1;
+    }
+
+    /**
+     * Close a span opened by start().
+     */
+    public static void end(int span) {
+        end(span, null);
+    }
+
+    /**
+     * Close a span opened by start(), with extra text such as how many rows it read.
+     */
+    public static void end(int span, String detail) {
+        if (span < 0) {
+            return;
+        }
+        Trace trace = current.get();
+        if (trace != null) {
+            trace.end(span, System.nanoTime(), detail);
+        }
+    }
+
+    /**
+     * Add a span that already happened, such as the time a task waited in a queue before this thread picked it up.
+     */
+    public static void record(String name, long startNanos, long endNanos) {
+        Trace trace = current.get();
+        if (trace != null && trace.isSampled()) {
+            trace.end(trace.start(name, startNanos), endNanos, null);
+        }
+    }
+
+    /**
+     * @return the kept traces, newest first
+     */
+    public static List<Trace> getRecentTraces() {
+        long count = finishedCount.get();
+        int size = finished.length();
+        List<Trace> traces = new ArrayList<>();
+        for (long sequence = count - 1; sequence >= 0 && sequence >= count - size; sequence--) {
+            Trace trace = finished.get((int) (sequence % size));
+            if (trace != null) {
+                traces.add(trace);
+            }
+        }
+        return traces;
+    }
+
+    /**
+     * @return the fraction of requests being sampled
+     */
+    public static double getSampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * @param rate the fraction of requests to sample from now on, from 0 to 1
+     */
+    public static void setSampleRate(double rate) {
+        sampleRate = rate;
+    }
+}
@@ -0,0 +1,3 @@
+-- serves "WHERE posted_by = ?" and the per-user keyset "WHERE posted_by = ? AND message_id > ? ORDER BY message_id"
+-- without a sort, since rows for one user come out of the index already in message_id order
+create index if not exists message_posted_by_message_id_idx on message (posted_by, message_id);
@@ -0,0 +1,110 @@
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import DAO.AccountIndexSocialMediaDAO;
+import DAO.SocialMediaDAO;
+import Model.Account;
+import Util.BloomFilter;
+
+public class AccountIndexTest {
+    SocialMediaDAO socialDAO;
+    AccountIndexSocialMediaDAO indexDAO;
+
+    /**
+     * Before every test, wrap a mock DAO whose account table holds testuser1 in the account index.
+     */
+    @Before
+    public void setUp() {
+        socialDAO = Mockito.mock(SocialMediaDAO.class);
+        Mockito.when(socialDAO.getAllUsernames()).thenReturn(List.of("testuser1"));
+        Mockito.when(socialDAO.getAccountByUsername("testuser1")).thenReturn(new Account(1, "testuser1", "password"));
+        Mockito.when(socialDAO.createAccount("user", "password")).thenReturn(new Account(2, "user", "password"));
+        indexDAO = new AccountIndexSocialMediaDAO(socialDAO, 100, 60000);
+    }
+
+    /**
+     * Lookups for usernames that were never registered should not reach the wrapped DAO.
+     */
+    @Test
+    public void unknownUsernamesSkipTheDatabase() {
+        for (int i = 0; i < 1000; i++) {
+            Assert.assertNull(indexDAO.getAccountByUsername("stuffed" + i));
+        }
+        // a 1% filter may let a handful through
+        Mockito.verify(socialDAO, Mockito.atMost(30)).getAccountByUsername(Mockito.anyString());
+        Assert.assertTrue(indexDAO.getFilterRejections() >= 970);
+    }
+
+    /**
+     * Repeated logins for the same account should reach the wrapped DAO once.
+     */
+    @Test
+    public void knownAccountsAreServedFromCache() {
+        for (int i = 0; i < 5; i++) {
+            Assert.assertEquals(1, indexDAO.getAccountByUsername("testuser1").getAccount_id());
+        }
+        Mockito.verify(socialDAO, Mockito.times(1)).getAccountByUsername("testuser1");
+    }
+
+    /**
+     * A new account should be found straight after it is created, without a query.
+     */
+    @Test
+    public void createdAccountsAreIndexed() {
+        Assert.assertNotNull(indexDAO.createAccount("user", "password"));
+
+        Assert.assertEquals(2, indexDAO.getAccountByUsername("user").getAccount_id());
+        Mockito.verify(socialDAO, Mockito.never()).getAccountByUsername("user");
+    }
+
+    /**
+     * Registering a username already in the cache should be refused without an insert.
+     */
+    @Test
+    public void duplicateOfCachedAccountSkipsInsert() {
+        indexDAO.getAccountByUsername("testuser1");
+
+        Assert.assertNull(indexDAO.createAccount("testuser1", "password"));
+        Mockito.verify(socialDAO, Mockito.never()).createAccount("testuser1", "password");
+    }
+
+    /**
+     * If the usernames cannot be read at startup, every lookup should go to the wrapped DAO rather than be refused.
+     */
+    @Test
+    public void failedRebuildFallsBackToDatabase() {
+        Mockito.when(socialDAO.getAllUsernames()).thenReturn(null);
+        indexDAO = new AccountIndexSocialMediaDAO(socialDAO, 100, 60000);
+
+        Assert.assertNull(indexDAO.getUsernameFilter());
+        Assert.assertEquals(1, indexDAO.getAccountByUsername("testuser1").getAccount_id());
+    }
+
+    /**
+     * The filter should never miss a username it holds, and should stay near its false positive rate when full.
+     */
+    @Test
+    public void bloomFilterHasNoFalseNegatives() {
+        BloomFilter filter = new BloomFilter(10000, 0.01);
+        List<String> usernames = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            usernames.add("user" + i);
+            filter.put("user" + i);
+        }
+        for (String username : usernames) {
+            Assert.assertTrue(filter.mightContain(username));
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 10000; i++) {
+            if (filter.mightContain("other" + i)) {
+                falsePositives++;
+            }
+        }
+        Assert.assertTrue("false positives: " + falsePositives, falsePositives < 200);
+    }
+}
@@ -0,0 +1,142 @@
+package Benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import Controller.MessageJsonEncoder;
+import Controller.ResponseCompression;
+import Controller.WireFormat;
+import Model.Message;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * CPU cost of sending a GET /messages listing as JSON: uncompressed, gzipped at the fastest and the default deflate
+ * levels, and from the compressed copy kept between message changes. The messages are the same realistic ones as in
+ * WireFormatBenchmark, and the body goes to a response that counts and drops the bytes. The compressed size and ratio
+ * at each level are printed when the benchmark is set up.
+ *
+ * This is a manual harness, not a test: surefire only runs *Test classes. Run it with
+ *     mvn -B test-compile
+ *     java -cp target/test-classes:target/classes:$(mvn -q dependency:build-classpath -Dmdep.outputFile=/dev/stdout) \
+ *         org.openjdk.jmh.Main Benchmark.CompressionBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CompressionBenchmark {
+
+    private static final String[] WORDS = {"the", "a", "post", "today", "message", "social", "media", "hello", "world",
+            "java", "is", "great", "coffee", "weekend", "plans", "with", "friends", "and", "family", "new", "update"};
+
+    @Param({"100", "1000", "10000"})
+    public int messageCount;
+
+    private final MessageJsonEncoder encoder = new MessageJsonEncoder();
+    private final ResponseCompression fastest = new ResponseCompression(1500, 1, 0);
+    private final ResponseCompression standard = new ResponseCompression(1500, 6, Integer.MAX_VALUE);
+    private List<Message> messages;
+    private HttpServletResponse response;
+    private long sent;
+
+    @Setup
+    public void setUp() throws Exception {
+        Random random = new Random(1669947792L);
+        messages = new ArrayList<>(messageCount);
+        for (int i = 1; i <= messageCount; i++) {
+            StringBuilder text = new StringBuilder();
+            int length = 20 + random.nextInt(235);
+            while (text.length() < length) {
+                text.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+            }
+            messages.add(new Message(i, 1 + random.nextInt(20), text.substring(0, length).trim(),
+                    1669947792L + i * 37L));
+        }
+        ServletOutputStream out = new ServletOutputStream() {
+            @Override
+            public void write(int b) {
+                sent++;
+            }
+
+            @Override
+            public void write(byte[] bytes, int offset, int length) {
+                sent += length;
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener listener) {
+            }
+        };
+        response = Mockito.mock(HttpServletResponse.class, Mockito.withSettings().stubOnly());
+        Mockito.when(response.getOutputStream()).thenReturn(out);
+
+        ByteArrayOutputStream json = new ByteArrayOutputStream();
+        encoder.write(messages.iterator(), json);
+        System.out.printf("%n%d messages: %d bytes of JSON", messageCount, json.size());
+        for (ResponseCompression compression : new ResponseCompression[] {fastest, standard}) {
+            sent = 0;
+            gzip(compression, false);
+            System.out.printf(", %d gzipped (%.1f%%)", sent, 100.0 * sent / json.size());
+        }
+        System.out.println();
+        standard.cacheListing(0, WireFormat.JSON, gzip(standard, true));
+    }
+
+    @Benchmark
+    public long identity() throws IOException {
+        ResponseCompression.Body body = standard.open(response, false, false);
+        encoder.write(messages.iterator(), body);
+        body.finish();
+        return sent;
+    }
+
+    @Benchmark
+    public long gzipFastest() throws IOException {
+        gzip(fastest, false);
+        return sent;
+    }
+
+    @Benchmark
+    public long gzipDefault() throws IOException {
+        gzip(standard, false);
+        return sent;
+    }
+
+    @Benchmark
+    public boolean cachedListing() throws IOException {
+        return standard.sendCachedListing(response, 0, WireFormat.JSON);
+    }
+
+    private ResponseCompression.Body gzip(ResponseCompression compression, boolean keep) throws IOException {
+        ResponseCompression.Body body = compression.open(response, true, keep);
+        encoder.write(messages.iterator(), body);
+        body.finish();
+        return body;
+    }
+}
@@ -0,0 +1,181 @@
+package Benchmark;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import Controller.SocialMediaController;
+import DAO.SocialMediaDAOImpl;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+/**
+ * One request to each SocialMediaController endpoint, from the HTTP client through Jetty, the before- and
+ * after-handlers, the handler, the service on the database executor and H2, and back. The app listens on a free
+ * port on loopback and the database is seeded with 100 or 10k messages over 100 accounts; rows written during an
+ * iteration are deleted after it. The write rate limits are turned off in the forked JVM, since a benchmark posts
+ * far faster than any one account is allowed to.
+ *
+ * This is a manual harness, not a test: surefire only runs *Test classes. It resets the database in -Ddb.url, which
+ * the benchmarks profile points at an in-memory one.
+ * Run it on its own with
+ *     mvn -B -Pbenchmarks verify -Djmh.args=Benchmark.HandlerBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Dratelimit.createMessage.perSecond=0", "-Dratelimit.updateMessage.perSecond=0"})
+public class HandlerBenchmark {
+
+    static final int ACCOUNTS = 100;
+
+    @Param({"100", "10000"})
+    public int messages;
+
+    private Javalin app;
+    private HttpClient client;
+    private String baseUrl;
+    private int nextMessageId = 0;
+    private int nextAccountId = 0;
+    private int nextUsername = 0;
+
+    @Setup(Level.Trial)
+    public void start() throws SQLException {
+        ConnectionUtil.resetTestDatabase();
+        try (Connection connection = ConnectionUtil.getPool().borrow();
+             Statement statement = connection.createStatement()) {
+            statement.execute("INSERT INTO account (username, password) SELECT 'user' || x, 'password' "
+                    + "FROM SYSTEM_RANGE(2, " + ACCOUNTS + ")");
+            statement.execute("INSERT INTO message (posted_by, message_text, time_posted_epoch) "
+                    + "SELECT 1 + MOD(x, " + ACCOUNTS + "), 'message text ' || x, 1669947792 + x "
+                    + "FROM SYSTEM_RANGE(2, " + messages + ")");
+        }
+        app = new SocialMediaController().startAPI().start(0);
+        baseUrl = "http://localhost:" + app.port();
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    }
+
+    @TearDown(Level.Iteration)
+    public void trim() throws SQLException {
+        try (Connection connection = ConnectionUtil.getPool().borrow();
+             Statement statement = connection.createStatement()) {
+            statement.execute("DELETE FROM message WHERE message_id > " + messages);
+            statement.execute("DELETE FROM account WHERE account_id > " + ACCOUNTS);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        app.stop();
+    }
+
+    private int nextMessageId() {
+        nextMessageId = nextMessageId % messages + 1;
+        return nextMessageId;
+    }
+
+    private int nextAccountId() {
+        nextAccountId = nextAccountId % ACCOUNTS + 1;
+        return nextAccountId;
+    }
+
+    /**
+     * Send a request and check that it succeeded, so a failing endpoint cannot pass for a fast one.
+     */
+    private byte[] send(HttpRequest.Builder request) throws IOException, InterruptedException {
+        HttpResponse<byte[]> response = client.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException(response.request() + " returned " + response.statusCode());
+        }
+        return response.body();
+    }
+
+    private HttpRequest.Builder request(String path) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path));
+    }
+
+    /**
+     * A message made before each call to deleteMessage, so the delete always finds a row.
+     */
+    @State(Scope.Thread)
+    public static class DeleteTarget {
+        int messageId;
+
+        @Setup(Level.Invocation)
+        public void create() {
+            messageId = new SocialMediaDAOImpl().createMessage(1, "to be deleted", 1669947792).getMessage_id();
+        }
+    }
+
+    @Benchmark
+    public byte[] register() throws Exception {
+        return send(request("/register").POST(HttpRequest.BodyPublishers.ofString(
+                "{\"username\":\"bench" + nextUsername++ + "\",\"password\":\"password\"}")));
+    }
+
+    @Benchmark
+    public byte[] login() throws Exception {
+        return send(request("/login").POST(HttpRequest.BodyPublishers.ofString(
+                "{\"username\":\"testuser1\",\"password\":\"password\"}")));
+    }
+
+    @Benchmark
+    public byte[] createMessage() throws Exception {
+        return send(request("/messages").POST(HttpRequest.BodyPublishers.ofString(
+                "{\"posted_by\":" + nextAccountId() + ",\"message_text\":\"benchmark message\","
+                        + "\"time_posted_epoch\":1669947792}")));
+    }
+
+    @Benchmark
+    public byte[] getAllMessages() throws Exception {
+        return send(request("/messages").GET());
+    }
+
+    @Benchmark
+    public byte[] getMessagesPage() throws Exception {
+        return send(request("/messages?limit=100").GET());
+    }
+
+    @Benchmark
+    public byte[] getMessage() throws Exception {
+        return send(request("/messages/" + nextMessageId()).GET());
+    }
+
+    @Benchmark
+    public byte[] getMessagesForUser() throws Exception {
+        return send(request("/accounts/" + nextAccountId() + "/messages").GET());
+    }
+
+    @Benchmark
+    public byte[] updateMessage() throws Exception {
+        return send(request("/messages/" + nextMessageId()).method("PATCH",
+                HttpRequest.BodyPublishers.ofString("{\"message_text\":\"updated text\"}")));
+    }
+
+    @Benchmark
+    public byte[] deleteMessage(DeleteTarget target) throws Exception {
+        return send(request("/messages/" + target.messageId).DELETE());
+    }
+}
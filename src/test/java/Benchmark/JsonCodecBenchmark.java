@@ -0,0 +1,68 @@
+package Benchmark;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.JsonCodecs;
+import Model.Message;
+
+/**
+ * Compares the JSON work of one POST /messages request before and after the shared codecs: read the request body
+ * into a Message, then write the created Message back.
+ *  - perRequestMapper: a new ObjectMapper per request, as the handlers used to do, with Javalin's shared mapper for
+ *    the response
+ *  - sharedMapper: one plain ObjectMapper for both, to separate the cost of the mapper from that of the accessors
+ *  - sharedCodecs: JsonCodecs' prebuilt reader and writer with Blackbird accessors
+ *
+ * This is a manual harness, not a test: surefire only runs *Test classes. Run it with -prof gc to see the bytes
+ * allocated per request (gc.alloc.rate.norm):
+ *     mvn -B test-compile
+ *     java -cp target/test-classes:target/classes:$(mvn -q dependency:build-classpath -Dmdep.outputFile=/dev/stdout) \
+ *         org.openjdk.jmh.Main Benchmark.JsonCodecBenchmark -prof gc
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonCodecBenchmark {
+
+    private final String body = "{\"posted_by\":1,\"message_text\":\"hello message\",\"time_posted_epoch\":1669947792}";
+    private final byte[] bodyBytes = body.getBytes(StandardCharsets.UTF_8);
+    private final ObjectMapper sharedMapper = new ObjectMapper();
+    private final JsonCodecs jsonCodecs = new JsonCodecs();
+
+    @Benchmark
+    public String perRequestMapper() throws Exception {
+        Message message = new ObjectMapper().readValue(body, Message.class);
+        message.setMessage_id(1);
+        return sharedMapper.writeValueAsString(message);
+    }
+
+    @Benchmark
+    public byte[] sharedMapper() throws Exception {
+        Message message = sharedMapper.readValue(bodyBytes, Message.class);
+        message.setMessage_id(1);
+        return sharedMapper.writeValueAsBytes(message);
+    }
+
+    @Benchmark
+    public byte[] sharedCodecs() throws Exception {
+        Message message = jsonCodecs.readMessage(bodyBytes);
+        message.setMessage_id(1);
+        return jsonCodecs.writeMessage(message);
+    }
+}
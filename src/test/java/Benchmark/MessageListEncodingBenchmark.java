@@ -0,0 +1,73 @@
+package Benchmark;
+
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import Controller.JsonCodecs;
+import Controller.MessageJsonEncoder;
+import Model.Message;
+
+/**
+ * Compares encoding a GET /messages listing with Jackson databind (the shared mapper's List<Message> writer) against
+ * MessageJsonEncoder, writing to a null stream so only the encoding is timed.
+ *
+ * This is a manual harness, not a test: surefire only runs *Test classes. Run it with -prof gc to see the bytes
+ * allocated per listing (gc.alloc.rate.norm):
+ *     mvn -B test-compile
+ *     java -cp target/test-classes:target/classes:$(mvn -q dependency:build-classpath -Dmdep.outputFile=/dev/stdout) \
+ *         org.openjdk.jmh.Main Benchmark.MessageListEncodingBenchmark -prof gc
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MessageListEncodingBenchmark {
+
+    @Param({"100", "10000"})
+    public int messageCount;
+
+    private List<Message> messages;
+    private ObjectWriter listWriter;
+    private final MessageJsonEncoder encoder = new MessageJsonEncoder();
+    private final OutputStream out = OutputStream.nullOutputStream();
+
+    @Setup
+    public void setUp() {
+        messages = new ArrayList<>(messageCount);
+        for (int i = 1; i <= messageCount; i++) {
+            messages.add(new Message(i, i % 50, "message number " + i + " with a \"quote\" and caf\u00e9",
+                    1669947792L + i));
+        }
+        // leave the shared null stream open between calls, as the response stream is
+        listWriter = new JsonCodecs().getMapper().writerFor(List.class).without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    }
+
+    @Benchmark
+    public void jackson() throws Exception {
+        listWriter.writeValue(out, messages);
+    }
+
+    @Benchmark
+    public int encoder() throws Exception {
+        return encoder.write(messages.iterator(), out);
+    }
+}
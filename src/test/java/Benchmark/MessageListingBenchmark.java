@@ -0,0 +1,118 @@
+package Benchmark;
+
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.MessageJsonEncoder;
+import DAO.MessageRowIterator;
+import DAO.SocialMediaDAO;
+import DAO.SocialMediaDAOImpl;
+import Model.Message;
+import Util.ConnectionUtil;
+
+/**
+ * Compares the list-building GET /messages path (getAllMessages + ObjectMapper) against the streaming path
+ * (streamAllMessages + MessageJsonEncoder) for 10k, 100k and 1M rows. Each run reports wall time, bytes allocated by
+ * the running thread and the peak heap seen while it ran.
+ *
+ * This is a manual harness, not a test: surefire only runs *Test classes. Run it with
+ *     mvn -B test-compile exec:java -Dexec.mainClass=Benchmark.MessageListingBenchmark -Dexec.classpathScope=test
+ * or from an IDE, with a fixed heap such as -Xmx2g. It resets the development database in ./h2, or the one in
+ * -Ddb.url.
+ */
+public class MessageListingBenchmark {
+
+    private static final int[] ROW_COUNTS = {10_000, 100_000, 1_000_000};
+    private static final int RUNS = 3;
+
+    public static void main(String[] args) throws Exception {
+        SocialMediaDAO dao = new SocialMediaDAOImpl();
+        ObjectMapper mapper = new ObjectMapper();
+        MessageJsonEncoder encoder = new MessageJsonEncoder();
+
+        System.out.printf("%10s %8s %12s %16s %14s%n", "rows", "mode", "millis", "allocated MiB", "peak heap MiB");
+        for (int rows : ROW_COUNTS) {
+            seed(rows);
+            for (int run = 0; run < RUNS; run++) {
+                report(rows, "list", () -> {
+                    List<Message> messages = dao.getAllMessages();
+                    mapper.writeValue(OutputStream.nullOutputStream(), messages);
+                });
+                report(rows, "stream", () -> {
+                    try (MessageRowIterator messages = dao.streamAllMessages()) {
+                        encoder.write(messages, OutputStream.nullOutputStream());
+                    }
+                });
+            }
+        }
+        ConnectionUtil.resetTestDatabase();
+    }
+
+    /**
+     * Reset the database and insert rows messages for the seeded test user.
+     */
+    private static void seed(int rows) throws Exception {
+        ConnectionUtil.resetTestDatabase();
+        try (Connection connection = ConnectionUtil.getConnection();
+             PreparedStatement insert = connection.prepareStatement(
+                     "INSERT INTO message (posted_by, message_text, time_posted_epoch) VALUES (1, ?, ?)")) {
+            connection.setAutoCommit(false);
+            for (int i = 1; i < rows; i++) {
+                insert.setString(1, "benchmark message number " + i);
+                insert.setLong(2, 1669947792L + i);
+                insert.addBatch();
+                if (i % 10_000 == 0) {
+                    insert.executeBatch();
+                }
+            }
+            insert.executeBatch();
+            connection.commit();
+        }
+    }
+
+    private interface Body {
+        void run() throws Exception;
+    }
+
+    private static void report(int rows, String mode, Body body) throws Exception {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        System.gc();
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicLong peakHeap = new AtomicLong();
+        Thread sampler = new Thread(() -> {
+            while (running.get()) {
+                peakHeap.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max);
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        });
+        sampler.setDaemon(true);
+        sampler.start();
+
+        long threadId = Thread.currentThread().getId();
+        long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        body.run();
+        long elapsed = System.nanoTime() - start;
+        long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+        running.set(false);
+        sampler.join();
+        System.out.printf("%10d %8s %12.1f %16.1f %14.1f%n", rows, mode, elapsed / 1e6,
+                allocated / 1048576.0, peakHeap.get() / 1048576.0);
+    }
+}
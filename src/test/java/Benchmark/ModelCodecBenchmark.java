@@ -0,0 +1,67 @@
+package Benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import Controller.JsonCodecs;
+import Model.Account;
+import Model.Message;
+
+/**
+ * Encode and decode time of one Message and one Account through the JSON codecs the handlers use, with the bodies a
+ * client sends and gets back.
+ *
+ * This is a manual harness, not a test: surefire only runs *Test classes. Run it on its own with
+ *     mvn -B -Pbenchmarks verify -Djmh.args=Benchmark.ModelCodecBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ModelCodecBenchmark {
+
+    private final JsonCodecs jsonCodecs = new JsonCodecs();
+    private final Message message = new Message(1, 1, "hello message", 1669947792);
+    private final Account account = new Account(1, "testuser1", "password");
+    private byte[] messageBytes;
+    private byte[] accountBytes;
+
+    @Setup
+    public void setUp() throws IOException {
+        messageBytes = jsonCodecs.writeMessage(message);
+        accountBytes = jsonCodecs.writeAccount(account);
+    }
+
+    @Benchmark
+    public byte[] encodeMessage() throws IOException {
+        return jsonCodecs.writeMessage(message);
+    }
+
+    @Benchmark
+    public Message decodeMessage() throws IOException {
+        return jsonCodecs.readMessage(messageBytes);
+    }
+
+    @Benchmark
+    public byte[] encodeAccount() throws IOException {
+        return jsonCodecs.writeAccount(account);
+    }
+
+    @Benchmark
+    public Account decodeAccount() throws IOException {
+        return jsonCodecs.readAccount(accountBytes);
+    }
+}
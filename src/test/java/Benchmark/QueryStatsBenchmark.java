@@ -0,0 +1,96 @@
+package Benchmark;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import Util.ConnectionPool;
+import Util.QueryStats;
+
+/**
+ * Cost of the query instrumentation on a message listing: the same query, read row by row with the four getters the
+ * DAO uses, on a pooled connection with and without QueryStats wrapped around it.
+ *
+ * This is a manual harness, not a test: surefire only runs *Test classes. Run it with
+ *     mvn -B test-compile
+ *     java -cp target/test-classes:target/classes:$(mvn -q dependency:build-classpath -Dmdep.outputFile=/dev/stdout) \
+ *         org.openjdk.jmh.Main Benchmark.QueryStatsBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueryStatsBenchmark {
+
+    @Param({"1", "1000"})
+    public int rows;
+
+    private ConnectionPool pool;
+    private QueryStats queryStats;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        pool = new ConnectionPool("jdbc:h2:mem:querystatsbench;DB_CLOSE_DELAY=-1", "sa", "sa", 1, 1000, 60000);
+        queryStats = new QueryStats(-1, line -> { });
+        try (Connection connection = pool.borrow(); Statement statement = connection.createStatement()) {
+            statement.execute("DROP ALL OBJECTS");
+            statement.execute("CREATE TABLE message (message_id INT PRIMARY KEY, posted_by INT, "
+                    + "message_text VARCHAR(255), time_posted_epoch BIGINT)");
+            statement.execute("INSERT INTO message SELECT x, 1, 'message text ' || x, 1669947792 "
+                    + "FROM SYSTEM_RANGE(1, " + rows + ")");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.close();
+    }
+
+    @Benchmark
+    public long plain() throws SQLException {
+        try (Connection connection = pool.borrow()) {
+            return readAll(connection);
+        }
+    }
+
+    @Benchmark
+    public long instrumented() throws SQLException {
+        try (Connection connection = queryStats.wrap(pool.borrow())) {
+            return readAll(connection);
+        }
+    }
+
+    private static long readAll(Connection connection) throws SQLException {
+        long checksum = 0;
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT * FROM message WHERE message_id > ? ORDER BY message_id")) {
+            statement.setInt(1, 0);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    checksum += resultSet.getInt("message_id") + resultSet.getInt("posted_by")
+                            + resultSet.getString("message_text").length() + resultSet.getLong("time_posted_epoch");
+                }
+            }
+        }
+        return checksum;
+    }
+}
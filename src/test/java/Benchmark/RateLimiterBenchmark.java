@@ -0,0 +1,51 @@
+package Benchmark;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import Util.RateLimiter;
+
+/**
+ * Cost of one rate limit check, for one account posting in a tight loop (mostly refused) and for requests spread
+ * over many accounts (mostly allowed).
+ *
+ * This is a manual harness, not a test: surefire only runs *Test classes. Run it with
+ *     mvn -B test-compile
+ *     java -cp target/test-classes:target/classes:$(mvn -q dependency:build-classpath -Dmdep.outputFile=/dev/stdout) \
+ *         org.openjdk.jmh.Main Benchmark.RateLimiterBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RateLimiterBenchmark {
+
+    @Param({"1", "10000"})
+    public int accounts;
+
+    private RateLimiter rateLimiter;
+
+    @Setup
+    public void setUp() {
+        rateLimiter = new RateLimiter(5, 20, 60000);
+    }
+
+    @Benchmark
+    public long tryAcquire() {
+        return rateLimiter.tryAcquire(accounts == 1 ? 1 : ThreadLocalRandom.current().nextInt(accounts));
+    }
+}
@@ -0,0 +1,58 @@
+package Benchmark;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import Controller.RequestMetrics;
+
+/**
+ * Cost of recording one request the way the after-handler does: reading the clock, looking up the route and adding
+ * the latency and status, from one thread and from eight threads hitting the same few routes.
+ *
+ * This is a manual harness, not a test: surefire only runs *Test classes. Run it with
+ *     mvn -B test-compile
+ *     java -cp target/test-classes:target/classes:$(mvn -q dependency:build-classpath -Dmdep.outputFile=/dev/stdout) \
+ *         org.openjdk.jmh.Main Benchmark.RequestMetricsBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RequestMetricsBenchmark {
+
+    private static final String[] ROUTES = {"/messages", "/messages/{messageId}", "/accounts/{accountId}/messages"};
+
+    private RequestMetrics requestMetrics;
+
+    @Setup
+    public void setUp() {
+        requestMetrics = new RequestMetrics();
+    }
+
+    @Benchmark
+    public void record() {
+        long start = System.nanoTime();
+        String route = ROUTES[ThreadLocalRandom.current().nextInt(ROUTES.length)];
+        requestMetrics.record("GET", route, 200, System.nanoTime() - start);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void recordContended() {
+        record();
+    }
+}
@@ -0,0 +1,55 @@
+package Benchmark;
+
+import java.util.Set;
+
+import DAO.SocialMediaDAO;
+import DAO.SocialMediaDAOImpl;
+import Util.ConnectionUtil;
+import Util.SessionTokens;
+
+/**
+ * Compares the per-request cost of authenticating with a signed session token (SessionTokens.verify, an HMAC over
+ * 20 bytes and a hash lookup) against a database-backed check of the same account id (one indexed query through the
+ * connection pool). Each mode is warmed up, then timed over a fixed number of calls on one thread.
+ *
+ * This is a manual harness, not a test: surefire only runs *Test classes. Run it with
+ *     mvn -B test-compile exec:java -Dexec.mainClass=Benchmark.SessionAuthBenchmark -Dexec.classpathScope=test
+ * or from an IDE. It resets the development database in ./h2, or the one in -Ddb.url.
+ */
+public class SessionAuthBenchmark {
+
+    private static final int WARMUP_CALLS = 50_000;
+    private static final int TIMED_CALLS = 200_000;
+
+    public static void main(String[] args) {
+        ConnectionUtil.resetTestDatabase();
+        SocialMediaDAO dao = new SocialMediaDAOImpl();
+        SessionTokens sessionTokens = new SessionTokens(SessionTokens.randomSecret(), 3600);
+        String token = sessionTokens.issue(1);
+        Set<Integer> accountIds = Set.of(1);
+
+        System.out.printf("%10s %12s %12s%n", "mode", "ns/request", "requests/s");
+        for (int run = 0; run < 3; run++) {
+            report("token", () -> sessionTokens.verify(token) != null);
+            report("database", () -> dao.getExistingAccountIds(accountIds).contains(1));
+        }
+    }
+
+    private static void report(String mode, Check check) {
+        for (int i = 0; i < WARMUP_CALLS; i++) {
+            check.authenticated();
+        }
+        long started = System.nanoTime();
+        for (int i = 0; i < TIMED_CALLS; i++) {
+            if (!check.authenticated()) {
+                throw new IllegalStateException(mode + " check failed");
+            }
+        }
+        long nanos = System.nanoTime() - started;
+        System.out.printf("%10s %12d %12.0f%n", mode, nanos / TIMED_CALLS, TIMED_CALLS / (nanos / 1e9));
+    }
+
+    private interface Check {
+        boolean authenticated();
+    }
+}
@@ -0,0 +1,196 @@
+package Benchmark;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import DAO.MessageRowIterator;
+import DAO.SocialMediaDAO;
+import DAO.SocialMediaDAOImpl;
+import Model.Account;
+import Model.Message;
+import Util.ConnectionUtil;
+
+/**
+ * Every SocialMediaDAO method against the database seeded with 100, 10k and 100k messages, spread over
+ * 100 accounts so a user's listing is a hundredth of the table. Reads walk through the seeded ids in turn, and the
+ * rows written during an iteration are deleted after it so every iteration sees the same table size.
+ *
+ * This is a manual harness, not a test: surefire only runs *Test classes. It resets the database in -Ddb.url, which
+ * the benchmarks profile points at an in-memory one.
+ * Run it on its own with
+ *     mvn -B -Pbenchmarks verify -Djmh.args=Benchmark.SocialMediaDAOBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SocialMediaDAOBenchmark {
+
+    static final int ACCOUNTS = 100;
+    static final int PAGE_LIMIT = 100;
+    static final int BATCH_SIZE = 10;
+
+    @Param({"100", "10000", "100000"})
+    public int messages;
+
+    private final SocialMediaDAO dao = new SocialMediaDAOImpl();
+    private final List<Message> batch = new ArrayList<>();
+    private int nextMessageId = 0;
+    private int nextAccountId = 0;
+    private int nextUsername = 0;
+
+    @Setup(Level.Trial)
+    public void seed() throws SQLException {
+        //the reset leaves account 1 and message 1; fill in the rest so the ids run from 1 without gaps
+        ConnectionUtil.resetTestDatabase();
+        try (Connection connection = ConnectionUtil.getPool().borrow();
+             Statement statement = connection.createStatement()) {
+            statement.execute("INSERT INTO account (username, password) SELECT 'user' || x, 'password' "
+                    + "FROM SYSTEM_RANGE(2, " + ACCOUNTS + ")");
+            statement.execute("INSERT INTO message (posted_by, message_text, time_posted_epoch) "
+                    + "SELECT 1 + MOD(x, " + ACCOUNTS + "), 'message text ' || x, 1669947792 + x "
+                    + "FROM SYSTEM_RANGE(2, " + messages + ")");
+        }
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            batch.add(new Message(1 + i, "batched message " + i, 1669947792));
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void trim() throws SQLException {
+        try (Connection connection = ConnectionUtil.getPool().borrow();
+             Statement statement = connection.createStatement()) {
+            statement.execute("DELETE FROM message WHERE message_id > " + messages);
+            statement.execute("DELETE FROM account WHERE account_id > " + ACCOUNTS);
+        }
+    }
+
+    private int nextMessageId() {
+        nextMessageId = nextMessageId % messages + 1;
+        return nextMessageId;
+    }
+
+    private int nextAccountId() {
+        nextAccountId = nextAccountId % ACCOUNTS + 1;
+        return nextAccountId;
+    }
+
+    /**
+     * A message made before each call to deleteMessage, so the delete always finds a row.
+     */
+    @State(Scope.Thread)
+    public static class DeleteTarget {
+        int messageId;
+
+        @Setup(Level.Invocation)
+        public void create(SocialMediaDAOBenchmark benchmark) {
+            messageId = benchmark.dao.createMessage(1, "to be deleted", 1669947792).getMessage_id();
+        }
+    }
+
+    @Benchmark
+    public Account createAccount() {
+        return dao.createAccount("bench" + nextUsername++, "password");
+    }
+
+    @Benchmark
+    public Account getAccountByUsername() {
+        int account_id = nextAccountId();
+        return dao.getAccountByUsername(account_id == 1 ? "testuser1" : "user" + account_id);
+    }
+
+    @Benchmark
+    public List<String> getAllUsernames() {
+        return dao.getAllUsernames();
+    }
+
+    @Benchmark
+    public Message createMessage() {
+        return dao.createMessage(nextAccountId(), "benchmark message", 1669947792);
+    }
+
+    @Benchmark
+    public List<Integer> createMessages() {
+        return dao.createMessages(batch);
+    }
+
+    @Benchmark
+    public Set<Integer> getExistingAccountIds() {
+        return dao.getExistingAccountIds(Set.of(nextAccountId(), ACCOUNTS + 1));
+    }
+
+    @Benchmark
+    public Message getMessageById() {
+        return dao.getMessageById(nextMessageId());
+    }
+
+    @Benchmark
+    public List<Message> getAllMessages() {
+        return dao.getAllMessages();
+    }
+
+    @Benchmark
+    public List<Message> getAllMessagesForUser() {
+        return dao.getAllMessagesForUser(nextAccountId());
+    }
+
+    @Benchmark
+    public List<Message> getMessagesAfter() {
+        return dao.getMessagesAfter(nextMessageId() % Math.max(messages - PAGE_LIMIT, 1), PAGE_LIMIT);
+    }
+
+    @Benchmark
+    public List<Message> getMessagesForUserAfter() {
+        return dao.getMessagesForUserAfter(nextAccountId(), nextMessageId() / 2, PAGE_LIMIT);
+    }
+
+    @Benchmark
+    public void streamAllMessages(Blackhole blackhole) {
+        try (MessageRowIterator rows = dao.streamAllMessages()) {
+            while (rows.hasNext()) {
+                blackhole.consume(rows.next());
+            }
+        }
+    }
+
+    @Benchmark
+    public void streamAllMessagesForUser(Blackhole blackhole) {
+        try (MessageRowIterator rows = dao.streamAllMessagesForUser(nextAccountId())) {
+            while (rows.hasNext()) {
+                blackhole.consume(rows.next());
+            }
+        }
+    }
+
+    @Benchmark
+    public Message updateMessage() {
+        return dao.updateMessage(nextMessageId(), "updated text");
+    }
+
+    @Benchmark
+    public Message deleteMessage(DeleteTarget target) {
+        return dao.deleteMessage(target.messageId);
+    }
+}
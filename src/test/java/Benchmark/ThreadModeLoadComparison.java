@@ -0,0 +1,106 @@
+package Benchmark;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import Controller.SocialMediaController;
+import DAO.SocialMediaDAO;
+import DAO.SocialMediaDAOImpl;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+import io.javalin.util.LoomUtil;
+
+/**
+ * Sends bursts of concurrent slow requests to the API and reports how many the server ran at once and the latency
+ * percentiles the clients saw. Each request waits on a simulated slow downstream call, then reads a message through
+ * the DAO, so it holds a request thread for the whole delay but a pooled connection only briefly. On the platform
+ * thread pool, at most 250 requests run at once and the rest queue behind them; with virtual threads every request
+ * in a burst should run at once. Unlike the API's own endpoints, which hand their JDBC calls to DatabaseExecutor's
+ * platform threads, this handler reads on the request thread, so in virtual thread mode the read runs on it too.
+ *
+ * This is a manual harness, not a test: surefire only runs *Test classes. Run it once in each mode with
+ *     mvn -B test-compile exec:java -Dexec.mainClass=Benchmark.ThreadModeLoadComparison -Dexec.classpathScope=test
+ *     mvn -B -Pvirtual-threads test-compile exec:java -Dexec.mainClass=Benchmark.ThreadModeLoadComparison \
+ *         -Dexec.classpathScope=test -Dhttp.virtualThreads=true
+ * or from an IDE. Virtual threads need a JDK 21 or later. It resets the development database in ./h2, or the one in
+ * -Ddb.url.
+ */
+public class ThreadModeLoadComparison {
+
+    private static final long DOWNSTREAM_DELAY_MILLIS = 200;
+    private static final int[] CONCURRENCY = {100, 500, 2000};
+
+    public static void main(String[] args) throws Exception {
+        ConnectionUtil.resetTestDatabase();
+        SocialMediaDAO dao = new SocialMediaDAOImpl();
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+
+        Javalin app = new SocialMediaController().startAPI();
+        app.get("/slow", context -> {
+            peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(DOWNSTREAM_DELAY_MILLIS);
+                context.result(dao.getMessageById(1).getMessage_text());
+            } finally {
+                running.decrementAndGet();
+            }
+        });
+        app.start(0);
+
+        boolean virtual = Boolean.getBoolean("http.virtualThreads") && LoomUtil.INSTANCE.getLoomAvailable();
+        URI uri = URI.create("http://localhost:" + app.port() + "/slow");
+        HttpClient client = HttpClient.newBuilder().executor(Executors.newFixedThreadPool(4)).build();
+
+        System.out.printf("%9s %12s %10s %8s %9s %9s %9s %14s%n", "threads", "concurrency", "completed", "failed",
+                "p50 ms", "p99 ms", "max ms", "peak running");
+        try {
+            //one unreported burst to warm up the server and the client's connections
+            burst(client, uri, CONCURRENCY[0]);
+            for (int concurrency : CONCURRENCY) {
+                peak.set(0);
+                long[] latencies = burst(client, uri, concurrency);
+                int failed = (int) Arrays.stream(latencies).filter(latency -> latency < 0).count();
+                long[] completed = Arrays.stream(latencies).filter(latency -> latency >= 0).sorted().toArray();
+                System.out.printf("%9s %12d %10d %8d %9.0f %9.0f %9.0f %14d%n", virtual ? "virtual" : "platform",
+                        concurrency, completed.length, failed, percentile(completed, 0.50),
+                        percentile(completed, 0.99), percentile(completed, 1.0), peak.get());
+            }
+        } finally {
+            app.stop();
+        }
+        System.exit(0);
+    }
+
+    /**
+     * Send concurrency requests at once and wait for them all.
+     * @return each request's latency in nanoseconds, or -1 for a request which failed
+     */
+    private static long[] burst(HttpClient client, URI uri, int concurrency) {
+        HttpRequest request = HttpRequest.newBuilder(uri).build();
+        List<CompletableFuture<Long>> responses = new ArrayList<>(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            long started = System.nanoTime();
+            responses.add(client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                    .thenApply(response -> response.statusCode() == 200 ? System.nanoTime() - started : -1L)
+                    .exceptionally(e -> -1L));
+        }
+        return responses.stream().mapToLong(CompletableFuture::join).toArray();
+    }
+
+    private static double percentile(long[] sortedNanos, double fraction) {
+        if (sortedNanos.length == 0) {
+            return Double.NaN;
+        }
+        int index = (int) Math.ceil(fraction * sortedNanos.length) - 1;
+        return sortedNanos[Math.max(index, 0)] / 1e6;
+    }
+}
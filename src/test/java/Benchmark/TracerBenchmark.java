@@ -0,0 +1,66 @@
+package Benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import Util.Trace;
+import Util.Tracer;
+
+/**
+ * Cost of tracing: one span opened and closed inside a request that is sampled or not, and a whole request's trace
+ * with the eight spans a typical handler, service call and statement open. Run with -prof gc to see the allocation.
+ *
+ * This is a manual harness, not a test: surefire only runs *Test classes. Run it with
+ *     mvn -B test-compile
+ *     java -cp target/test-classes:target/classes:$(mvn -q dependency:build-classpath -Dmdep.outputFile=/dev/stdout) \
+ *         org.openjdk.jmh.Main Benchmark.TracerBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TracerBenchmark {
+
+    @Param({"0", "1"})
+    public double sampleRate;
+
+    @Setup
+    public void setUp() {
+        Tracer.setSampleRate(sampleRate);
+        Tracer.begin("bench");
+    }
+
+    @Benchmark
+    public void span() {
+        Trace trace = Tracer.current();
+        int span = Tracer.start("span");
+        Tracer.end(span);
+        if (trace.getSpanCount() > 32) {
+            //start over before the trace fills, so every call keeps its span
+            Tracer.begin("bench");
+        }
+    }
+
+    @Benchmark
+    public Trace request() {
+        Trace trace = Tracer.begin(null);
+        for (int i = 0; i < 8; i++) {
+            Tracer.end(Tracer.start("span"));
+        }
+        Tracer.finish(trace, "GET", "/messages", 200);
+        return trace;
+    }
+}
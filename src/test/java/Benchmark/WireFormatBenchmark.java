@@ -0,0 +1,85 @@
+package Benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import Controller.JsonCodecs;
+import Controller.WireFormat;
+import Model.Message;
+
+/**
+ * Encode and decode time of a GET /messages listing in each wire format, on lists of realistic messages: a handful
+ * of posters, increasing ids and timestamps, and texts of 20 to 254 characters made of common words. The encoded
+ * size of each list is printed when the benchmark is set up.
+ *
+ * This is a manual harness, not a test: surefire only runs *Test classes. Run it with
+ *     mvn -B test-compile
+ *     java -cp target/test-classes:target/classes:$(mvn -q dependency:build-classpath -Dmdep.outputFile=/dev/stdout) \
+ *         org.openjdk.jmh.Main Benchmark.WireFormatBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WireFormatBenchmark {
+
+    private static final String[] WORDS = {"the", "a", "post", "today", "message", "social", "media", "hello", "world",
+            "java", "is", "great", "coffee", "weekend", "plans", "with", "friends", "and", "family", "new", "update"};
+
+    @Param({"JSON", "SMILE", "CBOR"})
+    public WireFormat format;
+
+    @Param({"100", "1000"})
+    public int messageCount;
+
+    private JsonCodecs codecs;
+    private List<Message> messages;
+    private byte[] encoded;
+
+    @Setup
+    public void setUp() throws Exception {
+        Random random = new Random(1669947792L);
+        messages = new ArrayList<>(messageCount);
+        for (int i = 1; i <= messageCount; i++) {
+            StringBuilder text = new StringBuilder();
+            int length = 20 + random.nextInt(235);
+            while (text.length() < length) {
+                text.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+            }
+            messages.add(new Message(i, 1 + random.nextInt(20), text.substring(0, length).trim(),
+                    1669947792L + i * 37L));
+        }
+        codecs = new JsonCodecs(format.newFactory());
+        encoded = encode();
+        System.out.printf("%n%s, %d messages: %d bytes%n", format, messageCount, encoded.length);
+    }
+
+    @Benchmark
+    public byte[] encode() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64 * 1024);
+        codecs.writeMessages(messages.iterator(), out);
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public List<Message> decode() throws Exception {
+        return codecs.readMessages(encoded);
+    }
+}
@@ -0,0 +1,163 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import Controller.EntityTags;
+import Controller.SocialMediaController;
+import Controller.WireFormat;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class ConditionalGetTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and create a new webClient for interacting
+     * locally on the web.
+     */
+    @Before
+    public void setUp() {
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        app.start(8080);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages, then again with the returned ETag in If-None-Match
+     *
+     * Expected Response:
+     *  Status Code: 304 for the second request
+     *  Response Body: empty, with the same ETag
+     */
+    @Test
+    public void unchangedListingIsNotModified() throws IOException, InterruptedException {
+        HttpResponse<String> first = get("/messages", null);
+        String etag = first.headers().firstValue("ETag").orElse(null);
+        Assert.assertEquals(200, first.statusCode());
+        Assert.assertNotNull(etag);
+
+        HttpResponse<String> second = get("/messages", etag);
+        Assert.assertEquals(304, second.statusCode());
+        Assert.assertEquals("", second.body());
+        Assert.assertEquals(etag, second.headers().firstValue("ETag").orElse(null));
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages/1 with its ETag, after the message was updated
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the updated message, with a new ETag
+     */
+    @Test
+    public void updatedMessageIsSentAgain() throws IOException, InterruptedException {
+        String etag = get("/messages/1", null).headers().firstValue("ETag").orElse(null);
+        Assert.assertEquals(304, get("/messages/1", etag).statusCode());
+
+        HttpRequest patch = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/1"))
+                .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"message_text\":\"updated message\"}"))
+                .build();
+        Assert.assertEquals(200, webClient.send(patch, HttpResponse.BodyHandlers.ofString()).statusCode());
+
+        HttpResponse<String> response = get("/messages/1", etag);
+        Assert.assertEquals(200, response.statusCode());
+        Assert.assertTrue(response.body().contains("updated message"));
+        Assert.assertNotEquals(etag, response.headers().firstValue("ETag").orElse(null));
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/accounts/1/messages with its ETag, after another account posted
+     * a message, and then after account 1 posted one
+     *
+     * Expected Response:
+     *  Status Code: 304 while only the other account has posted, though the full listing changed, then 200
+     *  Response Body: empty, then account 1's messages including the new one
+     */
+    @Test
+    public void accountListingChangesOnlyWithItsOwnMessages() throws IOException, InterruptedException {
+        HttpRequest register = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/register"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"username\":\"testuser2\",\"password\":\"password\"}"))
+                .build();
+        Assert.assertEquals(200, webClient.send(register, HttpResponse.BodyHandlers.ofString()).statusCode());
+        String etag = get("/accounts/1/messages", null).headers().firstValue("ETag").orElse(null);
+        String listingTag = get("/messages", null).headers().firstValue("ETag").orElse(null);
+
+        postMessage(2, "from account 2");
+        Assert.assertEquals(304, get("/accounts/1/messages", etag).statusCode());
+        Assert.assertEquals(200, get("/messages", listingTag).statusCode());
+
+        postMessage(1, "from account 1");
+        HttpResponse<String> response = get("/accounts/1/messages", etag);
+        Assert.assertEquals(200, response.statusCode());
+        Assert.assertTrue(response.body().contains("from account 1"));
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages with the JSON ETag but Accept: application/cbor
+     *
+     * Expected Response:
+     *  Status Code: 200, since the CBOR listing is a different representation with its own ETag
+     */
+    @Test
+    public void tagDependsOnFormat() throws IOException, InterruptedException {
+        String etag = get("/messages", null).headers().firstValue("ETag").orElse(null);
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .header("Accept", "application/cbor")
+                .header("If-None-Match", etag)
+                .build();
+        HttpResponse<byte[]> response = webClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+
+        Assert.assertEquals(200, response.statusCode());
+        Assert.assertNotEquals(etag, response.headers().firstValue("ETag").orElse(null));
+    }
+
+    /**
+     * If-None-Match lists, weak tags and the wildcard.
+     */
+    @Test
+    public void ifNoneMatchComparison() {
+        Assert.assertTrue(EntityTags.matches("\"a\"", "\"a\""));
+        Assert.assertTrue(EntityTags.matches("\"b\", W/\"a\"", "\"a\""));
+        Assert.assertTrue(EntityTags.matches("*", "\"a\""));
+        Assert.assertFalse(EntityTags.matches(null, "\"a\""));
+        Assert.assertFalse(EntityTags.matches("\"b\"", "\"a\""));
+        Assert.assertNotEquals(new EntityTags().forMessages(0, WireFormat.JSON, false),
+                new EntityTags().forMessages(0, WireFormat.JSON, false));
+    }
+
+    private HttpResponse<String> get(String path, String ifNoneMatch) throws IOException, InterruptedException {
+        HttpRequest.Builder request = HttpRequest.newBuilder().uri(URI.create("http://localhost:8080" + path));
+        if (ifNoneMatch != null) {
+            request.header("If-None-Match", ifNoneMatch);
+        }
+        return webClient.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private void postMessage(int postedBy, String text) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"posted_by\":" + postedBy + ",\"message_text\":\"" + text
+                        + "\",\"time_posted_epoch\":1669947792}"))
+                .build();
+        Assert.assertEquals(200, webClient.send(request, HttpResponse.BodyHandlers.ofString()).statusCode());
+    }
+}
@@ -0,0 +1,128 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import Util.ConnectionPool;
+
+public class ConnectionPoolTest {
+    ConnectionPool pool;
+
+    /**
+     * Before every test, create a small pool against a private in-memory database.
+     */
+    @Before
+    public void setUp() {
+        pool = new ConnectionPool("jdbc:h2:mem:pooltest;DB_CLOSE_DELAY=-1", "sa", "sa", 2, 200, 60000);
+    }
+
+    @After
+    public void tearDown() {
+        pool.close();
+    }
+
+    /**
+     * Closing a borrowed connection should return it to the pool rather than closing it, and the gauges should follow.
+     */
+    @Test
+    public void borrowAndReturnUpdatesGauges() throws SQLException {
+        Connection connection = pool.borrow();
+        Assert.assertEquals(1, pool.getActiveCount());
+        Assert.assertEquals(0, pool.getIdleCount());
+
+        connection.close();
+        Assert.assertTrue(connection.isClosed());
+        Assert.assertEquals(0, pool.getActiveCount());
+        Assert.assertEquals(1, pool.getIdleCount());
+
+        try (Connection reused = pool.borrow()) {
+            Assert.assertFalse(reused.isClosed());
+            Assert.assertEquals(0, pool.getIdleCount());
+        }
+    }
+
+    /**
+     * Borrowing past the maximum size should fail once the acquire timeout passes.
+     */
+    @Test
+    public void borrowTimesOutWhenExhausted() throws SQLException {
+        try (Connection first = pool.borrow(); Connection second = pool.borrow()) {
+            try {
+                pool.borrow();
+                Assert.fail("expected the third borrow to time out");
+            } catch (SQLException e) {
+                Assert.assertEquals(0, pool.getWaitingCount());
+            }
+        }
+        Assert.assertEquals(2, pool.getIdleCount());
+    }
+
+    /**
+     * A transaction left open by a borrower should be rolled back before the connection is reused.
+     */
+    @Test
+    public void returnedConnectionIsResetToAutoCommit() throws SQLException {
+        Connection connection = pool.borrow();
+        connection.setAutoCommit(false);
+        connection.close();
+
+        try (Connection reused = pool.borrow()) {
+            Assert.assertTrue(reused.getAutoCommit());
+        }
+    }
+
+    /**
+     * Preparing the same SQL on the same physical connection should reuse the parsed statement.
+     */
+    @Test
+    public void statementCacheReusesStatements() throws SQLException {
+        String sql = "SELECT 1";
+        for (int i = 0; i < 3; i++) {
+            try (Connection connection = pool.borrow();
+                 PreparedStatement statement = connection.prepareStatement(sql);
+                 ResultSet resultSet = statement.executeQuery()) {
+                Assert.assertTrue(resultSet.next());
+            }
+        }
+        Assert.assertEquals(1, pool.getStatementCacheMisses());
+        Assert.assertEquals(2, pool.getStatementCacheHits());
+    }
+
+    /**
+     * A statement handed back to the cache with a queued batch, bound parameters and a changed fetch size should come
+     * back clean to the next borrower, and the earlier borrower's reference should stay closed.
+     */
+    @Test
+    public void cachedStatementIsClearedAndOldLeaseStaysClosed() throws SQLException {
+        String sql = "INSERT INTO item VALUES (?)";
+        PreparedStatement stale;
+        try (Connection connection = pool.borrow(); Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE IF EXISTS item");
+            statement.execute("CREATE TABLE item (id INT PRIMARY KEY)");
+            stale = connection.prepareStatement(sql);
+            stale.setInt(1, 1);
+            stale.addBatch();
+            stale.setFetchSize(500);
+            //closed without executing the batch, as a caller that failed part way through would
+            stale.close();
+        }
+        try (Connection connection = pool.borrow();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            Assert.assertEquals(1, pool.getStatementCacheHits());
+            Assert.assertNotSame(stale, statement);
+            Assert.assertTrue(stale.isClosed());
+            Assert.assertEquals(0, statement.executeBatch().length);
+            Assert.assertNotEquals(500, statement.getFetchSize());
+            Assert.assertThrows(SQLException.class, () -> stale.setInt(1, 2));
+
+            statement.setInt(1, 2);
+            Assert.assertEquals(1, statement.executeUpdate());
+        }
+    }
+}
@@ -0,0 +1,139 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaController;
+import Model.BatchItemResult;
+import Model.Message;
+import Model.MessageBatchResult;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class CreateMessageBatchTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and create a new webClient and ObjectMapper
+     * for interacting locally on the web.
+     */
+    @Before
+    public void setUp() {
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        app.start(8080);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    /**
+     * Sending an http request to POST localhost:8080/messages/batch with two valid messages and two invalid ones
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: ids for the valid items, errors for the blank message and the unknown poster, and only the
+     *  valid messages persisted
+     */
+    @Test
+    public void createMessageBatchMixed() throws IOException, InterruptedException {
+        HttpRequest postBatchRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/batch"))
+                .POST(HttpRequest.BodyPublishers.ofString("[" +
+                        "{\"posted_by\":1, \"message_text\": \"first\", \"time_posted_epoch\": 1669947792}," +
+                        "{\"posted_by\":1, \"message_text\": \"\", \"time_posted_epoch\": 1669947792}," +
+                        "{\"posted_by\":3, \"message_text\": \"nobody\", \"time_posted_epoch\": 1669947792}," +
+                        "{\"posted_by\":1, \"message_text\": \"second\", \"time_posted_epoch\": 1669947793}]"))
+                .header("Content-Type", "application/json")
+                .build();
+        HttpResponse response = webClient.send(postBatchRequest, HttpResponse.BodyHandlers.ofString());
+        Assert.assertEquals(200, response.statusCode());
+
+        MessageBatchResult result = objectMapper.readValue(response.body().toString(), MessageBatchResult.class);
+        Assert.assertEquals(List.of(BatchItemResult.created(0, 2), BatchItemResult.created(3, 3)), result.getCreated());
+        Assert.assertEquals(2, result.getErrors().size());
+        Assert.assertEquals(1, result.getErrors().get(0).getIndex());
+        Assert.assertEquals(2, result.getErrors().get(1).getIndex());
+
+        HttpRequest getRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/accounts/1/messages"))
+                .build();
+        HttpResponse getResponse = webClient.send(getRequest, HttpResponse.BodyHandlers.ofString());
+        List<Message> messages = objectMapper.readValue(getResponse.body().toString(), new TypeReference<List<Message>>(){});
+        Assert.assertEquals(3, messages.size());
+        Assert.assertEquals(new Message(3, 1, "second", 1669947793), messages.get(2));
+    }
+
+    /**
+     * Sending an http request to POST localhost:8080/messages/batch with 1000 messages from one account, then more
+     * batches for that account than its batch burst allows
+     *
+     * Expected Response:
+     *  Status Code: 200 with an id for every item of the big batch, since a batch takes one permit per poster, then
+     *  429 with a Retry-After header once the account is over its batch rate
+     */
+    @Test
+    public void createMessageBatchOverTheRateLimit() throws IOException, InterruptedException {
+        HttpResponse<String> response = postBatch(1000);
+        Assert.assertEquals(200, response.statusCode());
+        MessageBatchResult result = objectMapper.readValue(response.body(), MessageBatchResult.class);
+        Assert.assertEquals(1000, result.getCreated().size());
+        Assert.assertTrue(result.getErrors().isEmpty());
+
+        for (int i = 0; i < 20 && response.statusCode() == 200; i++) {
+            response = postBatch(1);
+        }
+        Assert.assertEquals(429, response.statusCode());
+        Assert.assertTrue(Integer.parseInt(response.headers().firstValue("Retry-After").orElse("0")) >= 1);
+    }
+
+    private HttpResponse<String> postBatch(int count) throws IOException, InterruptedException {
+        StringBuilder body = new StringBuilder("[");
+        for (int i = 0; i < count; i++) {
+            body.append(i == 0 ? "" : ",").append("{\"posted_by\":1, \"message_text\": \"message ").append(i)
+                    .append("\", \"time_posted_epoch\": 1669947792}");
+        }
+        HttpRequest postBatchRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/batch"))
+                .POST(HttpRequest.BodyPublishers.ofString(body.append("]").toString()))
+                .header("Content-Type", "application/json")
+                .build();
+        return webClient.send(postBatchRequest, HttpResponse.BodyHandlers.ofString());
+    }
+
+    /**
+     * Sending an http request to POST localhost:8080/messages/batch with a body that is not an array
+     *
+     * Expected Response:
+     *  Status Code: 400
+     */
+    @Test
+    public void createMessageBatchNotAnArray() throws IOException, InterruptedException {
+        HttpRequest postBatchRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/batch"))
+                .POST(HttpRequest.BodyPublishers.ofString(
+                        "{\"posted_by\":1, \"message_text\": \"first\", \"time_posted_epoch\": 1669947792}"))
+                .header("Content-Type", "application/json")
+                .build();
+        HttpResponse response = webClient.send(postBatchRequest, HttpResponse.BodyHandlers.ofString());
+        Assert.assertEquals(400, response.statusCode());
+    }
+}
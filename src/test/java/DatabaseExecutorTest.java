@@ -0,0 +1,82 @@
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import Util.DatabaseExecutor;
+
+public class DatabaseExecutorTest {
+    DatabaseExecutor databaseExecutor;
+    CountDownLatch release;
+
+    /**
+     * Before every test, create an executor with one thread and room for one waiting task.
+     */
+    @Before
+    public void setUp() {
+        databaseExecutor = new DatabaseExecutor(1, 1);
+        release = new CountDownLatch(1);
+    }
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        databaseExecutor.close();
+    }
+
+    /**
+     * A task's result, or what it threw, should come back through its future.
+     */
+    @Test
+    public void futureCompletesWithTaskOutcome() throws Exception {
+        Assert.assertEquals("done", databaseExecutor.submit(() -> "done").get());
+
+        CompletableFuture<Object> failed = databaseExecutor.submit(() -> {
+            throw new IllegalStateException("no connection");
+        });
+        try {
+            failed.get();
+            Assert.fail("expected the task's exception");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        Assert.assertEquals(2, databaseExecutor.getQueueWaitMicros().getCount());
+    }
+
+    /**
+     * Once the thread is busy and the queue is full, further tasks should be turned away at once, and the queue
+     * depth should be visible while tasks wait.
+     */
+    @Test
+    public void fullQueueRejects() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CompletableFuture<Integer> running = databaseExecutor.submit(() -> {
+            started.countDown();
+            release.await();
+            return 1;
+        });
+        started.await();
+        CompletableFuture<Integer> queued = databaseExecutor.submit(() -> 2);
+        CompletableFuture<Integer> rejected = databaseExecutor.submit(() -> 3);
+
+        Assert.assertEquals(1, databaseExecutor.getQueueDepth());
+        Assert.assertEquals(1, databaseExecutor.getActiveCount());
+        Assert.assertTrue(rejected.isCompletedExceptionally());
+        try {
+            rejected.get();
+            Assert.fail("expected a rejection");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof RejectedExecutionException);
+        }
+        Assert.assertEquals(1, databaseExecutor.getRejectedCount());
+
+        release.countDown();
+        Assert.assertEquals(Integer.valueOf(1), running.get());
+        Assert.assertEquals(Integer.valueOf(2), queued.get());
+    }
+}
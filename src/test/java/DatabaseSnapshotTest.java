@@ -0,0 +1,102 @@
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import DAO.SocialMediaDAOImpl;
+import Model.Message;
+import Util.ConnectionPool;
+import Util.ConnectionUtil;
+import Util.DatabaseSnapshot;
+
+public class DatabaseSnapshotTest {
+    ConnectionPool pool;
+
+    /**
+     * Before every test, create a small pool against a private in-memory database with two tables joined by a
+     * foreign key, each with an identity column and a row.
+     */
+    @Before
+    public void setUp() throws Exception {
+        pool = new ConnectionPool("jdbc:h2:mem:snapshottest;DB_CLOSE_DELAY=-1", "sa", "sa", 2, 200, 60000);
+        try (Connection connection = pool.borrow(); Statement statement = connection.createStatement()) {
+            statement.execute("DROP ALL OBJECTS");
+            statement.execute("CREATE TABLE parent (id INT PRIMARY KEY AUTO_INCREMENT, name VARCHAR(50))");
+            statement.execute("CREATE TABLE child (id INT PRIMARY KEY AUTO_INCREMENT, parent_id INT, "
+                    + "FOREIGN KEY (parent_id) REFERENCES parent(id))");
+            statement.execute("INSERT INTO parent (name) VALUES ('kept')");
+            statement.execute("INSERT INTO child (parent_id) VALUES (1)");
+        }
+    }
+
+    @After
+    public void tearDown() {
+        pool.close();
+    }
+
+    /**
+     * Rows added, changed and removed after the capture are put back, and new rows are numbered from where they were
+     * at the capture.
+     */
+    @Test
+    public void restorePutsBackRowsAndIdentities() throws SQLException {
+        try (Connection connection = pool.borrow(); Statement statement = connection.createStatement()) {
+            DatabaseSnapshot snapshot = DatabaseSnapshot.capture(connection);
+            statement.execute("INSERT INTO parent (name) VALUES ('added')");
+            statement.execute("INSERT INTO child (parent_id) VALUES (2)");
+            statement.execute("UPDATE parent SET name = 'changed' WHERE id = 1");
+            statement.execute("DELETE FROM child WHERE id = 1");
+
+            Assert.assertTrue(snapshot.restore(connection));
+
+            Assert.assertEquals("kept", queryString(statement, "SELECT STRING_AGG(name, ',') FROM parent"));
+            Assert.assertEquals("1", queryString(statement, "SELECT STRING_AGG(parent_id, ',') FROM child"));
+            statement.execute("INSERT INTO parent (name) VALUES ('next')");
+            Assert.assertEquals("2", queryString(statement, "SELECT id FROM parent WHERE name = 'next'"));
+        }
+    }
+
+    /**
+     * A snapshot of tables that have since changed shape leaves the database alone.
+     */
+    @Test
+    public void restoreRefusesAChangedSchema() throws SQLException {
+        try (Connection connection = pool.borrow(); Statement statement = connection.createStatement()) {
+            DatabaseSnapshot snapshot = DatabaseSnapshot.capture(connection);
+            statement.execute("ALTER TABLE parent ADD COLUMN extra INT");
+            statement.execute("INSERT INTO parent (name) VALUES ('added')");
+
+            Assert.assertFalse(snapshot.restore(connection));
+            Assert.assertEquals("2", queryString(statement, "SELECT COUNT(*) FROM parent"));
+        }
+    }
+
+    /**
+     * Resetting the test database twice, the second time from its snapshot, leaves the same test data and message ids.
+     */
+    @Test
+    public void resetTestDatabaseRestoresTheTestData() {
+        SocialMediaDAOImpl dao = new SocialMediaDAOImpl();
+        ConnectionUtil.resetTestDatabase();
+        dao.createMessage(1, "after reset", 1669947792);
+        dao.deleteMessage(1);
+        ConnectionUtil.resetTestDatabase();
+
+        Assert.assertEquals(1, dao.getAllMessages().size());
+        Assert.assertEquals("test message 1", dao.getMessageById(1).getMessage_text());
+        Message created = dao.createMessage(1, "after second reset", 1669947792);
+        Assert.assertEquals(2, created.getMessage_id());
+    }
+
+    private static String queryString(Statement statement, String sql) throws SQLException {
+        try (ResultSet resultSet = statement.executeQuery(sql)) {
+            resultSet.next();
+            return resultSet.getString(1);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaController;
+import Model.Message;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class DatabaseThreadsTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Javalin app;
+    List<Socket> slowReaders = new ArrayList<>();
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and create a new webClient and ObjectMapper
+     * for interacting locally on the web.
+     */
+    @Before
+    public void setUp() {
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        app.start(8080);
+    }
+
+    /**
+     * Hang up the slow readers, let the listings they were sent fail, and stop the app.
+     */
+    @After
+    public void tearDown() throws Exception {
+        for (Socket socket : slowReaders) {
+            socket.close();
+        }
+        if (!slowReaders.isEmpty()) {
+            awaitMetric("db_stream_executor_queue_depth", 0);
+            awaitMetric("db_stream_executor_active_threads", 0);
+        }
+        app.stop();
+    }
+
+    /**
+     * Sending as many http requests to GET localhost:8080/messages as the pool has connections, from clients that
+     * never read the response, then an http request to GET localhost:8080/messages/1
+     *
+     * Expected Response:
+     *  Status Code: 200 for the message lookup, while the listings are still stuck on their clients
+     *  Response Body: JSON representation of message 1
+     */
+    @Test
+    public void slowListingReadersDoNotStarveOtherRequests() throws Exception {
+        //10k messages of 250 characters, so a full listing is far bigger than what the sockets can buffer
+        try (Connection connection = ConnectionUtil.getPool().borrow();
+             Statement statement = connection.createStatement()) {
+            statement.execute("INSERT INTO message (posted_by, message_text, time_posted_epoch) "
+                    + "SELECT 1, REPEAT('x', 250), 1669947792 FROM SYSTEM_RANGE(1, 10000)");
+        }
+        for (int i = 0; i < ConnectionUtil.getPool().getMaxSize(); i++) {
+            Socket socket = new Socket();
+            slowReaders.add(socket);
+            socket.setReceiveBufferSize(1024);
+            socket.connect(new InetSocketAddress("localhost", 8080));
+            OutputStream out = socket.getOutputStream();
+            out.write("GET /messages HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+        }
+        //once listings are waiting for a stream thread, every stream thread is stuck writing to a slow reader
+        awaitMetric("db_stream_executor_queue_depth", -1);
+
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/1"))
+                .timeout(Duration.ofSeconds(5))
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+
+        Assert.assertEquals(200, response.statusCode());
+        Assert.assertEquals(new Message(1, 1, "test message 1", 1669947792),
+                objectMapper.readValue(response.body(), Message.class));
+    }
+
+    /**
+     * Stopping an app that has served requests ends the database threads it started.
+     */
+    @Test
+    public void stoppingTheAppEndsItsDatabaseThreads() throws Exception {
+        Set<Thread> before = databaseThreads();
+        Javalin other = new SocialMediaController().startAPI().start(0);
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:" + other.port() + "/messages/1"))
+                .build();
+        Assert.assertEquals(200, webClient.send(request, HttpResponse.BodyHandlers.ofString()).statusCode());
+        Set<Thread> started = databaseThreads();
+        started.removeAll(before);
+        Assert.assertFalse(started.isEmpty());
+
+        other.stop();
+        for (Thread thread : started) {
+            thread.join(5000);
+            Assert.assertFalse(thread.getName(), thread.isAlive());
+        }
+    }
+
+    private static Set<Thread> databaseThreads() {
+        Set<Thread> threads = new HashSet<>();
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().startsWith("database-")) {
+                threads.add(thread);
+            }
+        }
+        return threads;
+    }
+
+    /**
+     * Poll GET localhost:8080/metrics until a gauge has the expected value, or any value above 0 when expected is -1.
+     */
+    private void awaitMetric(String name, long expected) throws IOException, InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        long value = -1;
+        while (System.nanoTime() < deadline) {
+            value = readMetric(name);
+            if (expected < 0 ? value > 0 : value == expected) {
+                return;
+            }
+            Thread.sleep(20);
+        }
+        Assert.fail(name + " stayed at " + value);
+    }
+
+    private long readMetric(String name) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder().uri(URI.create("http://localhost:8080/metrics")).build();
+        for (String line : webClient.send(request, HttpResponse.BodyHandlers.ofString()).body().split("\n")) {
+            if (line.startsWith(name + " ")) {
+                return (long) Double.parseDouble(line.substring(name.length() + 1));
+            }
+        }
+        throw new AssertionError(name + " is not in the metrics");
+    }
+}
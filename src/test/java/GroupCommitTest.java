@@ -0,0 +1,85 @@
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import DAO.SocialMediaDAO;
+import Model.Message;
+import Service.SocialMediaServiceImpl;
+
+public class GroupCommitTest {
+    SocialMediaDAO socialDAO;
+    SocialMediaServiceImpl socialMediaService;
+    ExecutorService callers;
+
+    /**
+     * Before every test, create a service with group commit on over a mock DAO which hands out increasing ids.
+     */
+    @Before
+    public void setUp() {
+        socialDAO = Mockito.mock(SocialMediaDAO.class);
+        AtomicInteger nextId = new AtomicInteger(1);
+        Mockito.when(socialDAO.getExistingAccountIds(Mockito.anySet())).thenReturn(Set.of(1));
+        Mockito.when(socialDAO.createMessages(Mockito.anyList())).thenAnswer(invocation -> {
+            List<?> messages = invocation.getArgument(0);
+            List<Integer> ids = new ArrayList<>();
+            for (int i = 0; i < messages.size(); i++) {
+                ids.add(nextId.getAndIncrement());
+            }
+            return ids;
+        });
+        socialMediaService = new SocialMediaServiceImpl(socialDAO, 8, 200_000);
+        callers = Executors.newFixedThreadPool(8);
+    }
+
+    @After
+    public void tearDown() {
+        callers.shutdownNow();
+        socialMediaService.getWriteCoalescer().close();
+    }
+
+    /**
+     * Concurrent createMessage calls should share commits, and each caller should get its own generated id back.
+     */
+    @Test
+    public void concurrentCreatesShareCommits() throws Exception {
+        List<Future<Message>> results = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            String text = "message " + i;
+            results.add(callers.submit(() -> socialMediaService.createMessage(1, text, 1669947792)));
+        }
+
+        Set<Integer> ids = new HashSet<>();
+        for (Future<Message> result : results) {
+            Message message = result.get();
+            Assert.assertNotNull(message);
+            ids.add(message.getMessage_id());
+        }
+        Assert.assertEquals(8, ids.size());
+        Assert.assertEquals(8, socialMediaService.getWriteCoalescer().getBatchSizes().getSum());
+        Assert.assertTrue(socialMediaService.getWriteCoalescer().getBatchSizes().getCount() < 8);
+        Mockito.verify(socialDAO, Mockito.never()).createMessage(Mockito.anyInt(), Mockito.anyString(), Mockito.anyLong());
+    }
+
+    /**
+     * A message from a poster who does not exist should be rejected without failing the rest of its batch.
+     */
+    @Test
+    public void unknownPosterIsRejected() throws Exception {
+        Future<Message> unknown = callers.submit(() -> socialMediaService.createMessage(3, "nobody", 1669947792));
+        Future<Message> known = callers.submit(() -> socialMediaService.createMessage(1, "somebody", 1669947792));
+
+        Assert.assertNull(unknown.get());
+        Assert.assertNotNull(known.get());
+    }
+}
@@ -0,0 +1,310 @@
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import Controller.SocialMediaController;
+import Util.ConnectionUtil;
+import Util.Histogram;
+import io.javalin.Javalin;
+
+/**
+ * Replays a weighted mix of the eight endpoints against the API on a free localhost port, at a constant arrival rate,
+ * and reports the throughput and latency percentiles of each endpoint.
+ *
+ * The load is open-loop: request i is due at start + i / rate whether or not earlier requests have been answered,
+ * and its latency is measured from when it was due rather than from when it was sent. A server that stalls therefore
+ * shows up as latency on every request that should have been sent meanwhile, instead of as fewer requests sent, which
+ * is the coordinated omission a client sending one request at a time suffers from. If more than load.maxInFlight
+ * requests are waiting for an answer the next ones are counted as dropped rather than sent, and the report gives how
+ * far the sending thread fell behind its schedule, so an overloaded generator is not mistaken for a slow server.
+ *
+ * Before the run the development database is seeded with load.accounts accounts and load.messages messages. Reads and
+ * updates pick seeded rows at random, creates post as a random account, and deletes remove messages the run created,
+ * so the seeded rows stay in place. Requests due in the first load.warmupSeconds are sent but not reported.
+ *
+ * Settings, as system properties:
+ *  - load.rate: requests per second, default 200
+ *  - load.seconds: how long the reported part of the run lasts, default 30
+ *  - load.warmupSeconds: default 5
+ *  - load.accounts, load.messages: the seeded rows, default 100 and 10000
+ *  - load.mix: endpoint=weight pairs, default getMessage=40,getMessagesForUser=20,createMessage=15,
+ *    updateMessage=10,getAllMessages=5,deleteMessage=5,login=4,register=1
+ *  - load.maxInFlight: default 1000
+ *  - load.seed: seed of the random choices, default 1, so two runs send the same requests
+ * The server's own settings, such as -Dratelimit.createMessage.perSecond, apply as usual; rate limited requests are
+ * reported as 429s.
+ *
+ * This is a manual harness, not a test: surefire only runs *Test classes. Run it with
+ *     mvn -B test-compile exec:java -Dexec.mainClass=LoadGenerator -Dexec.classpathScope=test -Dload.rate=500
+ * or from an IDE. It resets the development database in ./h2, or the one in -Ddb.url.
+ */
+public class LoadGenerator {
+
+    private static final int RATE = Integer.getInteger("load.rate", 200);
+    private static final int SECONDS = Integer.getInteger("load.seconds", 30);
+    private static final int WARMUP_SECONDS = Integer.getInteger("load.warmupSeconds", 5);
+    private static final int ACCOUNTS = Integer.getInteger("load.accounts", 100);
+    private static final int MESSAGES = Integer.getInteger("load.messages", 10000);
+    private static final int MAX_IN_FLIGHT = Integer.getInteger("load.maxInFlight", 1000);
+    private static final long SEED = Long.getLong("load.seed", 1L);
+    private static final String MIX = System.getProperty("load.mix", "getMessage=40,getMessagesForUser=20,"
+            + "createMessage=15,updateMessage=10,getAllMessages=5,deleteMessage=5,login=4,register=1");
+    private static final List<String> ENDPOINTS = List.of("register", "login", "createMessage", "getAllMessages",
+            "getMessage", "getMessagesForUser", "updateMessage", "deleteMessage");
+    private static final long DRAIN_TIMEOUT_MILLIS = 30000;
+    private static final Pattern MESSAGE_ID = Pattern.compile("\"message_id\":(\\d+)");
+
+    /**
+     * The counts and latencies of one endpoint over the reported part of the run.
+     */
+    private static final class EndpointStats {
+        final String name;
+        final int weight;
+        final Histogram latencyMicros = new Histogram(5);
+        final LongAdder ok = new LongAdder();
+        final LongAdder failed = new LongAdder();
+        final LongAdder dropped = new LongAdder();
+        final Map<Integer, LongAdder> otherStatuses = new ConcurrentHashMap<>();
+
+        EndpointStats(String name, int weight) {
+            this.name = name;
+            this.weight = weight;
+        }
+    }
+
+    private final Random random = new Random(SEED);
+    private final String baseUrl;
+    private final Queue<Integer> createdMessageIds = new ConcurrentLinkedQueue<>();
+    private final Histogram allLatencyMicros = new Histogram(5);
+    private int nextUsername = 0;
+
+    private LoadGenerator(String baseUrl) {
+        this.baseUrl = baseUrl;
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<EndpointStats> mix = parseMix(MIX);
+        seed();
+        Javalin app = new SocialMediaController().startAPI().start(0);
+        ExecutorService clientExecutor = Executors.newFixedThreadPool(4);
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1)
+                .executor(clientExecutor).build();
+        try {
+            new LoadGenerator("http://localhost:" + app.port()).run(client, mix);
+        } finally {
+            app.stop();
+            clientExecutor.shutdownNow();
+        }
+        System.exit(0);
+    }
+
+    /**
+     * Reset the development database and fill it with the seeded accounts and messages, numbered from 1 without gaps.
+     * The reset leaves account 1, testuser1, and message 1.
+     */
+    private static void seed() throws Exception {
+        ConnectionUtil.resetTestDatabase();
+        try (Connection connection = ConnectionUtil.getPool().borrow();
+             Statement statement = connection.createStatement()) {
+            statement.execute("INSERT INTO account (username, password) SELECT 'user' || x, 'password' "
+                    + "FROM SYSTEM_RANGE(2, " + ACCOUNTS + ")");
+            statement.execute("INSERT INTO message (posted_by, message_text, time_posted_epoch) "
+                    + "SELECT 1 + MOD(x, " + ACCOUNTS + "), 'message text ' || x, 1669947792 + x "
+                    + "FROM SYSTEM_RANGE(2, " + MESSAGES + ")");
+        }
+    }
+
+    private static List<EndpointStats> parseMix(String mix) {
+        List<EndpointStats> endpoints = new ArrayList<>();
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.trim().split("=");
+            if (!ENDPOINTS.contains(parts[0].trim())) {
+                throw new IllegalArgumentException("Unknown endpoint in load.mix: " + parts[0] + ", expected one of "
+                        + ENDPOINTS);
+            }
+            int weight = parts.length == 2 ? Integer.parseInt(parts[1].trim()) : 1;
+            if (weight > 0) {
+                endpoints.add(new EndpointStats(parts[0].trim(), weight));
+            }
+        }
+        if (endpoints.isEmpty()) {
+            throw new IllegalArgumentException("load.mix names no endpoint: " + mix);
+        }
+        return endpoints;
+    }
+
+    private void run(HttpClient client, List<EndpointStats> mix) {
+        int totalWeight = mix.stream().mapToInt(endpoint -> endpoint.weight).sum();
+        AtomicInteger inFlight = new AtomicInteger();
+        long maxLagNanos = 0;
+        long due = 0;
+
+        System.out.printf("Sending %d requests/s to %s for %d s after a %d s warmup%n", RATE, baseUrl, SECONDS,
+                WARMUP_SECONDS);
+        long start = System.nanoTime();
+        long reportFrom = start + TimeUnit.SECONDS.toNanos(WARMUP_SECONDS);
+        long end = reportFrom + TimeUnit.SECONDS.toNanos(SECONDS);
+        for (long i = 0; ; i++) {
+            long dueAt = start + (long) (i * 1e9 / RATE);
+            if (dueAt >= end) {
+                break;
+            }
+            long now = System.nanoTime();
+            while (now < dueAt) {
+                LockSupport.parkNanos(dueAt - now);
+                now = System.nanoTime();
+            }
+            EndpointStats endpoint = pick(mix, totalWeight);
+            boolean reported = dueAt >= reportFrom;
+            if (reported) {
+                maxLagNanos = Math.max(maxLagNanos, now - dueAt);
+                due++;
+            }
+            if (inFlight.get() >= MAX_IN_FLIGHT) {
+                if (reported) {
+                    endpoint.dropped.increment();
+                }
+                continue;
+            }
+            inFlight.incrementAndGet();
+            client.sendAsync(request(endpoint.name), HttpResponse.BodyHandlers.ofString())
+                    .whenComplete((response, error) -> {
+                        long latencyNanos = System.nanoTime() - dueAt;
+                        inFlight.decrementAndGet();
+                        if (response != null && response.statusCode() == 200 && endpoint.name.equals("createMessage")) {
+                            rememberCreated(response.body());
+                        }
+                        if (!reported) {
+                            return;
+                        }
+                        endpoint.latencyMicros.record(TimeUnit.NANOSECONDS.toMicros(latencyNanos));
+                        allLatencyMicros.record(TimeUnit.NANOSECONDS.toMicros(latencyNanos));
+                        if (error != null) {
+                            endpoint.failed.increment();
+                        } else if (response.statusCode() == 200) {
+                            endpoint.ok.increment();
+                        } else {
+                            endpoint.otherStatuses.computeIfAbsent(response.statusCode(), status -> new LongAdder())
+                                    .increment();
+                        }
+                    });
+        }
+
+        //wait for the last requests, so the slowest ones are not left out of the percentiles
+        long drainUntil = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(DRAIN_TIMEOUT_MILLIS);
+        while (inFlight.get() > 0 && System.nanoTime() < drainUntil) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+        }
+        report(mix, due, maxLagNanos, inFlight.get());
+    }
+
+    private EndpointStats pick(List<EndpointStats> mix, int totalWeight) {
+        int ticket = random.nextInt(totalWeight);
+        for (EndpointStats endpoint : mix) {
+            ticket -= endpoint.weight;
+            if (ticket < 0) {
+                return endpoint;
+            }
+        }
+        return mix.get(mix.size() - 1);
+    }
+
+    private void rememberCreated(String body) {
+        Matcher matcher = MESSAGE_ID.matcher(body);
+        if (matcher.find()) {
+            createdMessageIds.add(Integer.parseInt(matcher.group(1)));
+        }
+    }
+
+    /**
+     * @return the next request for endpoint, with its ids and bodies picked at random from the seeded rows
+     */
+    private HttpRequest request(String endpoint) {
+        int account_id = 1 + random.nextInt(ACCOUNTS);
+        int message_id = 1 + random.nextInt(MESSAGES);
+        switch (endpoint) {
+            case "register":
+                return post("/register", "{\"username\":\"load" + SEED + "-" + nextUsername++
+                        + "\",\"password\":\"password\"}");
+            case "login":
+                return post("/login", "{\"username\":\"" + (account_id == 1 ? "testuser1" : "user" + account_id)
+                        + "\",\"password\":\"password\"}");
+            case "createMessage":
+                return post("/messages", "{\"posted_by\":" + account_id + ",\"message_text\":\"load message\","
+                        + "\"time_posted_epoch\":1669947792}");
+            case "getAllMessages":
+                return HttpRequest.newBuilder(uri("/messages")).build();
+            case "getMessage":
+                return HttpRequest.newBuilder(uri("/messages/" + message_id)).build();
+            case "getMessagesForUser":
+                return HttpRequest.newBuilder(uri("/accounts/" + account_id + "/messages")).build();
+            case "updateMessage":
+                return HttpRequest.newBuilder(uri("/messages/" + message_id)).method("PATCH",
+                        HttpRequest.BodyPublishers.ofString("{\"message_text\":\"updated load message\"}")).build();
+            case "deleteMessage":
+                //a message this run created, or one past the seeded rows, which deletes nothing, if none is left
+                Integer created = createdMessageIds.poll();
+                return HttpRequest.newBuilder(uri("/messages/" + (created != null ? created : Integer.MAX_VALUE)))
+                        .DELETE().build();
+            default:
+                throw new IllegalArgumentException("Unknown endpoint: " + endpoint);
+        }
+    }
+
+    private HttpRequest post(String path, String body) {
+        return HttpRequest.newBuilder(uri(path)).POST(HttpRequest.BodyPublishers.ofString(body)).build();
+    }
+
+    private URI uri(String path) {
+        return URI.create(baseUrl + path);
+    }
+
+    private void report(List<EndpointStats> mix, long due, long maxLagNanos, int unanswered) {
+        System.out.printf("%n%d requests due in %d s (%.1f/s, target %d/s), sent up to %.1f ms behind schedule%s%n",
+                due, SECONDS, (double) due / SECONDS, RATE, maxLagNanos / 1e6,
+                unanswered > 0 ? ", " + unanswered + " still unanswered" : "");
+        System.out.printf("%-20s %8s %8s %8s %8s %9s %9s %9s %9s %9s %9s  %s%n", "endpoint", "answered", "ok", "failed",
+                "dropped", "ok/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms", "other statuses");
+        long allOk = 0;
+        long allFailed = 0;
+        long allDropped = 0;
+        for (EndpointStats endpoint : mix) {
+            Map<Integer, Long> statuses = new TreeMap<>();
+            endpoint.otherStatuses.forEach((status, count) -> statuses.put(status, count.sum()));
+            printRow(endpoint.name, endpoint.latencyMicros, endpoint.ok.sum(), endpoint.failed.sum(),
+                    endpoint.dropped.sum(), statuses.isEmpty() ? "" : statuses.toString());
+            allOk += endpoint.ok.sum();
+            allFailed += endpoint.failed.sum();
+            allDropped += endpoint.dropped.sum();
+        }
+        printRow("all", allLatencyMicros, allOk, allFailed, allDropped, "");
+    }
+
+    private static void printRow(String name, Histogram latencyMicros, long ok, long failed, long dropped,
+                                 String otherStatuses) {
+        System.out.printf("%-20s %8d %8d %8d %8d %9.1f %9.2f %9.2f %9.2f %9.2f %9.2f  %s%n", name,
+                latencyMicros.getCount(), ok, failed, dropped, (double) ok / SECONDS,
+                latencyMicros.getPercentile(50) / 1e3, latencyMicros.getPercentile(90) / 1e3,
+                latencyMicros.getPercentile(99) / 1e3, latencyMicros.getPercentile(99.9) / 1e3,
+                latencyMicros.getMax() / 1e3, otherStatuses);
+    }
+}
@@ -0,0 +1,99 @@
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import DAO.CachingSocialMediaDAO;
+import DAO.SocialMediaDAO;
+import Model.Message;
+import Util.LfuCache;
+
+public class MessageCacheTest {
+    SocialMediaDAO socialDAO;
+    CachingSocialMediaDAO cachingDAO;
+
+    /**
+     * Before every test, wrap a mock DAO which knows about message 1 in the caching decorator.
+     */
+    @Before
+    public void setUp() {
+        socialDAO = Mockito.mock(SocialMediaDAO.class);
+        Mockito.when(socialDAO.getMessageById(1)).thenReturn(new Message(1, 1, "test message 1", 1669947792));
+        Mockito.when(socialDAO.updateMessage(1, "updated")).thenReturn(new Message(1, 1, "updated", 1669947792));
+        cachingDAO = new CachingSocialMediaDAO(socialDAO, 100, 60000);
+    }
+
+    /**
+     * Repeated reads of the same message should reach the wrapped DAO once.
+     */
+    @Test
+    public void repeatedReadsAreServedFromCache() {
+        for (int i = 0; i < 5; i++) {
+            Assert.assertEquals("test message 1", cachingDAO.getMessageById(1).getMessage_text());
+        }
+        Mockito.verify(socialDAO, Mockito.times(1)).getMessageById(1);
+        Assert.assertEquals(4, cachingDAO.getMessageCache().getHits());
+        Assert.assertEquals(1, cachingDAO.getMessageCache().getMisses());
+    }
+
+    /**
+     * An update should replace the cached copy with the updated row, so the next read sees the new text without going
+     * to the database.
+     */
+    @Test
+    public void updateReplacesCachedMessage() {
+        cachingDAO.getMessageById(1);
+        cachingDAO.updateMessage(1, "updated");
+
+        Assert.assertEquals("updated", cachingDAO.getMessageById(1).getMessage_text());
+        Mockito.verify(socialDAO, Mockito.times(1)).getMessageById(1);
+    }
+
+    /**
+     * A delete should drop the cached copy so the next read goes to the database.
+     */
+    @Test
+    public void deleteInvalidatesCachedMessage() {
+        cachingDAO.getMessageById(1);
+        cachingDAO.deleteMessage(1);
+        Mockito.when(socialDAO.getMessageById(1)).thenReturn(null);
+
+        Assert.assertNull(cachingDAO.getMessageById(1));
+    }
+
+    /**
+     * When full, the cache should evict the entry read least often, not the one written first.
+     */
+    @Test
+    public void evictsLeastFrequentlyUsed() {
+        LfuCache<Integer, String> cache = new LfuCache<>(2, 60000);
+        cache.put(1, "hot");
+        cache.put(2, "cold");
+        cache.get(1);
+        cache.get(1);
+        cache.put(3, "new");
+
+        Assert.assertEquals("hot", cache.get(1));
+        Assert.assertNull(cache.get(2));
+        Assert.assertEquals("new", cache.get(3));
+        Assert.assertEquals(1, cache.getEvictions());
+    }
+
+    /**
+     * An entry should stop being served once it is older than the ttl.
+     */
+    @Test
+    public void expiresAfterTtl() {
+        AtomicLong now = new AtomicLong();
+        LfuCache<Integer, String> cache = new LfuCache<>(10, 1000, now::get);
+        cache.put(1, "value");
+        now.addAndGet(999_000_000L);
+        Assert.assertEquals("value", cache.get(1));
+        now.addAndGet(2_000_000L);
+        Assert.assertNull(cache.get(1));
+        Assert.assertEquals(1, cache.getExpirations());
+        Assert.assertEquals(0, cache.size());
+    }
+}
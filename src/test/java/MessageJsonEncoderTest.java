@@ -0,0 +1,118 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.MessageJsonEncoder;
+import Model.Message;
+import Model.MessagePage;
+
+public class MessageJsonEncoderTest {
+
+    /**
+     * Random cases per test. A few hundred keep the suite quick; a long run such as -Dencoder.rounds=2000 covers more.
+     */
+    private static final int ROUNDS = Integer.getInteger("encoder.rounds", 300);
+
+    ObjectMapper objectMapper = new ObjectMapper();
+    MessageJsonEncoder encoder = new MessageJsonEncoder();
+
+    /**
+     * Random message lists, including extreme numbers, nulls, escapes, multi-byte chars, surrogate pairs, lone surrogates and lists long
+     * enough to fill the encoder's buffer several times, should encode exactly as Jackson encodes them.
+     */
+    @Test
+    public void listsMatchJacksonByteForByte() throws IOException {
+        Random random = new Random(1669947792L);
+        for (int round = 0; round < ROUNDS; round++) {
+            List<Message> messages = randomMessages(random);
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            Assert.assertEquals(messages.size(), encoder.write(messages.iterator(), out));
+
+            assertSameBytes("round " + round, objectMapper.writeValueAsBytes(messages), out.toByteArray());
+        }
+    }
+
+    /**
+     * Random pages, with and without a next cursor, should encode exactly as Jackson encodes them.
+     */
+    @Test
+    public void pagesMatchJacksonByteForByte() throws IOException {
+        Random random = new Random(1669947793L);
+        for (int round = 0; round < ROUNDS; round++) {
+            MessagePage page = new MessagePage(randomMessages(random),
+                    random.nextBoolean() ? null : randomString(random));
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            encoder.writePage(page, out);
+
+            assertSameBytes("round " + round, objectMapper.writeValueAsBytes(page), out.toByteArray());
+        }
+    }
+
+    private void assertSameBytes(String message, byte[] expected, byte[] actual) {
+        if (!Arrays.equals(expected, actual)) {
+            Assert.assertEquals(message, new String(expected, StandardCharsets.UTF_8),
+                    new String(actual, StandardCharsets.UTF_8));
+            Assert.fail(message + ": same text, different bytes");
+        }
+    }
+
+    private List<Message> randomMessages(Random random) {
+        // mostly short lists, with the occasional one large enough to span several buffers
+        int size = random.nextInt(20) == 0 ? random.nextInt(2000) : random.nextInt(8);
+        List<Message> messages = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            messages.add(new Message(randomInt(random), randomInt(random), randomString(random), randomLong(random)));
+        }
+        return messages;
+    }
+
+    private int randomInt(Random random) {
+        switch (random.nextInt(5)) {
+            case 0: return Integer.MIN_VALUE + random.nextInt(2);
+            case 1: return Integer.MAX_VALUE - random.nextInt(2);
+            case 2: return random.nextInt(21) - 10;
+            default: return random.nextInt();
+        }
+    }
+
+    private long randomLong(Random random) {
+        switch (random.nextInt(5)) {
+            case 0: return Long.MIN_VALUE + random.nextInt(2);
+            case 1: return Long.MAX_VALUE - random.nextInt(2);
+            case 2: return random.nextInt(21) - 10;
+            default: return random.nextLong();
+        }
+    }
+
+    private String randomString(Random random) {
+        if (random.nextInt(10) == 0) {
+            return null;
+        }
+        int length = random.nextInt(20) == 0 ? random.nextInt(20000) : random.nextInt(300);
+        StringBuilder text = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            switch (random.nextInt(9)) {
+                case 0: text.append((char) random.nextInt(0x20)); break;
+                case 1: text.append("\"\\/\u007f".charAt(random.nextInt(4))); break;
+                case 2: text.append((char) (0x80 + random.nextInt(0x780))); break;
+                case 3: text.append((char) (0x800 + random.nextInt(0xD800 - 0x800))); break;
+                case 4: text.append((char) (0xE000 + random.nextInt(0x2000))); break;
+                case 5: text.appendCodePoint(0x10000 + random.nextInt(0x100000)); break;
+                case 6: text.append((char) (0xD800 + random.nextInt(0x800))); break;
+                default: text.append((char) (0x20 + random.nextInt(0x5F))); break;
+            }
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,62 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import DAO.SocialMediaDAOImpl;
+import Util.ConnectionUtil;
+
+public class QueryPlanTest {
+
+    /**
+     * Before every test, reset the database so every migration has been applied.
+     */
+    @Before
+    public void setUp() {
+        ConnectionUtil.resetTestDatabase();
+    }
+
+    /**
+     * H2's EXPLAIN output names the index it reads through, or says tableScan when it reads every row. Every statement
+     * SocialMediaDAOImpl runs is explained, and only the ones it lists as full scans may read every row.
+     */
+    @Test
+    public void daoQueriesUseAnIndex() throws SQLException {
+        try (Connection connection = ConnectionUtil.getConnection()) {
+            for (String sql : SocialMediaDAOImpl.STATEMENTS) {
+                String plan = explain(connection, sql);
+                if (!SocialMediaDAOImpl.FULL_SCANS.contains(sql)) {
+                    Assert.assertFalse("table scan for " + sql + "\n" + plan, plan.contains("tableScan"));
+                }
+            }
+        }
+    }
+
+    /**
+     * The per-user keyset page should seek through the (posted_by, message_id) index added by the V2 migration.
+     */
+    @Test
+    public void userKeysetPageUsesCompositeIndex() throws SQLException {
+        try (Connection connection = ConnectionUtil.getConnection()) {
+            String plan = explain(connection, SocialMediaDAOImpl.MESSAGES_FOR_USER_PAGE_SQL);
+            Assert.assertTrue(plan, plan.toUpperCase().contains("MESSAGE_POSTED_BY_MESSAGE_ID_IDX"));
+        }
+    }
+
+    private String explain(Connection connection, String sql) throws SQLException {
+        try (PreparedStatement explain = connection.prepareStatement("EXPLAIN " + sql)) {
+            int parameters = explain.getParameterMetaData().getParameterCount();
+            for (int i = 1; i <= parameters; i++) {
+                explain.setInt(i, 1);
+            }
+            try (ResultSet resultSet = explain.executeQuery()) {
+                Assert.assertTrue(resultSet.next());
+                return resultSet.getString(1);
+            }
+        }
+    }
+}
@@ -0,0 +1,112 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import Service.SocialMediaServiceImpl;
+import Util.ConnectionPool;
+import Util.ConnectionUtil;
+import Util.QueryStats;
+
+public class QueryStatsTest {
+    ConnectionPool pool;
+    List<String> slowQueryLog;
+    QueryStats queryStats;
+
+    /**
+     * Before every test, create a small pool against a private in-memory database with a few rows, and query stats
+     * that log every statement as slow.
+     */
+    @Before
+    public void setUp() throws Exception {
+        pool = new ConnectionPool("jdbc:h2:mem:querystatstest;DB_CLOSE_DELAY=-1", "sa", "sa", 2, 200, 60000);
+        try (Connection connection = pool.borrow(); Statement statement = connection.createStatement()) {
+            statement.execute("DROP ALL OBJECTS");
+            statement.execute("CREATE TABLE item (id INT PRIMARY KEY, name VARCHAR(50))");
+            statement.execute("INSERT INTO item VALUES (1, 'a'), (2, 'b'), (3, 'c')");
+        }
+        slowQueryLog = new ArrayList<>();
+        queryStats = new QueryStats(0, slowQueryLog::add);
+    }
+
+    @After
+    public void tearDown() {
+        pool.close();
+    }
+
+    /**
+     * A query is recorded once its rows are read, with its rows counted and its bind shape, but not its values, in the
+     * slow query log.
+     */
+    @Test
+    public void queryIsTimedAndLoggedWithItsBindShape() throws Exception {
+        try (Connection connection = queryStats.wrap(pool.borrow());
+             PreparedStatement statement = connection.prepareStatement(
+                     "SELECT * FROM item WHERE id >= ? AND name <> ?")) {
+            statement.setInt(1, 2);
+            statement.setString(2, "secret");
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    Assert.assertNotNull(resultSet.getString("name"));
+                }
+            }
+        }
+
+        QueryStats.StatementStats stats =
+                queryStats.getStatements().get("SELECT * FROM item WHERE id >= ? AND name <> ?");
+        Assert.assertEquals(1, stats.getExecutions());
+        Assert.assertEquals(2, stats.getRows());
+        Assert.assertEquals(1, stats.getExecuteMicros().getCount());
+        Assert.assertEquals(1, stats.getFetchMicros().getCount());
+        Assert.assertEquals(1, slowQueryLog.size());
+        Assert.assertTrue(slowQueryLog.get(0).endsWith("params (int, string)"));
+        Assert.assertFalse(slowQueryLog.get(0).contains("secret"));
+    }
+
+    /**
+     * Statements differing only in literals share an entry, updates count affected rows, and failures are counted.
+     */
+    @Test
+    public void literalsAreNormalizedAndUpdatesCountAffectedRows() throws Exception {
+        try (Connection connection = queryStats.wrap(pool.borrow());
+             Statement statement = connection.createStatement()) {
+            statement.executeUpdate("UPDATE item SET name = 'x' WHERE id = 1");
+            statement.executeUpdate("UPDATE item SET name = 'it''s'  WHERE id = 2");
+            statement.executeUpdate("UPDATE item SET name = 'z' WHERE id IN (1, 2, 3)");
+            try {
+                statement.executeUpdate("UPDATE missing SET name = 'z'");
+                Assert.fail("expected the missing table to fail");
+            } catch (SQLException expected) {
+                //counted below
+            }
+        }
+
+        QueryStats.StatementStats byId = queryStats.getStatements().get("UPDATE item SET name = ? WHERE id = ?");
+        Assert.assertEquals(2, byId.getExecutions());
+        Assert.assertEquals(2, byId.getRows());
+        Assert.assertEquals(3, queryStats.getStatements().get("UPDATE item SET name = ? WHERE id IN (?+)").getRows());
+        Assert.assertEquals(1, queryStats.getStatements().get("UPDATE missing SET name = ?").getErrors());
+        Assert.assertEquals(0, queryStats.getStatements().get("UPDATE missing SET name = ?").getExecutions());
+    }
+
+    /**
+     * Every connection the DAO borrows goes through the shared query stats, so a service call shows up there.
+     */
+    @Test
+    public void daoQueriesAreRecorded() {
+        ConnectionUtil.resetTestDatabase();
+        new SocialMediaServiceImpl().getAllMessages();
+
+        QueryStats.StatementStats stats = ConnectionUtil.getQueryStats().getStatements().get("SELECT * FROM message");
+        Assert.assertNotNull(stats);
+        Assert.assertTrue(stats.getExecutions() >= 1);
+    }
+}
@@ -0,0 +1,154 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import Controller.SocialMediaController;
+import Util.ConnectionUtil;
+import Util.RateLimiter;
+import io.javalin.Javalin;
+
+public class RateLimiterTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    Javalin app;
+    AtomicLong nanos;
+    RateLimiter rateLimiter;
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, create a new webClient for interacting locally
+     * on the web, and create a limiter of 2 requests a second with a burst of 3 on a clock the test moves.
+     */
+    @Before
+    public void setUp() {
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        nanos = new AtomicLong(TimeUnit.HOURS.toNanos(1));
+        rateLimiter = new RateLimiter(2, 3, 1000, nanos::get);
+        app.start(8080);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    /**
+     * A key may make a burst of requests at once, is then told how long until its next permit, and gets permits
+     * back at the configured rate.
+     */
+    @Test
+    public void burstThenSustainedRate() {
+        for (int i = 0; i < 3; i++) {
+            Assert.assertEquals(0, rateLimiter.tryAcquire(1));
+        }
+        Assert.assertEquals(TimeUnit.MILLISECONDS.toNanos(500), rateLimiter.tryAcquire(1));
+
+        nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(500));
+        Assert.assertEquals(0, rateLimiter.tryAcquire(1));
+        Assert.assertTrue(rateLimiter.tryAcquire(1) > 0);
+        Assert.assertEquals(4, rateLimiter.getAllowedCount());
+        Assert.assertEquals(2, rateLimiter.getThrottledCount());
+    }
+
+    /**
+     * Each key has its own bucket, and buckets left full for longer than the idle timeout are dropped.
+     */
+    @Test
+    public void keysAreIndependentAndIdleBucketsAreDropped() {
+        for (int i = 0; i < 3; i++) {
+            rateLimiter.tryAcquire(1);
+        }
+        Assert.assertTrue(rateLimiter.tryAcquire(1) > 0);
+        Assert.assertEquals(0, rateLimiter.tryAcquire(2));
+        Assert.assertEquals(2, rateLimiter.getTrackedKeys());
+
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(5));
+        Assert.assertEquals(0, rateLimiter.tryAcquire(3));
+        Assert.assertEquals(1, rateLimiter.getTrackedKeys());
+    }
+
+    /**
+     * A sweep of many idle buckets is spread over the calls that follow, each dropping at most a slice of them.
+     */
+    @Test
+    public void sweepIsSpreadOverCalls() {
+        for (int key = 1; key <= 200; key++) {
+            rateLimiter.tryAcquire(key);
+        }
+        Assert.assertEquals(200, rateLimiter.getTrackedKeys());
+
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(5));
+        rateLimiter.tryAcquire(1000);
+        Assert.assertEquals(200 - 64 + 1, rateLimiter.getTrackedKeys());
+        for (int i = 0; i < 3; i++) {
+            rateLimiter.tryAcquire(1000);
+        }
+        Assert.assertEquals(1, rateLimiter.getTrackedKeys());
+    }
+
+    /**
+     * Sending http requests to POST localhost:8080/messages for one account faster than its rate
+     *
+     * Expected Response:
+     *  Status Code: 200 for the burst, then 429 with a Retry-After header
+     *  Response Body: empty for the refused post
+     */
+    @Test
+    public void postsOverTheLimitAreRefused() throws IOException, InterruptedException {
+        HttpResponse<String> response = null;
+        int created = 0;
+        for (int i = 0; i < 40; i++) {
+            HttpRequest request = HttpRequest.newBuilder()
+                    .uri(URI.create("http://localhost:8080/messages"))
+                    .POST(HttpRequest.BodyPublishers.ofString("{\"posted_by\":1,\"message_text\":\"message " + i
+                            + "\",\"time_posted_epoch\":1669947792}"))
+                    .build();
+            response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 200) {
+                break;
+            }
+            created++;
+        }
+
+        Assert.assertTrue(created >= 20);
+        Assert.assertEquals(429, response.statusCode());
+        Assert.assertEquals("", response.body());
+        Assert.assertTrue(Integer.parseInt(response.headers().firstValue("Retry-After").orElse("0")) >= 1);
+    }
+
+    /**
+     * Sending more http requests to POST localhost:8080/messages with blank text for one account than its burst,
+     * then a valid one
+     *
+     * Expected Response:
+     *  Status Code: 400 for every blank post, and 200 for the valid post, since refused posts give their permit back
+     */
+    @Test
+    public void invalidPostsDoNotUseUpTheLimit() throws IOException, InterruptedException {
+        for (int i = 0; i < 30; i++) {
+            HttpRequest request = HttpRequest.newBuilder()
+                    .uri(URI.create("http://localhost:8080/messages"))
+                    .POST(HttpRequest.BodyPublishers.ofString(
+                            "{\"posted_by\":1,\"message_text\":\"\",\"time_posted_epoch\":1669947792}"))
+                    .build();
+            Assert.assertEquals(400, webClient.send(request, HttpResponse.BodyHandlers.ofString()).statusCode());
+        }
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString(
+                        "{\"posted_by\":1,\"message_text\":\"valid\",\"time_posted_epoch\":1669947792}"))
+                .build();
+        Assert.assertEquals(200, webClient.send(request, HttpResponse.BodyHandlers.ofString()).statusCode());
+    }
+}
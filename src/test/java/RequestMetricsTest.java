@@ -0,0 +1,138 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import Controller.RequestMetrics;
+import Controller.SocialMediaController;
+import Util.ConnectionUtil;
+import Util.Histogram;
+import io.javalin.Javalin;
+
+public class RequestMetricsTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and create a new webClient for interacting
+     * locally on the web.
+     */
+    @Before
+    public void setUp() {
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        app.start(8080);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    /**
+     * Latencies are kept per route within about 3%, and requests for different ids of a path share its series.
+     */
+    @Test
+    public void latencyIsRecordedPerRoute() {
+        RequestMetrics requestMetrics = new RequestMetrics();
+        for (int i = 1; i <= 100000; i++) {
+            requestMetrics.record("GET", "/messages/{messageId}", 200, i * 1000L);
+        }
+        requestMetrics.record("GET", null, 404, 50000);
+
+        Histogram latency = requestMetrics.getLatencyNanos("GET", "/messages/{messageId}");
+        Assert.assertEquals(100000, latency.getCount());
+        Assert.assertEquals(99000000, latency.getPercentile(99), 99000000 * 0.035);
+        Assert.assertEquals(50000000, latency.getPercentile(50), 50000000 * 0.035);
+        Assert.assertEquals(1, requestMetrics.getLatencyNanos("GET", "unmatched").getCount());
+    }
+
+    /**
+     * Sending http requests to GET localhost:8080/messages/1, GET localhost:8080/messages/2, a path with no
+     * endpoint, and then GET localhost:8080/metrics
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: Prometheus text with both message lookups counted under one route, the unknown path under
+     *  "unmatched", and latency quantiles for the route
+     */
+    @Test
+    public void metricsAreServedInPrometheusFormat() throws IOException, InterruptedException {
+        send("/messages/1");
+        send("/messages/2");
+        send("/no/such/path");
+
+        HttpResponse<String> response = send("/metrics");
+        String body = response.body();
+
+        Assert.assertEquals(200, response.statusCode());
+        Assert.assertTrue(response.headers().firstValue("Content-Type").orElse("").startsWith("text/plain"));
+        Assert.assertTrue(body.contains("# TYPE http_requests_total counter\n"));
+        Assert.assertTrue(body.contains(
+                "http_requests_total{method=\"GET\",route=\"/messages/{messageId}\",status=\"200\"} 2\n"));
+        Assert.assertTrue(body.contains("http_requests_total{method=\"GET\",route=\"unmatched\",status=\"404\"} 1\n"));
+        Assert.assertTrue(body.contains(
+                "http_request_duration_seconds{method=\"GET\",route=\"/messages/{messageId}\",quantile=\"0.999\"} "));
+        Assert.assertTrue(body.contains(
+                "http_request_duration_seconds_count{method=\"GET\",route=\"/messages/{messageId}\"} 2\n"));
+        Assert.assertTrue(body.contains("db_executor_queue_depth 0\n"));
+        Assert.assertTrue(body.contains("# TYPE db_query_duration_seconds summary\n"));
+    }
+
+    /**
+     * Sending two http requests to GET localhost:8080/messages/1, then GET localhost:8080/metrics
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: one message cache miss and one hit, and the statement cache and account cache counters
+     */
+    @Test
+    public void cacheCountersAreServed() throws IOException, InterruptedException {
+        send("/messages/1");
+        send("/messages/1");
+
+        String body = send("/metrics").body();
+        Assert.assertTrue(body.contains("message_cache_misses_total 1\n"));
+        Assert.assertTrue(body.contains("message_cache_hits_total 1\n"));
+        Assert.assertTrue(body.contains("# TYPE db_statement_cache_hits_total counter\n"));
+        Assert.assertTrue(body.contains("# TYPE account_cache_misses_total counter\n"));
+        Assert.assertFalse(body.contains("message_group_commit_batch_size"));
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages with a token that does not verify, then GET
+     * localhost:8080/metrics
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the refused request counted with status 401 under "unmatched", since after-handlers run even
+     *  when a before-handler throws, but no endpoint has been picked by then
+     */
+    @Test
+    public void refusedRequestsAreCounted() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .header("Authorization", "Bearer not-a-token")
+                .build();
+        Assert.assertEquals(401, webClient.send(request, HttpResponse.BodyHandlers.ofString()).statusCode());
+
+        String body = send("/metrics").body();
+        Assert.assertTrue(body.contains("http_requests_total{method=\"GET\",route=\"unmatched\",status=\"401\"} 1\n"));
+    }
+
+    private HttpResponse<String> send(String path) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080" + path))
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
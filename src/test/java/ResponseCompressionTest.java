@@ -0,0 +1,184 @@
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.ResponseCompression;
+import Controller.SocialMediaController;
+import Model.Message;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class ResponseCompressionTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and create a new webClient and ObjectMapper
+     * for interacting locally on the web.
+     */
+    @Before
+    public void setUp() {
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        app.start(8080);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages with Accept-Encoding: gzip, when the listing is smaller
+     * than the compression threshold
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the uncompressed JSON list of messages, with no Content-Encoding
+     */
+    @Test
+    public void smallListingIsNotCompressed() throws IOException, InterruptedException {
+        HttpResponse<byte[]> response = getMessages("gzip");
+
+        Assert.assertEquals(200, response.statusCode());
+        Assert.assertTrue(response.headers().firstValue("Content-Encoding").isEmpty());
+        Assert.assertEquals("Accept, Accept-Encoding", response.headers().firstValue("Vary").orElse(null));
+        Assert.assertEquals(List.of(new Message(1, 1, "test message 1", 1669947792)), readMessages(response.body()));
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages with Accept-Encoding: gzip, when the listing is bigger
+     * than the compression threshold, and then again with no Accept-Encoding
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the gzipped JSON list of messages, which decompresses to the uncompressed listing
+     */
+    @Test
+    public void largeListingIsCompressed() throws IOException, InterruptedException {
+        postMessages(40);
+
+        HttpResponse<byte[]> gzipped = getMessages("gzip");
+        HttpResponse<byte[]> plain = getMessages(null);
+
+        Assert.assertEquals(200, gzipped.statusCode());
+        Assert.assertEquals("gzip", gzipped.headers().firstValue("Content-Encoding").orElse(null));
+        Assert.assertTrue(plain.headers().firstValue("Content-Encoding").isEmpty());
+        Assert.assertTrue(gzipped.body().length < plain.body().length);
+        Assert.assertArrayEquals(plain.body(), gunzip(gzipped.body()));
+        Assert.assertEquals(41, readMessages(plain.body()).size());
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages with Accept-Encoding: gzip twice, then updating a
+     * message and listing again
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the same compressed listing twice, then a listing with the updated text
+     */
+    @Test
+    public void keptListingIsReplacedAfterUpdate() throws IOException, InterruptedException {
+        postMessages(40);
+
+        HttpResponse<byte[]> first = getMessages("gzip");
+        HttpResponse<byte[]> second = getMessages("gzip");
+        Assert.assertArrayEquals(first.body(), second.body());
+
+        HttpRequest patch = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/1"))
+                .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"message_text\":\"updated message\"}"))
+                .build();
+        Assert.assertEquals(200, webClient.send(patch, HttpResponse.BodyHandlers.ofString()).statusCode());
+
+        List<Message> messages = readMessages(gunzip(getMessages("gzip").body()));
+        Assert.assertEquals("updated message", messages.get(0).getMessage_text());
+        Assert.assertEquals(41, messages.size());
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages?limit=40 with Accept-Encoding: gzip;q=0, *
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the uncompressed page, since gzip was refused
+     */
+    @Test
+    public void refusedGzipIsNotUsed() throws IOException, InterruptedException {
+        postMessages(40);
+
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages?limit=40"))
+                .header("Accept-Encoding", "gzip;q=0, *")
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+
+        Assert.assertEquals(200, response.statusCode());
+        Assert.assertTrue(response.headers().firstValue("Content-Encoding").isEmpty());
+        Assert.assertTrue(response.body().startsWith("{\"messages\":[{\"message_id\":1,"));
+    }
+
+    /**
+     * Accept-Encoding headers that allow gzip, by name or by wildcard, and ones that do not.
+     */
+    @Test
+    public void acceptEncodingNegotiation() {
+        Assert.assertTrue(ResponseCompression.acceptsGzip("gzip"));
+        Assert.assertTrue(ResponseCompression.acceptsGzip("deflate, GZIP;q=0.5, br"));
+        Assert.assertTrue(ResponseCompression.acceptsGzip("*"));
+        Assert.assertFalse(ResponseCompression.acceptsGzip(null));
+        Assert.assertFalse(ResponseCompression.acceptsGzip("identity"));
+        Assert.assertFalse(ResponseCompression.acceptsGzip("br, deflate"));
+        Assert.assertFalse(ResponseCompression.acceptsGzip("gzip;q=0"));
+        Assert.assertFalse(ResponseCompression.acceptsGzip("*, gzip;q=0"));
+    }
+
+    private HttpResponse<byte[]> getMessages(String acceptEncoding) throws IOException, InterruptedException {
+        HttpRequest.Builder request = HttpRequest.newBuilder().uri(URI.create("http://localhost:8080/messages"));
+        if (acceptEncoding != null) {
+            request.header("Accept-Encoding", acceptEncoding);
+        }
+        return webClient.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    private void postMessages(int count) throws IOException, InterruptedException {
+        List<Message> messages = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            messages.add(new Message(1, "compressible message number " + i, 1669947792L + i));
+        }
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/batch"))
+                .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(messages)))
+                .build();
+        Assert.assertEquals(200, webClient.send(request, HttpResponse.BodyHandlers.ofString()).statusCode());
+    }
+
+    private List<Message> readMessages(byte[] body) throws IOException {
+        return objectMapper.readValue(body, new TypeReference<List<Message>>(){});
+    }
+
+    private static byte[] gunzip(byte[] body) throws IOException {
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+            return in.readAllBytes();
+        }
+    }
+}
@@ -0,0 +1,121 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaController;
+import Model.Message;
+import Model.MessagePage;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class RetrieveMessagesPageTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and create a new webClient and ObjectMapper
+     * for interacting locally on the web. Two more messages are posted so there are three in total.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws IOException, InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        app.start(8080);
+
+        for (int i = 2; i <= 3; i++) {
+            HttpRequest postMessageRequest = HttpRequest.newBuilder()
+                    .uri(URI.create("http://localhost:8080/messages"))
+                    .POST(HttpRequest.BodyPublishers.ofString("{"+
+                            "\"posted_by\":1, " +
+                            "\"message_text\": \"test message " + i + "\", " +
+                            "\"time_posted_epoch\": 1669947792}"))
+                    .header("Content-Type", "application/json")
+                    .build();
+            webClient.send(postMessageRequest, HttpResponse.BodyHandlers.ofString());
+        }
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    /**
+     * Following next_cursor from GET localhost:8080/messages?limit=2 should visit every message exactly once.
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: a page of two messages with a next_cursor, then a page of one message without one
+     */
+    @Test
+    public void getMessagesPagedFollowsCursor() throws IOException, InterruptedException {
+        MessagePage firstPage = getPage("http://localhost:8080/messages?limit=2");
+        List<Message> expectedFirst = new ArrayList<>();
+        expectedFirst.add(new Message(1, 1, "test message 1", 1669947792));
+        expectedFirst.add(new Message(2, 1, "test message 2", 1669947792));
+        Assert.assertEquals(expectedFirst, firstPage.getMessages());
+        Assert.assertNotNull(firstPage.getNext_cursor());
+
+        MessagePage secondPage = getPage("http://localhost:8080/messages?limit=2&cursor=" + firstPage.getNext_cursor());
+        List<Message> expectedSecond = new ArrayList<>();
+        expectedSecond.add(new Message(3, 1, "test message 3", 1669947792));
+        Assert.assertEquals(expectedSecond, secondPage.getMessages());
+        Assert.assertNull(secondPage.getNext_cursor());
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/accounts/1/messages?limit=3 should return all of the user's
+     * messages on a single page.
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: a page of three messages with no next_cursor
+     */
+    @Test
+    public void getMessagesForUserPaged() throws IOException, InterruptedException {
+        MessagePage page = getPage("http://localhost:8080/accounts/1/messages?limit=3");
+        Assert.assertEquals(3, page.getMessages().size());
+        Assert.assertNull(page.getNext_cursor());
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages with a cursor that was never issued
+     *
+     * Expected Response:
+     *  Status Code: 400
+     */
+    @Test
+    public void getMessagesPagedMalformedCursor() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages?cursor=not-a-cursor"))
+                .build();
+        HttpResponse response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+        Assert.assertEquals(400, response.statusCode());
+    }
+
+    private MessagePage getPage(String uri) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(uri))
+                .build();
+        HttpResponse response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+        Assert.assertEquals(200, response.statusCode());
+        return objectMapper.readValue(response.body().toString(), MessagePage.class);
+    }
+}
@@ -0,0 +1,151 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import Controller.SocialMediaController;
+import Util.ConnectionUtil;
+import Util.SessionTokens;
+import io.javalin.Javalin;
+
+public class SessionTokenTest {
+
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and create a new webClient for interacting
+     * locally on the web.
+     */
+    @Before
+    public void setUp() {
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        app.start(8080);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages with the token issued by a successful login
+     *
+     * Expected Response:
+     *  Status Code: 200
+     */
+    @Test
+    public void loginTokenIsAccepted() throws IOException, InterruptedException {
+        String token = login();
+        Assert.assertNotNull(token);
+
+        Assert.assertEquals(200, getMessages(token).statusCode());
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages with a token whose payload was changed after signing
+     *
+     * Expected Response:
+     *  Status Code: 401
+     */
+    @Test
+    public void tamperedTokenIsRejected() throws IOException, InterruptedException {
+        String token = login();
+        String tampered = (token.charAt(0) == 'A' ? "B" : "A") + token.substring(1);
+
+        Assert.assertEquals(401, getMessages(tampered).statusCode());
+    }
+
+    /**
+     * Sending an http request to POST localhost:8080/logout with a token, then using that token again
+     *
+     * Expected Response:
+     *  Status Code: 200 for the logout, then 401
+     */
+    @Test
+    public void logoutRevokesToken() throws IOException, InterruptedException {
+        String token = login();
+        HttpRequest logoutRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/logout"))
+                .POST(HttpRequest.BodyPublishers.noBody())
+                .header("Authorization", "Bearer " + token)
+                .build();
+
+        Assert.assertEquals(200, webClient.send(logoutRequest, HttpResponse.BodyHandlers.ofString()).statusCode());
+        Assert.assertEquals(401, getMessages(token).statusCode());
+        Assert.assertEquals(401, webClient.send(logoutRequest, HttpResponse.BodyHandlers.ofString()).statusCode());
+    }
+
+    /**
+     * A token should stop being accepted once its ttl has passed, and revocations should be forgotten then too.
+     */
+    @Test
+    public void tokensExpire() {
+        AtomicLong now = new AtomicLong(1669947792000L);
+        SessionTokens sessionTokens = new SessionTokens(SessionTokens.randomSecret(), 60, now::get);
+        String token = sessionTokens.issue(1);
+        String revokedToken = sessionTokens.issue(1);
+        Assert.assertTrue(sessionTokens.revoke(revokedToken));
+
+        now.addAndGet(59_000);
+        Assert.assertEquals(Integer.valueOf(1), sessionTokens.verify(token));
+        now.addAndGet(1_000);
+        Assert.assertNull(sessionTokens.verify(token));
+
+        Assert.assertFalse(sessionTokens.revoke(token));
+        Assert.assertTrue(sessionTokens.revoke(sessionTokens.issue(2)));
+        Assert.assertEquals(1, sessionTokens.getRevokedCount());
+    }
+
+    /**
+     * Forgetting many expired revocations is spread over the revokes that follow, each checking at most a slice.
+     */
+    @Test
+    public void revocationSweepIsSpreadOverRevokes() {
+        AtomicLong now = new AtomicLong(1669947792000L);
+        SessionTokens sessionTokens = new SessionTokens(SessionTokens.randomSecret(), 60, now::get);
+        for (int i = 0; i < 200; i++) {
+            Assert.assertTrue(sessionTokens.revoke(sessionTokens.issue(1)));
+        }
+
+        now.addAndGet(60_000);
+        sessionTokens.revoke(sessionTokens.issue(2));
+        Assert.assertEquals(200 - 64 + 1, sessionTokens.getRevokedCount());
+        for (int i = 0; i < 3; i++) {
+            sessionTokens.revoke(sessionTokens.issue(2));
+        }
+        Assert.assertEquals(4, sessionTokens.getRevokedCount());
+    }
+
+    private String login() throws IOException, InterruptedException {
+        HttpRequest postRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/login"))
+                .POST(HttpRequest.BodyPublishers.ofString("{" +
+                        "\"username\": \"testuser1\", " +
+                        "\"password\": \"password\" }"))
+                .header("Content-Type", "application/json")
+                .build();
+        HttpResponse<String> response = webClient.send(postRequest, HttpResponse.BodyHandlers.ofString());
+        Assert.assertEquals(200, response.statusCode());
+        return response.headers().firstValue(SocialMediaController.SESSION_TOKEN_HEADER).orElse(null);
+    }
+
+    private HttpResponse<String> getMessages(String token) throws IOException, InterruptedException {
+        HttpRequest getRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .header("Authorization", "Bearer " + token)
+                .build();
+        return webClient.send(getRequest, HttpResponse.BodyHandlers.ofString());
+    }
+}
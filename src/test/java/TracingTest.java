@@ -0,0 +1,140 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaController;
+import Util.ConnectionUtil;
+import Util.DatabaseExecutor;
+import Util.Trace;
+import Util.Tracer;
+import io.javalin.Javalin;
+
+public class TracingTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Javalin app;
+    double sampleRate;
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, create a new webClient for interacting locally
+     * on the web, and sample every request.
+     */
+    @Before
+    public void setUp() {
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        sampleRate = Tracer.getSampleRate();
+        Tracer.setSampleRate(1);
+        app.start(8080);
+    }
+
+    @After
+    public void tearDown() {
+        Tracer.setSampleRate(sampleRate);
+        app.stop();
+    }
+
+    /**
+     * Spans nest inside the span open when they start, and follow the request onto a database thread along with a
+     * span for the time the task waited there.
+     */
+    @Test
+    public void spansNestAndFollowTheRequestAcrossThreads() throws Exception {
+        DatabaseExecutor databaseExecutor = new DatabaseExecutor(1, 1);
+        try {
+            Trace trace = Tracer.begin("unit-1");
+            int outer = Tracer.start("outer");
+            String requestId = databaseExecutor.submit(() -> {
+                int inner = Tracer.start("inner");
+                Tracer.end(inner, "detail");
+                return Tracer.currentRequestId();
+            }).get();
+            Tracer.end(outer);
+            Tracer.finish(trace, "GET", "/test", 200);
+
+            Assert.assertEquals("unit-1", requestId);
+            Assert.assertNull(Tracer.current());
+            Assert.assertEquals(3, trace.getSpanCount());
+            Assert.assertEquals("outer", trace.getSpanName(0));
+            Assert.assertEquals("queue", trace.getSpanName(1));
+            Assert.assertEquals("inner", trace.getSpanName(2));
+            Assert.assertEquals(0, trace.getSpanParent(2));
+            Assert.assertEquals("detail", trace.getSpanDetail(2));
+            Assert.assertTrue(trace.getSpanDurationMicros(0) >= trace.getSpanDurationMicros(2));
+            Assert.assertSame(trace, Tracer.getRecentTraces().get(0));
+        } finally {
+            databaseExecutor.close();
+        }
+    }
+
+    /**
+     * An unsampled request still carries its request id, but keeps no spans and is not kept.
+     */
+    @Test
+    public void unsampledRequestsOnlyCarryTheirId() {
+        Tracer.setSampleRate(0);
+        Trace trace = Tracer.begin(null);
+        Assert.assertEquals(-1, Tracer.start("ignored"));
+        Assert.assertEquals(trace.getRequestId(), Tracer.currentRequestId());
+        Tracer.finish(trace, "GET", "/test", 200);
+
+        Assert.assertFalse(trace.isSampled());
+        Assert.assertTrue(Tracer.getRecentTraces().stream().noneMatch(kept -> kept == trace));
+    }
+
+    /**
+     * Sending an http request to POST localhost:8080/messages with an X-Request-Id header, then GET
+     * localhost:8080/admin/traces?requestId= that id
+     *
+     * Expected Response:
+     *  Status Code: 200, with the request id echoed back
+     *  Response Body: the trace of the post, with spans for parsing the body, the service call, validation, the
+     *  insert statement and writing the response
+     */
+    @Test
+    public void sampledRequestTraceIsServed() throws IOException, InterruptedException {
+        HttpRequest postRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .header("X-Request-Id", "trace-test-1")
+                .POST(HttpRequest.BodyPublishers.ofString("{\"posted_by\":1,\"message_text\":\"traced\","
+                        + "\"time_posted_epoch\":1669947792}"))
+                .build();
+        HttpResponse<String> post = webClient.send(postRequest, HttpResponse.BodyHandlers.ofString());
+        Assert.assertEquals(200, post.statusCode());
+        Assert.assertEquals("trace-test-1", post.headers().firstValue("X-Request-Id").orElse(null));
+
+        HttpRequest tracesRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/admin/traces?requestId=trace-test-1"))
+                .build();
+        HttpResponse<String> response = webClient.send(tracesRequest, HttpResponse.BodyHandlers.ofString());
+        JsonNode traces = objectMapper.readTree(response.body());
+
+        Assert.assertEquals(200, response.statusCode());
+        Assert.assertEquals(1, traces.size());
+        JsonNode trace = traces.get(0);
+        Assert.assertEquals("POST", trace.get("method").asText());
+        Assert.assertEquals("/messages", trace.get("route").asText());
+        Assert.assertEquals(200, trace.get("status").asInt());
+        List<String> names = trace.get("spans").findValuesAsText("name");
+        Assert.assertTrue(names.toString(), names.contains("parse"));
+        Assert.assertTrue(names.toString(), names.contains("service.createMessage"));
+        Assert.assertTrue(names.toString(), names.contains("validate"));
+        Assert.assertTrue(names.toString(), names.stream().anyMatch(name -> name.startsWith("jdbc INSERT")));
+        Assert.assertTrue(names.toString(), names.contains("respond"));
+    }
+}
@@ -0,0 +1,131 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+import Controller.SocialMediaController;
+import Controller.WireFormat;
+import Model.Message;
+import Model.MessagePage;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class WireFormatTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    ObjectMapper smileMapper;
+    ObjectMapper cborMapper;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and create a new webClient and Smile and CBOR
+     * mappers for interacting locally on the web.
+     */
+    @Before
+    public void setUp() {
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        smileMapper = new ObjectMapper(new SmileFactory());
+        cborMapper = new ObjectMapper(new CBORFactory());
+        app.start(8080);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages with Accept: application/x-jackson-smile
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: Smile encoding of the list of messages
+     */
+    @Test
+    public void getAllMessagesAsSmile() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .header("Accept", "application/x-jackson-smile")
+                .build();
+        HttpResponse<byte[]> response = webClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+
+        Assert.assertEquals(200, response.statusCode());
+        Assert.assertEquals("application/x-jackson-smile", response.headers().firstValue("Content-Type").orElse(null));
+        List<Message> messages = smileMapper.readValue(response.body(), new TypeReference<List<Message>>(){});
+        Assert.assertEquals(List.of(new Message(1, 1, "test message 1", 1669947792)), messages);
+    }
+
+    /**
+     * Sending an http request to POST localhost:8080/messages with a CBOR body and Accept: application/cbor
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: CBOR encoding of the created message
+     */
+    @Test
+    public void createMessageWithCbor() throws IOException, InterruptedException {
+        byte[] body = cborMapper.writeValueAsBytes(new Message(1, "hello cbor", 1669947792));
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                .header("Content-Type", "application/cbor")
+                .header("Accept", "application/cbor")
+                .build();
+        HttpResponse<byte[]> response = webClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+
+        Assert.assertEquals(200, response.statusCode());
+        Assert.assertEquals(new Message(2, 1, "hello cbor", 1669947792),
+                cborMapper.readValue(response.body(), Message.class));
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/accounts/1/messages?limit=1 preferring CBOR over JSON
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: CBOR encoding of the page
+     */
+    @Test
+    public void getPageAsCbor() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/accounts/1/messages?limit=1"))
+                .header("Accept", "application/json;q=0.5, application/cbor")
+                .build();
+        HttpResponse<byte[]> response = webClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+
+        Assert.assertEquals(200, response.statusCode());
+        MessagePage page = cborMapper.readValue(response.body(), MessagePage.class);
+        Assert.assertEquals(List.of(new Message(1, 1, "test message 1", 1669947792)), page.getMessages());
+        Assert.assertNull(page.getNext_cursor());
+    }
+
+    /**
+     * The Accept header should pick the supported type with the highest q value, and fall back to JSON otherwise.
+     */
+    @Test
+    public void negotiatesFromAcceptHeader() {
+        Assert.assertEquals(WireFormat.JSON, WireFormat.fromAccept(null));
+        Assert.assertEquals(WireFormat.JSON, WireFormat.fromAccept("*/*"));
+        Assert.assertEquals(WireFormat.JSON, WireFormat.fromAccept("text/html"));
+        Assert.assertEquals(WireFormat.SMILE, WireFormat.fromAccept("application/x-jackson-smile, */*;q=0.1"));
+        Assert.assertEquals(WireFormat.CBOR, WireFormat.fromAccept("application/json;q=0.9, application/cbor"));
+        Assert.assertEquals(WireFormat.JSON, WireFormat.fromAccept("application/cbor;q=0, application/json"));
+        Assert.assertEquals(WireFormat.SMILE, WireFormat.fromContentType("application/x-jackson-smile"));
+        Assert.assertEquals(WireFormat.JSON, WireFormat.fromContentType("application/json; charset=utf-8"));
+    }
+}